@@ -0,0 +1,133 @@
+package ule.edi.tree;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks de {@link BinarySearchTreeImpl}.
+ * 
+ * Las operaciones sobre un elemento (contains, insert y remove) se miden
+ * sobre el árbol ya construido con size claves; insert y remove se miden
+ * juntas, insertando y borrando una clave que no está, para que el árbol no
+ * cambie de tamaño entre llamadas. insertAll mide la construcción completa.
+ * 
+ * Por defecto el árbol es AVL: sin equilibrar (-p balance=NONE) las claves
+ * SORTED o SKEWED forman listas y construirlo cuesta O(n²), así que sólo
+ * tiene sentido con tamaños pequeños.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g", "-Xss512m" })
+@State(Scope.Benchmark)
+public class BinarySearchTreeBenchmark {
+
+	//	Número de claves de prueba (potencia de 2, se recorren en círculo)
+	private static final int PROBES = 1 << 10;
+
+	@Param({ "1000", "10000", "100000", "1000000", "10000000" })
+	int size;
+
+	@Param({ "RANDOM", "SORTED", "SKEWED" })
+	KeyDistribution distribution;
+
+	@Param({ "AVL" })
+	BinarySearchTreeImpl.Balance balance;
+
+	private Integer[] keys;
+	private BinarySearchTreeImpl<Integer> tree;
+
+	//	La mitad de las consultas son claves del árbol y la otra mitad no
+	private Integer[] probes;
+	private Integer[] absent;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(42);
+		int[] raw = distribution.keys(size, random);
+		keys = new Integer[size];
+		tree = new BinarySearchTreeImpl<Integer>(balance);
+		for (int i = 0; i < size; i++) {
+			keys[i] = raw[i];
+			tree.insert(keys[i]);
+		}
+		probes = new Integer[PROBES];
+		absent = new Integer[PROBES];
+		for (int i = 0; i < PROBES; i++) {
+			int present = raw[random.nextInt(size)];
+			absent[i] = present + 1;
+			probes[i] = (i % 2 == 0) ? keys[random.nextInt(size)] : absent[i];
+		}
+	}
+
+	@Benchmark
+	public boolean contains() {
+		return tree.contains(probes[next++ & (PROBES - 1)]);
+	}
+
+	@Benchmark
+	public void insertAndRemove() {
+		Integer key = absent[next++ & (PROBES - 1)];
+		tree.insert(key);
+		tree.remove(key);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public BinarySearchTreeImpl<Integer> insertAll() {
+		BinarySearchTreeImpl<Integer> t = new BinarySearchTreeImpl<Integer>(balance);
+		for (Integer key : keys) {
+			t.insert(key);
+		}
+		return t;
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void iteratorWidth(Blackhole bh) {
+		for (Iterator<Integer> it = tree.iteratorWidth(); it.hasNext(); ) {
+			bh.consume(it.next());
+		}
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void tagHeight() {
+		tree.tagHeight();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void tagDecendents() {
+		tree.tagDecendents();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public int tagOnlySonInorder() {
+		return tree.tagOnlySonInorder();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public int tagAll() {
+		return tree.tagAll();
+	}
+}
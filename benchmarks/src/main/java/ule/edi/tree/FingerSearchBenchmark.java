@@ -0,0 +1,69 @@
+package ule.edi.tree;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Consultas con localidad (cada clave a distancia como mucho window de
+ * la anterior, en posiciones) con y sin búsqueda por dedo.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+@State(Scope.Benchmark)
+public class FingerSearchBenchmark {
+
+	//	Número de claves de prueba (potencia de 2, se recorren en círculo)
+	private static final int PROBES = 1 << 16;
+
+	@Param({ "100000", "1000000", "10000000" })
+	int size;
+
+	@Param({ "1", "16", "1024" })
+	int window;
+
+	@Param({ "false", "true" })
+	boolean finger;
+
+	private BinarySearchTreeImpl<Integer> tree;
+	private Integer[] probes;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(42);
+		int[] keys = KeyDistribution.RANDOM.keys(size, random);
+		tree = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+		for (int key : keys) {
+			tree.insert(key);
+		}
+		tree.setFingerSearch(finger);
+		//	Paseo aleatorio sobre las claves (que son los pares de 0 a 2n)
+		probes = new Integer[PROBES];
+		int position = size / 2;
+		for (int i = 0; i < PROBES; i++) {
+			position = Math.floorMod(position + random.nextInt(2 * window + 1) - window, size);
+			probes[i] = 2 * position + (i & 1);
+		}
+	}
+
+	@Benchmark
+	public boolean contains() {
+		return tree.contains(probes[next++ & (PROBES - 1)]);
+	}
+}
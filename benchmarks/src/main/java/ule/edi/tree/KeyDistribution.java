@@ -0,0 +1,102 @@
+package ule.edi.tree;
+
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Distribuciones de datos de entrada para los benchmarks: el orden y los
+ * valores de las claves de los árboles de búsqueda, y las direcciones en
+ * las que se insertan entidades en un {@link World}.
+ * 
+ * Las claves generadas son siempre pares y distintas, de forma que
+ * cualquier impar sirve como clave que no está en el árbol.
+ */
+public enum KeyDistribution {
+
+	/** Claves 0, 2, 4... barajadas; direcciones aleatorias. */
+	RANDOM {
+		@Override
+		int[] keys(int n, Random random) {
+			int[] keys = SORTED.keys(n, random);
+			for (int i = n - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int k = keys[i];
+				keys[i] = keys[j];
+				keys[j] = k;
+			}
+			return keys;
+		}
+
+		@Override
+		String address(int i, int n, Random random) {
+			return randomBits(random.nextInt(2 * log2(n) + 1), 0.5, random);
+		}
+	},
+
+	/** Claves 0, 2, 4... en orden; direcciones por niveles (árbol completo). */
+	SORTED {
+		@Override
+		int[] keys(int n, Random random) {
+			int[] keys = new int[n];
+			for (int i = 0; i < n; i++) {
+				keys[i] = 2 * i;
+			}
+			return keys;
+		}
+
+		@Override
+		String address(int i, int n, Random random) {
+			//	El nodo i-ésimo por niveles: i + 1 en binario sin el primer 1
+			return Integer.toBinaryString(i + 1).substring(1);
+		}
+	},
+
+	/**
+	 * Claves muy concentradas cerca de 0 y dispersas en el resto (ley de
+	 * potencias); direcciones que bajan casi siempre por la izquierda.
+	 */
+	SKEWED {
+		@Override
+		int[] keys(int n, Random random) {
+			long range = 16L * n;
+			BitSet used = new BitSet();
+			int[] keys = new int[n];
+			int count = 0;
+			while (count < n) {
+				int v = (int) (Math.pow(random.nextDouble(), 4) * range);
+				if (! used.get(v)) {
+					used.set(v);
+					keys[count++] = 2 * v;
+				}
+			}
+			return keys;
+		}
+
+		@Override
+		String address(int i, int n, Random random) {
+			return randomBits(random.nextInt(4 * log2(n) + 1), 0.9, random);
+		}
+	};
+
+	/**
+	 * Devuelve n claves distintas y pares, en el orden en que se insertan.
+	 */
+	abstract int[] keys(int n, Random random);
+
+	/**
+	 * Dirección de la inserción i-ésima de n en un mundo.
+	 */
+	abstract String address(int i, int n, Random random);
+
+	static int log2(int n) {
+		return 31 - Integer.numberOfLeadingZeros(Math.max(n, 1));
+	}
+
+	private static String randomBits(int length, double zeroProbability, Random random) {
+		StringBuilder bx = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			bx.append(random.nextDouble() < zeroProbability ? '0' : '1');
+		}
+		return bx.toString();
+	}
+}
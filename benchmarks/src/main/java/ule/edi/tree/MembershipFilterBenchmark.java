@@ -0,0 +1,70 @@
+package ule.edi.tree;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * contains() con muchas búsquedas fallidas (missRate de cada 100), con
+ * y sin filtro de pertenencia (falsePositiveRate 0 es sin filtro).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g" })
+@State(Scope.Benchmark)
+public class MembershipFilterBenchmark {
+
+	//	Número de claves de prueba (potencia de 2, se recorren en círculo)
+	private static final int PROBES = 1 << 16;
+
+	@Param({ "100000", "1000000", "10000000" })
+	int size;
+
+	@Param({ "80", "99" })
+	int missRate;
+
+	@Param({ "0", "0.01", "0.001" })
+	double falsePositiveRate;
+
+	private BinarySearchTreeImpl<Integer> tree;
+	private Integer[] probes;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(42);
+		int[] keys = KeyDistribution.RANDOM.keys(size, random);
+		tree = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+		for (int key : keys) {
+			tree.insert(key);
+		}
+		if (falsePositiveRate > 0) {
+			tree.setMembershipFilter(falsePositiveRate, 1L << 30);
+		}
+		//	Las claves son pares: las impares no están
+		probes = new Integer[PROBES];
+		for (int i = 0; i < PROBES; i++) {
+			int key = keys[random.nextInt(size)];
+			probes[i] = (random.nextInt(100) < missRate) ? key + 1 : key;
+		}
+	}
+
+	@Benchmark
+	public boolean contains() {
+		return tree.contains(probes[next++ & (PROBES - 1)]);
+	}
+}
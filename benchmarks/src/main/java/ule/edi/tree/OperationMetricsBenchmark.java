@@ -0,0 +1,65 @@
+package ule.edi.tree;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Coste de recoger métricas en contains(): sin métricas debe costar lo
+ * mismo que antes de que existieran.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@State(Scope.Benchmark)
+public class OperationMetricsBenchmark {
+
+	//	Número de claves de prueba (potencia de 2, se recorren en círculo)
+	private static final int PROBES = 1 << 16;
+
+	@Param({ "1000", "1000000" })
+	int size;
+
+	@Param({ "false", "true" })
+	boolean metrics;
+
+	private BinarySearchTreeImpl<Integer> tree;
+	private Integer[] probes;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(42);
+		int[] keys = KeyDistribution.RANDOM.keys(size, random);
+		tree = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+		for (int key : keys) {
+			tree.insert(key);
+		}
+		if (metrics) {
+			tree.setMetrics(new OperationMetrics());
+		}
+		probes = new Integer[PROBES];
+		for (int i = 0; i < PROBES; i++) {
+			probes[i] = keys[random.nextInt(size)];
+		}
+	}
+
+	@Benchmark
+	public boolean contains() {
+		return tree.contains(probes[next++ & (PROBES - 1)]);
+	}
+}
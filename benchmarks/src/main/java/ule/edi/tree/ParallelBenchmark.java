@@ -0,0 +1,71 @@
+package ule.edi.tree;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compara los cálculos sobre el árbol completo en modo
+ * {@link Execution#SEQUENTIAL} y {@link Execution#PARALLEL}; la
+ * aceleración es el cociente entre los tiempos de ambos.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g", "-Xss512m" })
+@State(Scope.Benchmark)
+public class ParallelBenchmark {
+
+	private static final int[] TYPES = { Entity.PRINCESS, Entity.DRAGON, Entity.CASTLE, Entity.FOREST };
+
+	@Param({ "100000", "1000000", "10000000" })
+	int size;
+
+	@Param({ "SEQUENTIAL", "PARALLEL" })
+	Execution execution;
+
+	private BinarySearchTreeImpl<Integer> tree;
+	private World world;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(42);
+		int[] keys = KeyDistribution.RANDOM.keys(size, random);
+		tree = new BinarySearchTreeImpl<Integer>();
+		for (int key : keys) {
+			tree.insert(key);
+		}
+		world = World.createEmptyWorld();
+		for (int i = 0; i < size; i++) {
+			world.insert(KeyDistribution.RANDOM.address(i, size, random), new Entity(TYPES[random.nextInt(TYPES.length)]));
+		}
+	}
+
+	@Benchmark
+	public void tagDecendents() {
+		tree.tagDecendents(execution);
+	}
+
+	@Benchmark
+	public void filterTags() {
+		tree.filterTags(execution, "height");
+	}
+
+	@Benchmark
+	public long countEntity() {
+		return world.countEntity(Entity.PRINCESS, execution);
+	}
+}
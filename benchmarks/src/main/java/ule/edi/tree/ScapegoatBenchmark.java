@@ -0,0 +1,64 @@
+package ule.edi.tree;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Construcción insertando una a una, sin equilibrar con reconstrucción al
+ * degenerar (alpha > 0) o sin ella (alpha 0), frente al modo AVL (alpha
+ * -1). Sin reconstrucción las claves SORTED forman una lista y construirla
+ * cuesta O(n²), así que sólo tiene sentido con tamaños pequeños.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g", "-Xss512m" })
+@State(Scope.Benchmark)
+public class ScapegoatBenchmark {
+
+	@Param({ "10000", "1000000" })
+	int size;
+
+	@Param({ "RANDOM", "SORTED" })
+	KeyDistribution distribution;
+
+	@Param({ "-1", "0", "1.5", "2" })
+	double alpha;
+
+	private Integer[] keys;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		int[] raw = distribution.keys(size, new Random(42));
+		keys = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = raw[i];
+		}
+	}
+
+	@Benchmark
+	public BinarySearchTreeImpl<Integer> insertAll() {
+		BinarySearchTreeImpl<Integer> t = new BinarySearchTreeImpl<Integer>((alpha < 0) ? BinarySearchTreeImpl.Balance.AVL : BinarySearchTreeImpl.Balance.NONE);
+		if (alpha > 0) {
+			t.setScapegoatRebuild(alpha);
+		}
+		for (Integer key : keys) {
+			t.insert(key);
+		}
+		return t;
+	}
+}
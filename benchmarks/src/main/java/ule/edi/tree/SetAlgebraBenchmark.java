@@ -0,0 +1,90 @@
+package ule.edi.tree;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Unión e intersección de dos árboles del mismo tamaño por mezcla de las
+ * secuencias ordenadas, frente a recorrer uno y consultar o insertar en
+ * el otro elemento a elemento.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g", "-Xss512m" })
+@State(Scope.Benchmark)
+public class SetAlgebraBenchmark {
+
+	@Param({ "10000", "100000", "1000000" })
+	int size;
+
+	@Param({ "RANDOM", "SORTED" })
+	KeyDistribution distribution;
+
+	@Param({ "SEQUENTIAL", "PARALLEL" })
+	Execution execution;
+
+	private BinarySearchTreeImpl<Integer> a;
+	private BinarySearchTreeImpl<Integer> b;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(42);
+		a = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+		b = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+		for (int key : distribution.keys(size, random)) {
+			a.insert(key);
+		}
+		for (int key : distribution.keys(size, random)) {
+			b.insert(key + size / 2);
+		}
+	}
+
+	@Benchmark
+	public BinarySearchTreeImpl<Integer> union() {
+		return a.union(b, execution);
+	}
+
+	@Benchmark
+	public BinarySearchTreeImpl<Integer> intersection() {
+		return a.intersection(b, execution);
+	}
+
+	@Benchmark
+	public BinarySearchTreeImpl<Integer> unionByInsert() {
+		BinarySearchTreeImpl<Integer> result = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+		for (Iterator<Integer> it = a.iteratorInorder(); it.hasNext(); ) {
+			result.insert(it.next());
+		}
+		for (Iterator<Integer> it = b.iteratorInorder(); it.hasNext(); ) {
+			result.insert(it.next());
+		}
+		return result;
+	}
+
+	@Benchmark
+	public int intersectionByContains() {
+		int n = 0;
+		for (Iterator<Integer> it = a.iteratorInorder(); it.hasNext(); ) {
+			if (b.contains(it.next())) {
+				n++;
+			}
+		}
+		return n;
+	}
+}
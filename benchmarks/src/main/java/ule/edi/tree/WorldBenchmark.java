@@ -0,0 +1,80 @@
+package ule.edi.tree;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks de {@link World}: construir un mundo con size inserciones en
+ * direcciones de la distribución indicada, y contar y representar el
+ * mundo ya construido.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx8g", "-Xss512m" })
+@State(Scope.Benchmark)
+public class WorldBenchmark {
+
+	private static final int[] TYPES = { Entity.PRINCESS, Entity.DRAGON, Entity.CASTLE, Entity.FOREST, Entity.WARRIOR };
+
+	@Param({ "1000", "10000", "100000", "1000000", "10000000" })
+	int size;
+
+	@Param({ "RANDOM", "SORTED", "SKEWED" })
+	KeyDistribution distribution;
+
+	private String[] addresses;
+	private int[] types;
+	private World world;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(42);
+		addresses = new String[size];
+		types = new int[size];
+		for (int i = 0; i < size; i++) {
+			addresses[i] = distribution.address(i, size, random);
+			types[i] = TYPES[random.nextInt(TYPES.length)];
+		}
+		world = insertAll();
+	}
+
+	@Benchmark
+	public World insertAll() {
+		World w = World.createEmptyWorld();
+		for (int i = 0; i < size; i++) {
+			w.insert(addresses[i], new Entity(types[i]));
+		}
+		return w;
+	}
+
+	@Benchmark
+	public long countEntity() {
+		return world.countEntity(Entity.PRINCESS);
+	}
+
+	@Benchmark
+	public long countAccesiblePrincess() {
+		return world.countAccesiblePrincess(new ArrayList<String>());
+	}
+
+	@Benchmark
+	public String toStringWorld() {
+		return world.toString();
+	}
+}
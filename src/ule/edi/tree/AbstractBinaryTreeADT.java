@@ -1,5 +1,9 @@
 package ule.edi.tree;
 
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
 /**
  * Árbol binario.
  * 
@@ -34,6 +38,41 @@ public abstract class AbstractBinaryTreeADT<T> extends AbstractTreeADT<T> {
 		throw new IllegalStateException("getSubtree(n) on a binary tree needs n in {0,1}");
 	}
 
+	/**
+	 * Devuelve un iterador que recorre la información de los nodos en
+	 * inorden (sub-árbol izquierdo, raíz, sub-árbol derecho).
+	 * 
+	 * Se genera a medida que se pide, guardando en una pila explícita
+	 * los nodos pendientes del camino actual.
+	 * 
+	 * @return iterador para el recorrido en inorden
+	 */
+	public Iterator<T> iteratorInorder() {
+		final ArrayDeque<AbstractBinaryTreeADT<T>> pending = new ArrayDeque<AbstractBinaryTreeADT<T>>();
+		for (AbstractBinaryTreeADT<T> t = this; ! t.isEmpty(); t = t.leftSubtree) {
+			pending.push(t);
+		}
+		return new Iterator<T>() {
+
+			@Override
+			public boolean hasNext() {
+				return ! pending.isEmpty();
+			}
+
+			@Override
+			public T next() {
+				if (pending.isEmpty()) {
+					throw new NoSuchElementException();
+				}
+				AbstractBinaryTreeADT<T> t = pending.pop();
+				for (AbstractBinaryTreeADT<T> r = t.rightSubtree; ! r.isEmpty(); r = r.leftSubtree) {
+					pending.push(r);
+				}
+				return t.getContent();
+			}
+		};
+	}
+
 //
 	
 }
@@ -0,0 +1,461 @@
+package ule.edi.tree;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+/**
+ * Base de los árboles binarios de búsqueda que guardan sus nodos en
+ * arrays paralelos en lugar de como objetos.
+ *
+ * Cada nodo es un índice: left[i], right[i] y parent[i] son los índices
+ * de sus hijos y de su padre (NIL si no hay), y cada subclase guarda la
+ * clave del nodo en su propio array, del tipo que corresponda. Los huecos
+ * que dejan los nodos eliminados se encadenan en una lista libre (a través
+ * de left[]) y se reutilizan en las siguientes inserciones.
+ *
+ * Aquí están la búsqueda, la inserción y el borrado, que siguen los
+ * mismos criterios que {@link BinarySearchTreeImpl} sin equilibrar: se
+ * inserta como hoja y un nodo con dos hijos se sustituye por el menor de
+ * sus mayores. Así, toString() da el mismo resultado. Las claves se
+ * manejan como long, que representa exactamente cualquier int; las
+ * subclases sólo comparan y guardan la clave de un nodo en su array, sin
+ * crear objetos.
+ */
+abstract class AbstractPooledBinarySearchTree {
+
+	//	Índice que marca "no hay nodo"
+	static final int NIL = -1;
+
+	//	Marca en parent[] de un hueco liberado
+	private static final int FREED = -4;
+
+	//	Marcas internas para generar toString() sin recursividad
+	private static final int SEPARATOR = -2;
+	private static final int CLOSE = -3;
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	int[] left;
+	int[] right;
+	int[] parent;
+
+	//	Raíz del árbol, NIL si es vacío
+	int root = NIL;
+
+	//	Número de elementos
+	int size;
+
+	//	Primer hueco libre reutilizable, y primera posición nunca usada
+	private int free = NIL;
+	private int used;
+
+	//	Número de modificaciones, para los iteradores
+	int modCount;
+
+	AbstractPooledBinarySearchTree(int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException();
+		}
+		int capacity = Math.max(initialCapacity, 1);
+		left = new int[capacity];
+		right = new int[capacity];
+		parent = new int[capacity];
+	}
+
+	AbstractPooledBinarySearchTree() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Amplía el array de claves a la capacidad dada.
+	 */
+	abstract void growKeys(int capacity);
+
+	/**
+	 * Compara key con la clave del nodo, como Long.compare.
+	 */
+	abstract int compareKey(long key, int node);
+
+	/**
+	 * Guarda key como clave del nodo.
+	 */
+	abstract void setKey(int node, long key);
+
+	/**
+	 * Añade la representación de la clave del nodo.
+	 */
+	abstract void appendKey(StringBuilder bx, int node);
+
+	/**
+	 * Devuelve el número de elementos del árbol.
+	 *
+	 * @return número de elementos, 0 si es vacío.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Cierto si el árbol no tiene elementos.
+	 *
+	 * @return cierto para árboles vacíos
+	 */
+	public boolean isEmpty() {
+		return root == NIL;
+	}
+
+	/**
+	 * Reserva un nodo sin hijos, reutilizando un hueco si lo hay.
+	 *
+	 * @return índice del nuevo nodo
+	 */
+	int allocate() {
+		int node;
+		if (free != NIL) {
+			node = free;
+			free = left[node];
+		} else {
+			if (used == left.length) {
+				int capacity = used + (used >> 1) + 1;
+				left = Arrays.copyOf(left, capacity);
+				right = Arrays.copyOf(right, capacity);
+				parent = Arrays.copyOf(parent, capacity);
+				growKeys(capacity);
+			}
+			node = used++;
+		}
+		left[node] = NIL;
+		right[node] = NIL;
+		return node;
+	}
+
+	/**
+	 * Nodo con la clave, o NIL si no está.
+	 */
+	int find(long key) {
+		int node = root;
+		while (node != NIL) {
+			int cmp = compareKey(key, node);
+			if (cmp < 0) {
+				node = left[node];
+			} else if (cmp > 0) {
+				node = right[node];
+			} else {
+				return node;
+			}
+		}
+		return NIL;
+	}
+
+	/**
+	 * Inserta la clave como hoja, con un único descenso.
+	 *
+	 * @return true si se insertó, false si ya estaba
+	 */
+	boolean insertKey(long key) {
+		int father = NIL;
+		int node = root;
+		boolean asLeft = false;
+		while (node != NIL) {
+			int cmp = compareKey(key, node);
+			if (cmp == 0) {
+				return false;
+			}
+			father = node;
+			asLeft = cmp < 0;
+			node = asLeft ? left[node] : right[node];
+		}
+		node = allocate();
+		setKey(node, key);
+		parent[node] = father;
+		if (father == NIL) {
+			root = node;
+		} else if (asLeft) {
+			left[father] = node;
+		} else {
+			right[father] = node;
+		}
+		size++;
+		modCount++;
+		return true;
+	}
+
+	/**
+	 * Elimina la clave, con un único descenso.
+	 *
+	 * @throws NoSuchElementException si la clave no está en el árbol
+	 */
+	void removeKey(long key) {
+		int node = find(key);
+		if (node == NIL) {
+			throw new NoSuchElementException();
+		}
+		unlink(node);
+	}
+
+	/**
+	 * Elimina los nodos, ya buscados (uno por clave, así que se puede
+	 * repetir alguno): los repetidos se eliminan una vez. Los índices
+	 * siguen siendo válidos entre un borrado y otro porque unlink() mueve
+	 * nodos, no claves.
+	 */
+	void unlinkAll(int[] nodes) {
+		for (int node : nodes) {
+			if (parent[node] != FREED) {
+				unlink(node);
+			}
+		}
+	}
+
+	/**
+	 * Elimina el nodo del árbol. Si tiene dos hijos, el menor de sus
+	 * mayores se saca de su sitio y pasa a ocupar el suyo; se mueve el
+	 * nodo entero en lugar de su clave, así que el resto de claves siguen
+	 * en los mismos índices.
+	 */
+	void unlink(int node) {
+		if (left[node] != NIL && right[node] != NIL) {
+			int successor = right[node];
+			while (left[successor] != NIL) {
+				successor = left[successor];
+			}
+			if (successor != right[node]) {
+				//	Su hijo derecho (si lo tiene) ocupa su sitio
+				int father = parent[successor];
+				left[father] = right[successor];
+				if (right[successor] != NIL) {
+					parent[right[successor]] = father;
+				}
+				right[successor] = right[node];
+				parent[right[node]] = successor;
+			}
+			left[successor] = left[node];
+			parent[left[node]] = successor;
+			replace(node, successor);
+		} else {
+			//	Como mucho un hijo, que sube a ocupar su lugar
+			replace(node, (left[node] != NIL) ? left[node] : right[node]);
+		}
+
+		parent[node] = FREED;
+		left[node] = free;
+		free = node;
+		size--;
+		modCount++;
+	}
+
+	//	El padre de node pasa a apuntar a child (que puede ser NIL)
+	private void replace(int node, int child) {
+		int father = parent[node];
+		if (child != NIL) {
+			parent[child] = father;
+		}
+		if (father == NIL) {
+			root = child;
+		} else if (left[father] == node) {
+			left[father] = child;
+		} else {
+			right[father] = child;
+		}
+	}
+
+	/**
+	 * Devuelve la altura del árbol, contando niveles (0 si es vacío).
+	 * Recorre el árbol por niveles, sin recursividad.
+	 *
+	 * @return altura del árbol.
+	 */
+	public int height() {
+		WidthIndexes it = new WidthIndexes(Integer.MAX_VALUE);
+		while (it.hasMore()) {
+			it.advance();
+		}
+		return it.lastDepth();
+	}
+
+	/**
+	 * Representa el árbol con el mismo formato que {@link AbstractTreeADT#toString()}:
+	 * "∅" para el árbol vacío y "{raíz, izquierdo, derecho}" en otro caso.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder bx = new StringBuilder();
+		int[] stack = new int[16];
+		int top = 0;
+		stack[top++] = root;
+		while (top > 0) {
+			int node = stack[--top];
+			if (node == SEPARATOR) {
+				bx.append(", ");
+			} else if (node == CLOSE) {
+				bx.append("}");
+			} else if (node == NIL) {
+				bx.append(AbstractTreeADT.EMPTY_TREE_MARK);
+			} else {
+				bx.append("{");
+				appendKey(bx, node);
+				if (top + 5 > stack.length) {
+					stack = Arrays.copyOf(stack, stack.length * 2);
+				}
+				//	Se apila al revés de como debe salir
+				stack[top++] = CLOSE;
+				stack[top++] = right[node];
+				stack[top++] = SEPARATOR;
+				stack[top++] = left[node];
+				stack[top++] = SEPARATOR;
+			}
+		}
+		return bx.toString();
+	}
+
+	/**
+	 * Recorrido de los índices de los nodos, que falla si el árbol se
+	 * modifica mientras se usa.
+	 */
+	abstract class IndexIterator {
+
+		private final int expectedModCount = modCount;
+
+		abstract boolean hasMore();
+
+		abstract int advance();
+
+		public boolean hasNext() {
+			checkForComodification();
+			return hasMore();
+		}
+
+		int nextIndex() {
+			checkForComodification();
+			if (! hasMore()) {
+				throw new NoSuchElementException();
+			}
+			return advance();
+		}
+
+		private void checkForComodification() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+
+	/**
+	 * Índices en inorden (claves de menor a mayor), siguiendo parent[].
+	 */
+	IndexIterator inorderIndexes() {
+		return new IndexIterator() {
+
+			private int next = leftmost(root);
+
+			@Override
+			boolean hasMore() {
+				return next != NIL;
+			}
+
+			@Override
+			int advance() {
+				int node = next;
+				if (right[node] != NIL) {
+					next = leftmost(right[node]);
+				} else {
+					int child = node;
+					next = parent[node];
+					while (next != NIL && right[next] == child) {
+						child = next;
+						next = parent[next];
+					}
+				}
+				return node;
+			}
+		};
+	}
+
+	private int leftmost(int node) {
+		if (node != NIL) {
+			while (left[node] != NIL) {
+				node = left[node];
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Índices por niveles, hasta maxDepth niveles.
+	 */
+	IndexIterator widthIndexes(int maxDepth) {
+		return new WidthIndexes(maxDepth);
+	}
+
+	/**
+	 * Recorrido en anchura con la frontera en una cola circular de enteros.
+	 */
+	private final class WidthIndexes extends IndexIterator {
+
+		private final int maxDepth;
+		private int[] queue = new int[16];
+		private int head;
+		private int count;
+
+		//	Nivel de los nodos que se están devolviendo, cuántos quedan de
+		//	ese nivel en la cola y nivel del último devuelto
+		private int depth = 1;
+		private int remainingInLevel;
+		private int lastDepth;
+
+		WidthIndexes(int maxDepth) {
+			if (maxDepth < 0) {
+				throw new IllegalArgumentException();
+			}
+			this.maxDepth = maxDepth;
+			if (maxDepth > 0 && root != NIL) {
+				add(root);
+				remainingInLevel = 1;
+			}
+		}
+
+		int lastDepth() {
+			return lastDepth;
+		}
+
+		private void add(int node) {
+			if (count == queue.length) {
+				int[] bigger = new int[queue.length * 2];
+				for (int i = 0; i < count; i++) {
+					bigger[i] = queue[(head + i) & (queue.length - 1)];
+				}
+				queue = bigger;
+				head = 0;
+			}
+			queue[(head + count) & (queue.length - 1)] = node;
+			count++;
+		}
+
+		@Override
+		boolean hasMore() {
+			return count > 0;
+		}
+
+		@Override
+		int advance() {
+			int node = queue[head];
+			head = (head + 1) & (queue.length - 1);
+			count--;
+			lastDepth = depth;
+			if (depth < maxDepth) {
+				if (left[node] != NIL) {
+					add(left[node]);
+				}
+				if (right[node] != NIL) {
+					add(right[node]);
+				}
+			}
+			if (--remainingInLevel == 0) {
+				depth++;
+				remainingInLevel = count;
+			}
+			return node;
+		}
+	}
+}
@@ -1,10 +1,17 @@
 package ule.edi.tree;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 
 /**
@@ -28,43 +35,116 @@ public abstract class AbstractTreeADT<T> implements TreeADT<T> {
 	//
 	protected T content;
 	
-	protected Map<String, Object> tags = new HashMap<>();
+	//	Etiquetas del nodo. Casi ningún nodo se etiqueta, así que no se
+	//	crean hasta asignar la primera (null mientras no haya ninguna)
+	protected TagStore tags;
 	
+	/**
+	 * Si el nodo no tiene etiquetas devuelve un mapa vacío que no se
+	 * puede modificar; para añadirlas se usa {@link #setTag(String, Object)}.
+	 */
 	@Override
 	public Map<String, Object> getTags() {
-		return tags;
+		return (tags == null) ? Collections.<String, Object>emptyMap() : tags;
 	}
 	
 	@Override
 	public void setTag(String k, Object v) {
+		if (tags == null) {
+			tags = new TagStore();
+		}
 		tags.put(k, v);
 	}
 	
+	@Override
+	public void setTag(String k, int v) {
+		if (tags == null) {
+			tags = new TagStore();
+		}
+		tags.putInt(k, v);
+	}
+	
 	@Override
 	public Object getTag(String k) {
-		return tags.get(k);
+		return (tags == null) ? null : tags.get(k);
 	}
 	
+	/*
+	 * Filtra las etiquetas de cada nodo en su sitio, sin crear mapas
+	 * nuevos, recorriendo el árbol con una pila explícita.
+	 */
 	@Override
 	public void filterTags(String ... keep) {
-		
-		if (! tags.isEmpty()) {
-			HashMap<String, Object> rx = new HashMap<>();
-			for (int i = 0; i < keep.length; i++) {
-				if (tags.containsKey(keep[i])) {
-					rx.put(keep[i], tags.get(keep[i]));
+		ArrayDeque<AbstractTreeADT<T>> pending = new ArrayDeque<AbstractTreeADT<T>>();
+		pending.push(this);
+		while (! pending.isEmpty()) {
+			AbstractTreeADT<T> t = pending.pop();
+			if (t.tags != null) {
+				t.tags.retain(keep);
+				if (t.tags.isEmpty()) {
+					t.tags = null;
 				}
 			}
-			this.tags = rx;
-		}
-		
-		if (! isEmpty()) {
-			for (int i = 0; i < getMaxDegree(); i++) {
-				getSubtree(i).filterTags(keep);
+			if (! t.isEmpty()) {
+				for (int i = 0; i < t.getMaxDegree(); i++) {
+					pending.push((AbstractTreeADT<T>) t.getSubtree(i));
+				}
 			}
 		}
 	}
 
+
+	@Override
+	public void filterTags(Execution execution, String ... keep) {
+		if (execution == Execution.PARALLEL) {
+			ForkJoinPool.commonPool().invoke(new FilterTagsTask(this, 1, keep));
+		} else {
+			filterTags(keep);
+		}
+	}
+
+	//	Profundidad hasta la que se crean tareas en paralelo para árboles
+	//	que no conocen su tamaño: unas 16 tareas por hilo disponible
+	static final int PARALLEL_DEPTH = 36 - Integer.numberOfLeadingZeros(ForkJoinPool.getCommonPoolParallelism());
+
+	/**
+	 * Filtra las etiquetas de un sub-árbol repartiendo sus hijos en
+	 * tareas hasta PARALLEL_DEPTH; por debajo lo hace secuencialmente.
+	 */
+	private static final class FilterTagsTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final TreeADT<?> tree;
+		private final int depth;
+		private final String[] keep;
+
+		FilterTagsTask(TreeADT<?> tree, int depth, String[] keep) {
+			this.tree = tree;
+			this.depth = depth;
+			this.keep = keep;
+		}
+
+		@Override
+		protected void compute() {
+			if (depth >= PARALLEL_DEPTH || tree.isEmpty() || tree.isLeaf()) {
+				tree.filterTags(keep);
+				return;
+			}
+			AbstractTreeADT<?> t = (AbstractTreeADT<?>) tree;
+			if (t.tags != null) {
+				t.tags.retain(keep);
+				if (t.tags.isEmpty()) {
+					t.tags = null;
+				}
+			}
+			FilterTagsTask[] subtasks = new FilterTagsTask[t.getMaxDegree()];
+			for (int i = 0; i < subtasks.length; i++) {
+				subtasks[i] = new FilterTagsTask(t.getSubtree(i), depth + 1, keep);
+			}
+			invokeAll(subtasks);
+		}
+	}
 	
 	@Override
 	public void setContent(T content) {
@@ -77,6 +157,135 @@ public abstract class AbstractTreeADT<T> implements TreeADT<T> {
 		return content;
 	}	
 
+	/*
+	 * Los recorridos se generan a medida que se piden, con una pila
+	 * explícita, así que no dependen de la profundidad de la pila de
+	 * llamadas. Las implementaciones que dispongan de una forma mejor de
+	 * avanzar (referencias al padre, por ejemplo) pueden redefinirlos.
+	 */
+	@Override
+	public Iterator<T> iteratorPreorder() {
+		final ArrayDeque<TreeADT<T>> pending = new ArrayDeque<TreeADT<T>>();
+		if (! isEmpty()) {
+			pending.push(this);
+		}
+		return new Iterator<T>() {
+
+			@Override
+			public boolean hasNext() {
+				return ! pending.isEmpty();
+			}
+
+			@Override
+			public T next() {
+				if (pending.isEmpty()) {
+					throw new NoSuchElementException();
+				}
+				TreeADT<T> t = pending.pop();
+				//	Se apilan al revés para sacar antes el primer sub-árbol
+				for (int i = t.getMaxDegree() - 1; i >= 0; i--) {
+					if (! t.getSubtree(i).isEmpty()) {
+						pending.push(t.getSubtree(i));
+					}
+				}
+				return t.getContent();
+			}
+		};
+	}
+
+	@Override
+	public Iterator<T> iteratorPostorder() {
+		return new Iterator<T>() {
+
+			//	Camino desde la raíz hasta el nodo actual, y para cada nodo
+			//	del camino el índice del siguiente sub-árbol a visitar
+			private final ArrayDeque<TreeADT<T>> path = new ArrayDeque<TreeADT<T>>();
+			private int[] nextChild = new int[16];
+
+			{
+				if (! isEmpty()) {
+					push(AbstractTreeADT.this);
+				}
+			}
+
+			private void push(TreeADT<T> t) {
+				if (path.size() == nextChild.length) {
+					nextChild = Arrays.copyOf(nextChild, nextChild.length * 2);
+				}
+				nextChild[path.size()] = 0;
+				path.push(t);
+			}
+
+			@Override
+			public boolean hasNext() {
+				return ! path.isEmpty();
+			}
+
+			@Override
+			public T next() {
+				if (path.isEmpty()) {
+					throw new NoSuchElementException();
+				}
+				while (true) {
+					TreeADT<T> t = path.peek();
+					int top = path.size() - 1;
+					//	Baja por el siguiente sub-árbol no vacío, si queda alguno
+					while (nextChild[top] < t.getMaxDegree() && t.getSubtree(nextChild[top]).isEmpty()) {
+						nextChild[top]++;
+					}
+					if (nextChild[top] < t.getMaxDegree()) {
+						push(t.getSubtree(nextChild[top]++));
+					} else {
+						path.pop();
+						return t.getContent();
+					}
+				}
+			}
+		};
+	}
+
+	/*
+	 * Recorrido con una pila explícita (el camino desde la raíz y, para
+	 * cada nodo del camino, el siguiente sub-árbol a visitar), así que no
+	 * depende de la profundidad de la pila de llamadas.
+	 */
+	@Override
+	public void traverse(TreeVisitor<T> visitor) {
+		if (isEmpty()) {
+			return;
+		}
+		ArrayDeque<TreeADT<T>> path = new ArrayDeque<TreeADT<T>>();
+		int[] nextChild = new int[16];
+		path.push(this);
+		visitor.preorder(this, 1);
+		while (! path.isEmpty()) {
+			TreeADT<T> t = path.peek();
+			int depth = path.size();
+			int i = nextChild[depth - 1];
+			if (i < t.getMaxDegree()) {
+				nextChild[depth - 1] = i + 1;
+				if (i == 1) {
+					visitor.inorder(t, depth);
+				}
+				TreeADT<T> child = t.getSubtree(i);
+				if (! child.isEmpty()) {
+					if (depth == nextChild.length) {
+						nextChild = Arrays.copyOf(nextChild, nextChild.length * 2);
+					}
+					nextChild[depth] = 0;
+					path.push(child);
+					visitor.preorder(child, depth + 1);
+				}
+			} else {
+				if (t.getMaxDegree() < 2) {
+					visitor.inorder(t, depth);
+				}
+				path.pop();
+				visitor.postorder(t, depth);
+			}
+		}
+	}
+
 	@Override
 	public boolean isLeaf() {
 		
@@ -146,80 +355,122 @@ public abstract class AbstractTreeADT<T> implements TreeADT<T> {
 	 */
 	@Override
 	public String toString() {
-		if (! isEmpty()) {
-			//	Construye el resultado de forma eficiente
-			StringBuffer result = new StringBuffer();
-				
-			//	Raíz
-			result.append("{" + content.toString());
-			
-			if (! tags.isEmpty()) {
-				result.append(" [");
-				
-				List<String> sk = new LinkedList<String>(tags.keySet());
-				
-				Collections.sort(sk);
-				for (String k : sk) {
-					result.append("(" + k + ", " + tags.get(k) + "), ");
+		StringBuilder result = new StringBuilder();
+		try {
+			writeTo(result);
+		} catch (IOException e) {
+			//	Un StringBuilder no lanza IOException
+			throw new UncheckedIOException(e);
+		}
+		return result.toString();
+	}
+
+	//	Fragmentos de texto que se apilan entre los sub-árboles pendientes
+	private static final String SEPARATOR = ", ";
+	private static final String CLOSE = "}";
+
+	/**
+	 * Escribe en out la representación del árbol, con el mismo formato que
+	 * {@link #toString()}, a medida que se genera: en una sola pasada, sin
+	 * construir cadenas intermedias por sub-árbol y con una pila explícita
+	 * en lugar de recursividad. Sirve para volcar árboles grandes
+	 * directamente a un Writer.
+	 * 
+	 * @param out destino del texto.
+	 * @throws IOException si falla la escritura en out.
+	 */
+	public void writeTo(Appendable out) throws IOException {
+		ArrayDeque<Object> pending = new ArrayDeque<Object>();
+		pending.push(this);
+		while (! pending.isEmpty()) {
+			Object item = pending.pop();
+			if (item instanceof String) {
+				out.append((String) item);
+				continue;
+			}
+			TreeADT<?> t = (TreeADT<?>) item;
+			if (t.isEmpty()) {
+				out.append(AbstractTreeADT.EMPTY_TREE_MARK);
+			} else if (! (t instanceof AbstractTreeADT)) {
+				out.append(t.toString());
+			} else {
+				out.append("{");
+				((AbstractTreeADT<?>) t).appendContent(out);
+				appendTags(out, t.getTags());
+				//	Se apila al revés de como debe salir
+				pending.push(CLOSE);
+				for (int i = t.getMaxDegree() - 1; i >= 0; i--) {
+					pending.push(t.getSubtree(i));
+					pending.push(SEPARATOR);
 				}
-				result.delete(result.length() - 2, result.length());
-				result.append("]");
 			}
-			
-			//	Y cada sub-árbol
-			for (int i = 0; i < getMaxDegree(); i++) {
-				result.append(", " + getSubtree(i).toString());
+		}
+	}
+
+	/**
+	 * Escribe la información del nodo (no vacío) para {@link #writeTo(Appendable)}.
+	 * Las subclases pueden redefinirlo para darle otro formato.
+	 * 
+	 * @param out destino del texto.
+	 * @throws IOException si falla la escritura en out.
+	 */
+	protected void appendContent(Appendable out) throws IOException {
+		out.append(content.toString());
+	}
+
+	//	Añade " [(clave, valor), ...]" con las claves ordenadas, si hay alguna
+	private static void appendTags(Appendable out, Map<String, Object> tags) throws IOException {
+		if (! tags.isEmpty()) {
+			List<String> sk = new ArrayList<String>(tags.keySet());
+			Collections.sort(sk);
+			out.append(" [");
+			for (int i = 0; i < sk.size(); i++) {
+				if (i > 0) {
+					out.append(", ");
+				}
+				out.append("(").append(sk.get(i)).append(", ").append(String.valueOf(tags.get(sk.get(i)))).append(")");
 			}
-			//	Cierra la "}" de este árbol
-			result.append("}");
-			
-			return result.toString();
-		} else {
-			return AbstractTreeADT.EMPTY_TREE_MARK;
+			out.append("]");
 		}
 	}
 	
 	/**
-	 * Implementación para mostrar un árbol con niveles.
+	 * Escribe en out la representación en niveles del árbol, con el mismo
+	 * formato que {@link #render()}, en una sola pasada y sin recursividad.
 	 * 
-	 * @param t (sub-)árbol a mostrar.
-	 * @param bx buffer donde acumular el resultado.
-	 * @param depth profundidad de t en el árbol total.
+	 * @param out destino del texto.
+	 * @throws IOException si falla la escritura en out.
 	 */
-	private void render(TreeADT<T> t, StringBuffer bx, int depth) {
-		
-		//	Muestra el nodo raíz; tantos espacios como profundo sea
-		for (int i = 0; i < depth; i++) { bx.append("|  "); }
-		
-		//	Y después de los espacios, la información
-		if (! t.isEmpty()) {
-			bx.append(t.getContent());
+	public void renderTo(Appendable out) throws IOException {
+		//	Nodos pendientes y, en paralelo, su profundidad
+		ArrayDeque<TreeADT<T>> pending = new ArrayDeque<TreeADT<T>>();
+		int[] depths = new int[16];
+		pending.push(this);
+		depths[0] = 0;
+		while (! pending.isEmpty()) {
+			int depth = depths[pending.size() - 1];
+			TreeADT<T> t = pending.pop();
 			
-			Map<String, Object> tags = t.getTags();
+			//	Muestra el nodo raíz; tantos espacios como profundo sea
+			for (int i = 0; i < depth; i++) { out.append("|  "); }
 			
-			if (! tags.isEmpty()) {
-				bx.append(" [");
-				
-				List<String> sk = new LinkedList<String>(tags.keySet());
+			if (! t.isEmpty()) {
+				out.append(String.valueOf(t.getContent()));
+				appendTags(out, t.getTags());
+				out.append("\n");
 				
-				Collections.sort(sk);
-				for (String k : sk) {
-					bx.append("(" + k + ", " + tags.get(k) + "), ");
+				//	Sus sub-árboles, que están a mayor profundidad que éste
+				for (int i = t.getMaxDegree() - 1; i >= 0; i--) {
+					if (pending.size() == depths.length) {
+						depths = Arrays.copyOf(depths, depths.length * 2);
+					}
+					depths[pending.size()] = depth + 1;
+					pending.push(t.getSubtree(i));
 				}
-				bx.delete(bx.length() - 2, bx.length());
-				bx.append("]");
+			} else {
+				out.append(AbstractTreeADT.EMPTY_TREE_MARK);
+				out.append("\n");
 			}
-			
-			bx.append("\n");
-			
-			//	Muestra sus sub-árboles (recursividad)
-			for (int i = 0; i < t.getMaxDegree(); i++) {
-				//	Que están a mayor profundidad que éste
-				render(t.getSubtree(i), bx, depth + 1);
-			}			
-		} else {
-			bx.append(AbstractTreeADT.EMPTY_TREE_MARK);
-			bx.append("\n");
 		}
 	}
 	
@@ -229,11 +480,12 @@ public abstract class AbstractTreeADT<T> implements TreeADT<T> {
 	 * @return cada nodo se muestra según su profundidad.
 	 */
 	public String render() {
-		//	Acumula el resultado
-		StringBuffer rx = new StringBuffer();
-		//	Genera usando recursividad
-		render(this, rx, 0);
-		//	
+		StringBuilder rx = new StringBuilder();
+		try {
+			renderTo(rx);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 		return rx.toString();
 	}
 	
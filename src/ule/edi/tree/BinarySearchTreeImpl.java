@@ -2,12 +2,26 @@ package ule.edi.tree;
 
 
 import javax.swing.tree.TreeNode;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Queue;
+import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 /**
@@ -50,6 +64,11 @@ import java.util.Queue;
  * y con {@link #getTag(String)} se consulta.
  * 
  * 
+ * El árbol puede construirse sin equilibrar (como un BST normal, cuya forma
+ * depende del orden de inserción) o en modo {@link Balance#AVL}, en el que
+ * tras cada inserción o borrado se aplican rotaciones para que la altura
+ * se mantenga en O(log n) aunque las claves lleguen ordenadas.
+ * 
  * Con <T extends Comparable<? super T>> se pide que exista un orden en
  * los elementos. Se necesita para poder comparar elementos al insertar.
  * 
@@ -65,10 +84,85 @@ public class BinarySearchTreeImpl<T extends Comparable<? super T>> extends
 
    BinarySearchTreeImpl<T> father;  //referencia a su nodo padre)
 
+	/**
+	 * Modos de equilibrado disponibles, se eligen al construir el árbol.
+	 */
+	public enum Balance {
+		/** Sin equilibrar: la forma depende del orden de inserción. */
+		NONE,
+		/** AVL: las alturas de los dos hijos de cada nodo difieren como mucho en 1. */
+		AVL
+	}
+
+	/**
+	 * Datos comunes a todos los nodos de un mismo árbol.
+	 */
+	private static final class TreeState {
+
+		//	Modo de equilibrado elegido al construir el árbol
+		final Balance balance;
+
+		//	Número de modificaciones del árbol, para que las vistas y sus
+		//	iteradores detecten cambios hechos mientras se recorren
+		int modCount;
+
+		//	Búsqueda por dedo: si está activa, último nodo accedido (null si
+		//	no hay ninguno válido) y cuántas búsquedas empezaron por debajo
+		//	de la raíz (aciertos) o tuvieron que subir hasta ella (fallos)
+		boolean fingerSearch;
+		BinarySearchTreeImpl<?> finger;
+		long fingerHits;
+		long fingerMisses;
+
+		//	Filtro de pertenencia, si está activo, con su configuración y
+		//	cuántas búsquedas ha descartado o ha dejado pasar en balde
+		CountingBloomFilter filter;
+		double filterFalsePositiveRate;
+		long filterMaxBytes;
+		long filterRejections;
+		long filterFalsePositives;
+
+		//	Contadores de la operación en curso, si se están recogiendo
+		//	métricas (null si no)
+		OperationMetrics.Probe probe;
+
+		//	Reconstrucción al degenerar: factor de altura permitido (0 si
+		//	no está activa), cuántas reconstrucciones ha habido y cuántos
+		//	nodos se han reconstruido en total
+		double scapegoatAlpha;
+		long rebuilds;
+		long rebuiltNodes;
+
+		TreeState(Balance balance) {
+			this.balance = balance;
+		}
+	}
+
+	//	Estado compartido por todos los nodos de este árbol
+	private TreeState state;
+
+	//	Altura del sub-árbol que cuelga de este nodo (0 si es vacío)
+	private int subtreeHeight;
+
+	//	Número de elementos del sub-árbol que cuelga de este nodo (0 si es vacío)
+	private int subtreeSize;
+
 	/**
 	 * Devuelve el árbol binario de búsqueda izquierdo.
+	 * 
+	 * Si es vacío, se devuelve un árbol vacío nuevo con este nodo como
+	 * padre, en el que se puede insertar. El nodo sigue apuntando al vacío
+	 * compartido hasta que se inserte en él (ver {@link #insert(Comparable)}).
 	 */
 	protected BinarySearchTreeImpl<T> getLeftBST() {
+		if (leftSubtree == EMPTY) {
+			return new BinarySearchTreeImpl<T>(this);
+		}
+		return left();
+	}
+
+	//	Hijo izquierdo tal cual, que puede ser el vacío compartido
+	BinarySearchTreeImpl<T> left() {
 		//	El atributo leftSubtree es de tipo AbstractBinaryTreeADT<T> pero
 		//	aquí se sabe que es además de búsqueda binario
 		//
@@ -77,25 +171,55 @@ public class BinarySearchTreeImpl<T extends Comparable<? super T>> extends
 
 	private void setLeftBST(BinarySearchTreeImpl<T> left) {
 		this.leftSubtree = left;
+		if (left != null && left != EMPTY) {
+			left.father = this;
+		}
 	}
 	
 	/**
 	 * Devuelve el árbol binario de búsqueda derecho.
+	 * 
+	 * Si es vacío, se devuelve un árbol vacío nuevo con este nodo como
+	 * padre, en el que se puede insertar. El nodo sigue apuntando al vacío
+	 * compartido hasta que se inserte en él (ver {@link #insert(Comparable)}).
 	 */
 	protected BinarySearchTreeImpl<T> getRightBST() {
+		if (rightSubtree == EMPTY) {
+			return new BinarySearchTreeImpl<T>(this);
+		}
+		return right();
+	}
+
+	//	Hijo derecho tal cual, que puede ser el vacío compartido
+	BinarySearchTreeImpl<T> right() {
 		return (BinarySearchTreeImpl<T>) rightSubtree;
 	}
 
 	private void setRightBST(BinarySearchTreeImpl<T> right) {
 		this.rightSubtree = right;
+		if (right != null && right != EMPTY) {
+			right.father = this;
+		}
 	}
 	
 	/**
 	 * Árbol BST vacío
 	 */
 	public BinarySearchTreeImpl() {
-		// TODO HACER QUE THIS SEA EL NODO VACÍO
+		this(Balance.NONE);
+	}
+
+	/**
+	 * Árbol BST vacío con el modo de equilibrado indicado.
+	 * 
+	 * @param balance modo de equilibrado que usarán todas las operaciones.
+	 */
+	public BinarySearchTreeImpl(Balance balance) {
+		if (balance == null) {
+			throw new IllegalArgumentException();
+		}
 		this.father = null;
+		this.state = new TreeState(balance);
 		this.content = null;
 		this.rightSubtree = null;
 		this.leftSubtree = null;
@@ -104,14 +228,145 @@ public class BinarySearchTreeImpl<T extends Comparable<? super T>> extends
 	public BinarySearchTreeImpl(BinarySearchTreeImpl<T> father) {
 		// TODO HACER QUE THIS SEA EL NODO VACÍO, asignando como padre el parámetro recibido
 		this.father = father;
+		this.state = (father != null) ? father.state : new TreeState(Balance.NONE);
 		this.content = null;
 		this.rightSubtree = null;
 		this.leftSubtree = null;
 	}
 
 
-	private BinarySearchTreeImpl<T> emptyBST(BinarySearchTreeImpl<T> father) {
-		return new BinarySearchTreeImpl<T>(father);
+	/**
+	 * Árbol vacío que se usa como hijo de todas las hojas de todos los
+	 * árboles, en lugar de crear dos objetos vacíos por cada inserción.
+	 * 
+	 * Es compartido, así que no tiene padre y no se puede modificar: al
+	 * insertar o borrar se cambia el enlace del padre, no el hijo vacío.
+	 * Sólo se ve desde fuera a través de getSubtree(); getLeftBST() y
+	 * getRightBST() devuelven en su lugar un vacío nuevo que conoce a su
+	 * padre, sin guardarlo.
+	 */
+	@SuppressWarnings("rawtypes")
+	private static final BinarySearchTreeImpl EMPTY = new BinarySearchTreeImpl(Balance.NONE);
+
+	@SuppressWarnings("unchecked")
+	private static <T extends Comparable<? super T>> BinarySearchTreeImpl<T> emptyBST() {
+		return (BinarySearchTreeImpl<T>) EMPTY;
+	}
+
+	/**
+	 * Nuevo nodo hoja con element, hijo de father.
+	 */
+	private static <T extends Comparable<? super T>> BinarySearchTreeImpl<T> leaf(BinarySearchTreeImpl<T> father, T element) {
+		BinarySearchTreeImpl<T> node = new BinarySearchTreeImpl<T>(father);
+		node.fill(element);
+		return node;
+	}
+
+	//	Cierto si es un vacío de getLeftBST()/getRightBST() que su padre
+	//	aún no enlaza
+	private boolean isDetached() {
+		return father != null && father.left() != this && father.right() != this;
+	}
+
+	//	Convierte este árbol vacío en una hoja con element
+	private void fill(T element) {
+		this.setContent(element);
+		this.setLeftBST(emptyBST());
+		this.setRightBST(emptyBST());
+		this.subtreeHeight = 1;
+		this.subtreeSize = 1;
+	}
+
+	//	Deja este nodo vacío, como lo crea el constructor
+	private void clear() {
+		state.finger = null;
+		this.content = null;
+		this.setLeftBST(null);
+		this.setRightBST(null);
+		this.tags = null;
+		this.subtreeHeight = 0;
+		this.subtreeSize = 0;
+	}
+
+	/*
+	 * Construcción directa, sin insert, para quien ya conoce la forma del
+	 * árbol (p.ej. al cargarlo de un fichero): se cuelgan los nodos con
+	 * addChild y al final se calculan alturas y tamaños de una vez con
+	 * recomputeMeasures. Entre medias el árbol no es consistente.
+	 */
+
+	/**
+	 * Modo de equilibrado con el que se creó el árbol.
+	 */
+	Balance balance() {
+		return state.balance;
+	}
+
+	/**
+	 * Cuelga una hoja con element como hijo izquierdo o derecho de este
+	 * nodo, que debe tener vacío ese hijo. No comprueba el orden.
+	 * 
+	 * @return el nuevo nodo
+	 */
+	BinarySearchTreeImpl<T> addChild(boolean left, T element) {
+		BinarySearchTreeImpl<T> child = leaf(this, element);
+		if(left){
+			this.setLeftBST(child);
+		}else{
+			this.setRightBST(child);
+		}
+		return child;
+	}
+
+	/**
+	 * Recalcula alturas y tamaños de todo el árbol tras construirlo con
+	 * {@link #addChild(boolean, Comparable)}, en postorden y sin pila.
+	 */
+	void recomputeMeasures() {
+		for(BinarySearchTreeImpl<T> node = firstPostorder(); node != null; node = nextPostorder(node)){
+			node.updateMeasures();
+		}
+		state.modCount++;
+		refreshFilter();
+	}
+
+	/**
+	 * El árbol vacío compartido no se puede modificar.
+	 * 
+	 * @throws UnsupportedOperationException si este árbol es un hijo vacío
+	 */
+	@Override
+	public void setContent(T content) {
+		if (this == EMPTY) {
+			throw new UnsupportedOperationException();
+		}
+		super.setContent(content);
+	}
+
+	/**
+	 * El árbol vacío compartido no se puede etiquetar.
+	 * 
+	 * @throws UnsupportedOperationException si este árbol es un hijo vacío
+	 */
+	@Override
+	public void setTag(String k, Object v) {
+		if (this == EMPTY) {
+			throw new UnsupportedOperationException();
+		}
+		super.setTag(k, v);
+	}
+
+	/**
+	 * El árbol vacío compartido no se puede etiquetar.
+	 * 
+	 * @throws UnsupportedOperationException si este árbol es un hijo vacío
+	 */
+	@Override
+	public void setTag(String k, int v) {
+		if (this == EMPTY) {
+			throw new UnsupportedOperationException();
+		}
+		super.setTag(k, v);
 	}
 	
 	/**
@@ -120,6 +375,11 @@ public class BinarySearchTreeImpl<T extends Comparable<? super T>> extends
 	 * 
 	 * No se permiten elementos null.
 	 * 
+	 * Se insertan uno a uno con {@link #insert(Comparable)}, con lo que la
+	 * forma del árbol depende del orden y se conservan las etiquetas; no
+	 * se usa la carga masiva de {@link #bulkInsert(Collection)}, por
+	 * grande que sea la colección.
+	 * 
 	 * @param elements
 	 *            valores a insertar.
 	 * @return numero de elementos insertados en el arbol (los que ya están no los inserta)
@@ -142,8 +402,7 @@ public class BinarySearchTreeImpl<T extends Comparable<? super T>> extends
 			elemIter = elements.iterator();
 			while(elemIter.hasNext()){
 				nextElem = elemIter.next();
-				if(!this.contains(nextElem)){
-					this.insert(nextElem);
+				if(this.insert(nextElem)){
 					numberInsert++;
 				}
 			}
@@ -159,6 +418,9 @@ public class BinarySearchTreeImpl<T extends Comparable<? super T>> extends
 	 * 
 	 * No se permiten elementos null.
 	 * 
+	 * Como {@link #insert(Collection)}, se insertan uno a uno, sin la
+	 * carga masiva de {@link #bulkInsert(Collection)}.
+	 * 
 	 * @param elements elementos a insertar.
 	 * @return numero de elementos insertados en el arbol (los que ya están no los inserta)
 	 */
@@ -175,8 +437,7 @@ public class BinarySearchTreeImpl<T extends Comparable<? super T>> extends
 
 		if(canInsert){
 			for(T item : elements){
-				if(!this.contains(item)){
-					this.insert(item);
+				if(this.insert(item)){
 					numberInsert++;
 				}
 			}
@@ -186,6 +447,124 @@ public class BinarySearchTreeImpl<T extends Comparable<? super T>> extends
 		return numberInsert;
 	}
 	
+	/**
+	 * Carga masiva: inserta los elementos de una colección dejando el árbol
+	 * perfectamente equilibrado.
+	 *  si alguno es 'null', NO INSERTA NINGUNO
+	 * 
+	 * Los elementos se ordenan y se eliminan repetidos; si el árbol está
+	 * vacío se construye directamente a partir de ellos en tiempo lineal,
+	 * y si no, se mezclan con el recorrido en inorden del árbol y se
+	 * reconstruye entero, también en tiempo lineal. A diferencia de
+	 * {@link #insert(Collection)}, la forma del árbol no depende del orden
+	 * de inserción.
+	 * 
+	 * Se pierden las etiquetas: al reconstruir el árbol, todos sus nodos,
+	 * también los de los elementos que ya estaban, quedan sin etiquetas.
+	 * Si no se inserta ningún elemento nuevo, el árbol no cambia.
+	 * 
+	 * @param elements valores a insertar.
+	 * @return numero de elementos insertados en el arbol (los que ya están no los inserta)
+	 * @throws IllegalArgumentException si alguno de los elementos es null
+	 */
+	public int bulkInsert(Collection<? extends T> elements) {
+		Object[] batch = elements.toArray();
+		for(Object item : batch){
+			if(item == null){
+				throw new IllegalArgumentException();
+			}
+		}
+		Arrays.sort(batch);
+		int m = removeDuplicates(batch);
+
+		if(this.isEmpty()){
+			if(isDetached()){
+				return father.bulkInsert(elements);
+			}
+			if(m > 0){
+				this.build(batch, 0, m);
+				retrace(this.father);
+				state.modCount++;
+				refreshFilter();
+			}
+			return m;
+		}
+
+		//	Mezcla de las dos secuencias ordenadas
+		ArrayList<T> current = new ArrayList<T>();
+		for(BinarySearchTreeImpl<T> node = firstInorder(); node != null; node = nextInorder(node)){
+			current.add(node.getContent());
+		}
+		Object[] merged = new Object[current.size() + m];
+		int i = 0, j = 0, k = 0;
+		while(i < current.size() && j < m){
+			@SuppressWarnings("unchecked")
+			int cmp = current.get(i).compareTo((T) batch[j]);
+			if(cmp < 0){
+				merged[k++] = current.get(i++);
+			}else if(cmp > 0){
+				merged[k++] = batch[j++];
+			}else{
+				merged[k++] = current.get(i++);
+				j++;
+			}
+		}
+		while(i < current.size()){
+			merged[k++] = current.get(i++);
+		}
+		while(j < m){
+			merged[k++] = batch[j++];
+		}
+
+		int inserted = k - current.size();
+		if(inserted > 0){
+			this.build(merged, 0, k);
+			retrace(this.father);
+			state.modCount++;
+			refreshFilter();
+		}
+		return inserted;
+	}
+
+	//	Compacta un array ordenado quitando repetidos, devuelve cuántos quedan
+	@SuppressWarnings("unchecked")
+	private static <T extends Comparable<? super T>> int removeDuplicates(Object[] sorted) {
+		int m = 0;
+		for(int i = 0; i < sorted.length; i++){
+			if(m == 0 || ((T) sorted[m - 1]).compareTo((T) sorted[i]) != 0){
+				sorted[m++] = sorted[i];
+			}
+		}
+		return m;
+	}
+
+	/**
+	 * Sustituye el contenido de este árbol por un árbol perfectamente
+	 * equilibrado con los elementos sorted[lo, hi), que deben estar
+	 * ordenados y sin repetidos (y ser al menos uno). Este nodo sigue
+	 * siendo la raíz; la profundidad de la recursión es logarítmica.
+	 */
+	@SuppressWarnings("unchecked")
+	private void build(Object[] sorted, int lo, int hi) {
+		state.finger = null;
+		int mid = (lo + hi) >>> 1;
+		this.setContent((T) sorted[mid]);
+		this.tags = null;
+		this.setLeftBST(emptyBST());
+		this.setRightBST(emptyBST());
+		if(lo < mid){
+			BinarySearchTreeImpl<T> left = new BinarySearchTreeImpl<T>(this);
+			left.build(sorted, lo, mid);
+			this.setLeftBST(left);
+		}
+		if(mid + 1 < hi){
+			BinarySearchTreeImpl<T> right = new BinarySearchTreeImpl<T>(this);
+			right.build(sorted, mid + 1, hi);
+			this.setRightBST(right);
+		}
+		this.updateMeasures();
+	}
+
 	/**
 	 * Inserta (como hoja) un nuevo elemento en el árbol de búsqueda.
 	 * 
@@ -196,30 +575,124 @@ public class BinarySearchTreeImpl<T extends Comparable<? super T>> extends
 	 * 
 	 * @param element
 	 *            valor a insertar.
+	 * Si este árbol es un hijo vacío obtenido con getLeftBST() o
+	 * getRightBST(), pasa a colgar del padre.
+	 * 
 	 * @return true si se pudo insertar (no existia ese elemento en el arbol, false en caso contrario
 	 * @throws IllegalArgumentException si element es null           
 	 */
 	public boolean insert(T element) {
-    //	TODO Implementar el método
-		boolean insertado = false;
+		OperationMetrics.Probe probe = state.probe;
+		if(probe == null || this.father != null){
+			return insertElement(element);
+		}
+		long start = probe.start();
+		try{
+			return insertElement(element);
+		}finally{
+			probe.record(OperationMetrics.Operation.INSERT, start);
+		}
+	}
+
+	private boolean insertElement(T element) {
 		if(element == null){
 			throw new IllegalArgumentException();
 		}
-		if(!this.isEmpty()){
-			if(this.getContent().compareTo(element) > 0){
-				insertado = false || getLeftBST().insert(element);
-			}else if(this.getContent().compareTo(element) < 0){
-				insertado = false ||getRightBST().insert(element);
+		if(this.isEmpty()){
+			if(isDetached()){
+				//	Vacío de getLeftBST()/getRightBST(): pasa a ser el hijo
+				//	del padre en el que iría element, si sigue libre; si no,
+				//	se inserta desde el padre
+				if(father.isEmpty()){
+					return father.insertElement(element);
+				}
+				int cmp = father.getContent().compareTo(element);
+				if(cmp == 0 || (cmp > 0 ? father.left() : father.right()) != EMPTY){
+					return father.insertElement(element);
+				}
+				this.fill(element);
+				if(cmp > 0){
+					father.setLeftBST(this);
+				}else{
+					father.setRightBST(this);
+				}
+			}else{
+				this.fill(element);
 			}
+			retrace(this.father);
+			state.modCount++;
+			filterAdd(element);
+			return true;
+		}
+		//	Nodo del que debe colgar el elemento
+		BinarySearchTreeImpl<T> node = search(element);
+		int cmp = node.getContent().compareTo(element);
+		if(cmp == 0){
+			return false;
+		}
+		BinarySearchTreeImpl<T> added = leaf(node, element);
+		if(cmp > 0){
+			node.setLeftBST(added);
 		}else{
-			this.setContent(element);
-			this.setLeftBST(emptyBST(this));
-			this.setRightBST(emptyBST(this));
-			insertado = true;
+			node.setRightBST(added);
 		}
-	
-		return insertado;
-	
+		if(state.fingerSearch){
+			state.finger = added;
+		}
+		retrace(node);
+		if(state.scapegoatAlpha > 0 && state.balance == Balance.NONE){
+			rebuildScapegoat(added);
+		}
+		state.modCount++;
+		filterAdd(element);
+		return true;
+	}
+
+	/**
+	 * Si la hoja recién insertada ha quedado demasiado honda para el
+	 * tamaño del árbol, reconstruye perfectamente equilibrado su
+	 * antepasado más bajo para el que el camino hasta ella también es
+	 * demasiado largo (el chivo expiatorio), que existe porque para la
+	 * raíz lo es.
+	 */
+	private void rebuildScapegoat(BinarySearchTreeImpl<T> added) {
+		int depth = 1;
+		BinarySearchTreeImpl<T> root = added;
+		while(root.father != null){
+			root = root.father;
+			depth++;
+		}
+		if(!isTooLong(depth, root.subtreeSize)){
+			return;
+		}
+		//	La hoja sola nunca lo es: empieza por su padre
+		BinarySearchTreeImpl<T> scapegoat = added.father;
+		int length = 2;
+		while(!isTooLong(length, scapegoat.subtreeSize)){
+			scapegoat = scapegoat.father;
+			length++;
+		}
+		Object[] sorted = new Object[scapegoat.size()];
+		scapegoat.copyInorder(sorted, 0, Execution.SEQUENTIAL);
+		scapegoat.build(sorted, 0, sorted.length);
+		for(BinarySearchTreeImpl<T> n = scapegoat; n.father != null; ){
+			n = n.father;
+			n.updateMeasures();
+		}
+		state.rebuilds++;
+		state.rebuiltNodes += sorted.length;
+	}
+
+	//	Cierto si un camino de length nodos pasa de α·log2(n + 1) para un
+	//	sub-árbol de n nodos y se puede acortar (un árbol de n nodos puede
+	//	tener altura ceil(log2(n + 1)))
+	private boolean isTooLong(int length, int size) {
+		return length > 32 - Integer.numberOfLeadingZeros(size)
+				&& length > state.scapegoatAlpha * log2(size + 1);
+	}
+
+	private static double log2(double x) {
+		return Math.log(x) / Math.log(2);
 	}
 	
 
@@ -232,144 +705,1148 @@ public class BinarySearchTreeImpl<T extends Comparable<? super T>> extends
 	 * @return true si el elemento está en el árbol, false en caso contrario          
 	 */
 	public boolean contains(T element) {
-		// TODO Implementar el método
-		boolean contain = false;
-		if(element != null){
-			if(!this.isEmpty()) {
-				contain = this.getContent().equals(element);
-				if (this.getContent().compareTo(element) < 0) {
-					contain = contain || this.getRightBST().contains(element);
-				}else {
-					contain = contain || this.getLeftBST().contains(element);
-				}
+		OperationMetrics.Probe probe = state.probe;
+		if(probe == null || this.father != null){
+			return containsElement(element);
+		}
+		long start = probe.start();
+		try{
+			return containsElement(element);
+		}finally{
+			probe.record(OperationMetrics.Operation.CONTAINS, start);
+		}
+	}
+
+	private boolean containsElement(T element) {
+		if(element == null){
+			throw new IllegalArgumentException();
+		}
+		if(state.filter != null && this.father == null){
+			if(!state.filter.mightContain(element)){
+				state.filterRejections++;
+				return false;
 			}
-		}else throw new IllegalArgumentException();
-		return contain;
+			if(this.isEmpty() || search(element).getContent().compareTo(element) != 0){
+				state.filterFalsePositives++;
+				return false;
+			}
+			return true;
+		}
+		return !this.isEmpty() && search(element).getContent().compareTo(element) == 0;
 	}
-	
+
 	/**
-	 * Elimina los valores en un array del árbol.
-	 * O todos o ninguno; si alguno es 'null'o no lo contiene el árbol, no se eliminará ningún elemento
+	 * Activa un filtro de pertenencia (un filtro de Bloom con contadores)
+	 * delante de {@link #contains(Comparable)}, para que la mayoría de las
+	 * búsquedas de elementos que no están se respondan con unas pocas
+	 * consultas al filtro, sin recorrer el árbol.
 	 * 
-	 * @throws NoSuchElementException si alguno de los elementos a eliminar no está en el árbol           
+	 * El filtro se mantiene al insertar y borrar, y se redimensiona cuando
+	 * el árbol crece por encima de lo previsto mientras quepa en maxBytes;
+	 * a partir de ahí la tasa de falsos positivos real irá empeorando. Nunca
+	 * da falsos negativos, pero usa hashCode(), así que sólo sirve si los
+	 * elementos iguales según compareTo() tienen el mismo hashCode() (como
+	 * Integer o String).
+	 * 
+	 * @param falsePositiveRate proporción deseada de búsquedas fallidas que
+	 *                          el filtro deja pasar, en (0, 1).
+	 * @param maxBytes memoria máxima para el filtro, al menos 8 bytes.
+	 * @throws IllegalArgumentException si algún parámetro está fuera de rango
 	 */
-	public void remove(T ... elements) {
-	    // TODO Implementar el método
-		for(T element : elements) {
-			if (element == null ) {
-				throw new IllegalArgumentException();
-			}else if(!this.contains(element)){
-				throw new NoSuchElementException();
-			}
+	public void setMembershipFilter(double falsePositiveRate, long maxBytes) {
+		if(!(falsePositiveRate > 0 && falsePositiveRate < 1) || maxBytes < 8){
+			throw new IllegalArgumentException();
 		}
+		state.filterFalsePositiveRate = falsePositiveRate;
+		state.filterMaxBytes = maxBytes;
+		state.filterRejections = 0;
+		state.filterFalsePositives = 0;
+		resizeFilter(2 * this.size());
+	}
 
-		for(T element : elements){
-			remove(element);
-		}
+	/**
+	 * Desactiva el filtro de pertenencia, liberando su memoria.
+	 */
+	public void removeMembershipFilter() {
+		state.filter = null;
 	}
-	
+
 	/**
-	 * Elimina un elemento del árbol.
-	 * 
-	 * Si el elemento tiene dos hijos, se tomará el criterio de sustituir el elemento por
-	 *  el menor de sus mayores y eliminar el menor de los mayores.
-	 * 
-	 * @throws NoSuchElementException si el elemento a eliminar no está en el árbol           
+	 * Cierto si hay un filtro de pertenencia activo.
 	 */
-	public void remove(T element) {
-		// TODO Implementar el método
-		BinarySearchTreeImpl<T> subtree;
-		if(element == null){
-			throw new IllegalArgumentException();
-		}else if(!this.contains(element)){
-			throw new NoSuchElementException();
+	public boolean hasMembershipFilter() {
+		return state.filter != null;
+	}
+
+	/**
+	 * Número de búsquedas que el filtro de pertenencia ha respondido sin
+	 * recorrer el árbol.
+	 */
+	public long getFilterRejections() {
+		return state.filterRejections;
+	}
+
+	/**
+	 * Número de búsquedas que pasaron el filtro de pertenencia y no
+	 * encontraron el elemento (falsos positivos del filtro).
+	 */
+	public long getFilterFalsePositives() {
+		return state.filterFalsePositives;
+	}
+
+	//	Crea el filtro para capacity elementos y lo llena con los del árbol
+	private void resizeFilter(int capacity) {
+		state.filter = new CountingBloomFilter(Math.max(capacity, 64), state.filterFalsePositiveRate, state.filterMaxBytes);
+		for(BinarySearchTreeImpl<T> node = firstInorder(); node != null; node = nextInorder(node)){
+			state.filter.add(node.getContent());
 		}
+	}
 
-		if(this.getContent().compareTo(element) > 0){
-			this.getLeftBST().remove(element);
-		}else if(this.getContent().compareTo(element) < 0){
-			this.getRightBST().remove(element);
-		}else{
-			if(this.isLeaf()){
-				this.setContent(null);
-				this.setRightBST(null);
-				this.setLeftBST(null);
+	//	Añade al filtro un elemento recién insertado, agrandándolo si hace falta
+	private void filterAdd(T element) {
+		CountingBloomFilter filter = state.filter;
+		if(filter != null){
+			if(this.father == null && this.size() > filter.capacity() && !filter.isAtLimit(state.filterMaxBytes)){
+				resizeFilter(2 * this.size());
 			}else{
-				if(this.getRightBST().isEmpty()) {
-					this.setContent(this.getLeftBST().getContent());
-					this.setRightBST(this.getLeftBST().getRightBST());
-					this.setLeftBST(this.getLeftBST().getLeftBST());
-				}else if(this.getLeftBST().isEmpty()){
-					this.setContent(this.getRightBST().getContent());
-					this.setLeftBST(this.getRightBST().getLeftBST());
-					this.setRightBST(this.getRightBST().getRightBST());
-				}else{
-					subtree = this.getRightBST();
-					while(!subtree.getLeftBST().isEmpty()){
-						subtree = subtree.getLeftBST();
-					}
-					this.setContent(subtree.getContent());
-					this.getRightBST().remove(subtree.getContent());
-				}
+				filter.add(element);
 			}
 		}
+	}
 
+	//	Rehace el filtro tras un cambio en bloque del árbol, desde la raíz
+	private void refreshFilter() {
+		if(state.filter != null){
+			BinarySearchTreeImpl<T> root = this;
+			while(root.father != null){
+				root = root.father;
+			}
+			root.resizeFilter(Math.max(state.filter.capacity(), 2 * root.size()));
+		}
 	}
-	
+
 	/**
-	 * Importante: Solamente se puede recorrer el árbol una vez
-	 * 
-	 * Etiqueta cada nodo con la etiqueta "height" y el valor correspondiente a la altura del nodo.
-	 * 
-	 * Por ejemplo, sea un árbol "A":
-	 * 
-	 * {10, {5, {2, ∅, ∅}, ∅}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}
-	 * 
-     * 10
-     * |  5
-     * |  |  2
-     * |  |  |  ∅
-     * |  |  |  ∅
-     * |  |  ∅
-     * |  20
-     * |  |  15
-     * |  |  |  ∅
-     * |  |  |  ∅ 
-     * |  |  30
-     * |  |  |  ∅
-     * |  |  |  ∅
-     * 
-	 * 
-	 * el árbol quedaría etiquetado:
-	 * 
-	 *   {10 [(height, 1)], {5 [(height, 2)], {2 [(height, 3)], ∅, ∅}, ∅},
-	 *               {20 [(height, 2)], {15 [(height, 3)], {12 [(height, 4)], ∅, ∅}, ∅}, ∅}}
+	 * Nodo en el que acaba la búsqueda de element en este árbol, que no
+	 * debe ser vacío: el que lo contiene o, si no está, el último no vacío
+	 * del descenso (del que colgaría como hoja).
 	 * 
+	 * En modo búsqueda por dedo la búsqueda no parte de la raíz sino del
+	 * último nodo accedido; ver {@link #setFingerSearch(boolean)}.
 	 */
-	public void tagHeight() {
-	// TODO implementar el método
-		if(!this.isEmpty()){
-			if(this.father == null){
-				this.setTag("height", 1);
-			}else{
-				this.setTag("height", ((int)father.getTag("height")) + 1);
+	private BinarySearchTreeImpl<T> search(T element) {
+		BinarySearchTreeImpl<T> node = this;
+		if(state.fingerSearch && this.father == null){
+			node = climb(element);
+		}
+		int steps = 0;
+		while(true){
+			steps++;
+			int cmp = node.getContent().compareTo(element);
+			BinarySearchTreeImpl<T> next = (cmp > 0) ? node.left() : node.right();
+			if(cmp == 0 || next.isEmpty()){
+				break;
+			}
+			node = next;
+		}
+		if(state.fingerSearch){
+			state.finger = node;
+		}
+		OperationMetrics.Probe probe = state.probe;
+		if(probe != null){
+			//	Quien llama compara una vez más con el nodo devuelto
+			probe.comparisons += steps + 1;
+			probe.visited += steps;
+			int depth = 1;
+			for(BinarySearchTreeImpl<T> n = node; n != this; n = n.father){
+				depth++;
 			}
-			this.getRightBST().tagHeight();
-			this.getLeftBST().tagHeight();
+			probe.depth = Math.max(probe.depth, depth);
 		}
+		return node;
 	}
-	
-	
+
 	/**
-	 * Importante: Solamente se puede recorrer el árbol una vez
-	 * 
-	 * Etiqueta cada nodo con el valor correspondiente al número de descendientes que tiene en este árbol.
-	 * 
-	 * Por ejemplo, sea un árbol "A":
-	 * 
-	 * {10, {5, {2, ∅, ∅}, ∅}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}
+	 * Sube por los padres desde el último nodo accedido hasta el primero
+	 * cuyo sub-árbol abarca element, desde donde se puede descender.
 	 * 
-     * 10
+	 * Si element es mayor que el dedo, todo el sub-árbol de cualquier
+	 * antepasado ya cumple la cota inferior, así que basta con subir hasta
+	 * salir por la izquierda de un padre mayor que element (o igual, y
+	 * entonces es ése); si es menor, al revés. Cuesta O(log d) en un árbol
+	 * equilibrado, siendo d la distancia en posiciones entre las dos claves.
+	 */
+	@SuppressWarnings("unchecked")
+	private BinarySearchTreeImpl<T> climb(T element) {
+		BinarySearchTreeImpl<T> node = (BinarySearchTreeImpl<T>) state.finger;
+		if(node == null){
+			state.fingerMisses++;
+			return this;
+		}
+		int cmp = element.compareTo(node.getContent());
+		int climbed = 1;
+		while(cmp != 0 && node != this){
+			BinarySearchTreeImpl<T> parent = node.father;
+			climbed++;
+			int toParent = element.compareTo(parent.getContent());
+			if(cmp > 0 ? (node == parent.left() && toParent <= 0) : (node == parent.right() && toParent >= 0)){
+				if(toParent == 0){
+					node = parent;
+				}
+				break;
+			}
+			node = parent;
+		}
+		if(node == this){
+			state.fingerMisses++;
+		}else{
+			state.fingerHits++;
+		}
+		if(state.probe != null){
+			state.probe.comparisons += climbed;
+			state.probe.visited += climbed;
+		}
+		return node;
+	}
+
+	/**
+	 * Empieza a recoger métricas de {@link #insert(Comparable)},
+	 * {@link #contains(Comparable)} y {@link #remove(Comparable)} en
+	 * metrics, o deja de hacerlo si es null. Sólo se miden las llamadas
+	 * sobre la raíz del árbol, también las que acaban en excepción.
+	 * 
+	 * Las comparaciones son las llamadas a compareTo() y los nodos
+	 * visitados los que se recorren al subir (en búsqueda por dedo) y al
+	 * descender; no se cuentan las del reequilibrado ni las del borrado de
+	 * un nodo con dos hijos. Las que el filtro de pertenencia responde sin
+	 * recorrer el árbol cuentan con cero.
+	 * 
+	 * @param metrics dónde acumularlas, que puede compartirse entre árboles.
+	 */
+	public void setMetrics(OperationMetrics metrics) {
+		state.probe = (metrics == null) ? null : new OperationMetrics.Probe(metrics);
+	}
+
+	/**
+	 * Métricas en las que se están recogiendo las operaciones, o null.
+	 */
+	public OperationMetrics getMetrics() {
+		return (state.probe == null) ? null : state.probe.metrics;
+	}
+
+	/**
+	 * Activa la reconstrucción al degenerar, al estilo de los árboles
+	 * chivo expiatorio (scapegoat trees), como alternativa menos invasiva
+	 * que el modo AVL: la forma sigue dependiendo del orden de inserción
+	 * mientras la altura no pase de α·log2(n + 1).
+	 * 
+	 * Si tras una inserción el nuevo nodo queda a una profundidad mayor,
+	 * se reconstruye en su sitio, perfectamente equilibrado, su
+	 * antepasado más bajo para el que el camino hasta el nuevo nodo
+	 * también es demasiado largo para el tamaño de su sub-árbol, con lo
+	 * que el coste amortizado de insertar es O(log n). Los nodos
+	 * reconstruidos pierden sus etiquetas; los demás, incluidos los de
+	 * fuera del sub-árbol, no cambian.
+	 * 
+	 * Sólo se mira el camino del nodo insertado: los borrados no provocan
+	 * reconstrucciones, y si el árbol ya era más alto al activarla, sus
+	 * ramas hondas no se rehacen hasta que se inserte en ellas.
+	 * 
+	 * En modo AVL no tiene efecto. Al activarla se ponen a cero los
+	 * contadores.
+	 * 
+	 * @param alpha factor de altura permitido, al menos 1 (p.ej. 2 deja
+	 *              que el árbol llegue al doble de la altura mínima).
+	 * @throws IllegalArgumentException si alpha es menor que 1
+	 */
+	public void setScapegoatRebuild(double alpha) {
+		if(!(alpha >= 1) || Double.isInfinite(alpha)){
+			throw new IllegalArgumentException();
+		}
+		state.scapegoatAlpha = alpha;
+		state.rebuilds = 0;
+		state.rebuiltNodes = 0;
+	}
+
+	/**
+	 * Desactiva la reconstrucción al degenerar.
+	 */
+	public void removeScapegoatRebuild() {
+		state.scapegoatAlpha = 0;
+	}
+
+	/**
+	 * Cierto si está activa la reconstrucción al degenerar.
+	 */
+	public boolean hasScapegoatRebuild() {
+		return state.scapegoatAlpha > 0;
+	}
+
+	/**
+	 * Número de sub-árboles reconstruidos al degenerar.
+	 */
+	public long getRebuildCount() {
+		return state.rebuilds;
+	}
+
+	/**
+	 * Número total de nodos de los sub-árboles reconstruidos al degenerar.
+	 */
+	public long getRebuiltNodes() {
+		return state.rebuiltNodes;
+	}
+
+	/**
+	 * Altura del árbol dividida entre log2(n + 1), siendo n su tamaño: el
+	 * factor que la reconstrucción al degenerar compara con α. Vale entre
+	 * 1 y algo más para un árbol equilibrado, y n / log2(n + 1) para una
+	 * lista.
+	 * 
+	 * @return el cociente, o 0 si el árbol es vacío.
+	 */
+	public double getImbalanceRatio() {
+		return this.isEmpty() ? 0 : subtreeHeight / log2(subtreeSize + 1);
+	}
+
+	/**
+	 * Activa o desactiva la búsqueda por dedo (finger search).
+	 * 
+	 * Con ella activa el árbol recuerda el último nodo accedido por
+	 * {@link #insert(Comparable)}, {@link #contains(Comparable)} o
+	 * {@link #remove(Comparable)} y la siguiente búsqueda sube desde él,
+	 * por los padres, sólo lo necesario antes de descender, en lugar de
+	 * partir siempre de la raíz. Compensa cuando las claves consecutivas
+	 * suelen estar cerca; si no, cuesta hasta el doble de comparaciones.
+	 * Sólo se aplica a las llamadas sobre la raíz del árbol.
+	 * 
+	 * Al cambiar de modo se ponen a cero los contadores.
+	 * 
+	 * @param enabled cierto para activarla.
+	 */
+	public void setFingerSearch(boolean enabled) {
+		state.fingerSearch = enabled;
+		state.finger = null;
+		state.fingerHits = 0;
+		state.fingerMisses = 0;
+	}
+
+	/**
+	 * Cierto si está activa la búsqueda por dedo.
+	 */
+	public boolean isFingerSearch() {
+		return state.fingerSearch;
+	}
+
+	/**
+	 * Número de búsquedas por dedo que no tuvieron que subir hasta la raíz.
+	 */
+	public long getFingerHits() {
+		return state.fingerHits;
+	}
+
+	/**
+	 * Número de búsquedas por dedo que empezaron desde la raíz (por no
+	 * haber dedo o por tener que subir hasta ella).
+	 */
+	public long getFingerMisses() {
+		return state.fingerMisses;
+	}
+	
+	/**
+	 * Elimina los valores en un array del árbol.
+	 * O todos o ninguno; si alguno es 'null'o no lo contiene el árbol, no se eliminará ningún elemento
+	 * 
+	 * Una vez comprobados, se borran uno a uno con el criterio de
+	 * {@link #remove(Comparable)}, con un único descenso cada uno; los
+	 * repetidos se borran una vez. A diferencia de
+	 * {@link #removeAll(Collection)}, nunca reconstruye el árbol.
+	 * 
+	 * @throws IllegalArgumentException si alguno de los elementos es null
+	 * @throws NoSuchElementException si alguno de los elementos a eliminar no está en el árbol           
+	 */
+	public void remove(T ... elements) {
+		for(T element : elements){
+			if(element == null){
+				throw new IllegalArgumentException();
+			}
+		}
+		for(T element : elements){
+			if(!this.contains(element)){
+				throw new NoSuchElementException();
+			}
+		}
+		for(T element : elements){
+			//	Si ya no está, es un repetido que ya se ha borrado
+			removeElement(element);
+		}
+	}
+	
+	/**
+	 * Borrado masivo: elimina del árbol los elementos de una colección.
+	 * O todos o ninguno; si alguno es 'null' o no lo contiene el árbol, no se eliminará ningún elemento
+	 * 
+	 * Los elementos se ordenan y se eliminan repetidos. Si son pocos
+	 * comparados con el tamaño del árbol, se comprueban y se borran uno a
+	 * uno, con un único descenso cada uno. Si no, se recorre el árbol en
+	 * inorden una sola vez a la par que los elementos ordenados, con lo que
+	 * a la vez se comprueba que estén todos y se obtienen los que quedan, y
+	 * se reconstruye el árbol equilibrado con ellos (como en
+	 * {@link #bulkInsert(Collection)}, sin conservar las etiquetas).
+	 * 
+	 * @param elements valores a eliminar.
+	 * @return numero de elementos eliminados (los repetidos cuentan una vez)
+	 * @throws IllegalArgumentException si alguno de los elementos es null
+	 * @throws NoSuchElementException si alguno de los elementos a eliminar no está en el árbol
+	 */
+	@SuppressWarnings("unchecked")
+	public int removeAll(Collection<? extends T> elements) {
+		Object[] batch = elements.toArray();
+		for(Object item : batch){
+			if(item == null){
+				throw new IllegalArgumentException();
+			}
+		}
+		Arrays.sort(batch);
+		int m = removeDuplicates(batch);
+		if(m == 0){
+			return 0;
+		}
+
+		int n = this.size();
+		if((long) m * (32 - Integer.numberOfLeadingZeros(n)) < n){
+			for(int j = 0; j < m; j++){
+				if(!this.contains((T) batch[j])){
+					throw new NoSuchElementException();
+				}
+			}
+			for(int j = 0; j < m; j++){
+				this.remove((T) batch[j]);
+			}
+			return m;
+		}
+
+		//	Mezcla: se quedan los del árbol que no están en el lote
+		Object[] kept = new Object[n];
+		int k = 0, j = 0;
+		for(BinarySearchTreeImpl<T> node = firstInorder(); node != null; node = nextInorder(node)){
+			int cmp = (j < m) ? node.getContent().compareTo((T) batch[j]) : -1;
+			if(cmp > 0){
+				//	batch[j] es menor que todos los que quedan: no está
+				throw new NoSuchElementException();
+			}else if(cmp == 0){
+				j++;
+			}else{
+				kept[k++] = node.getContent();
+			}
+		}
+		if(j < m){
+			throw new NoSuchElementException();
+		}
+
+		if(k > 0){
+			this.build(kept, 0, k);
+		}else{
+			this.clear();
+		}
+		state.modCount++;
+		refreshFilter();
+		return m;
+	}
+
+	/*
+	 * Álgebra de conjuntos. Todas las operaciones siguen el mismo esquema
+	 * que bulkInsert: se sacan las claves en inorden a un array (ya
+	 * ordenadas), se mezclan las dos secuencias en tiempo lineal y se
+	 * construye con el resultado un árbol perfectamente equilibrado. El
+	 * coste es O(n + m) sea cual sea la forma de los árboles de partida,
+	 * y los resultados no conservan las etiquetas de los nodos.
+	 *
+	 * Con Execution.PARALLEL cada una de las tres fases se reparte en
+	 * tareas del ForkJoinPool común: el volcado y la construcción por
+	 * sub-árboles, y la mezcla partiendo a la vez las dos secuencias por
+	 * la mediana de la más larga.
+	 */
+
+	//	Operaciones que resuelve la mezcla de dos secuencias ordenadas
+	private enum SetOperation {
+		UNION, INTERSECTION, DIFFERENCE
+	}
+
+	/**
+	 * Devuelve un árbol nuevo, equilibrado, con los elementos que están en
+	 * este árbol o en other (o en los dos). Ninguno de los dos se modifica.
+	 * El resultado usa el mismo modo de equilibrado que este árbol.
+	 * 
+	 * @param other el otro árbol.
+	 * @return la unión de los dos árboles.
+	 * @throws IllegalArgumentException si other es null
+	 */
+	public BinarySearchTreeImpl<T> union(BinarySearchTreeImpl<T> other) {
+		return union(other, Execution.SEQUENTIAL);
+	}
+
+	/**
+	 * Como {@link #union(BinarySearchTreeImpl)}, eligiendo cómo ejecutarlo.
+	 */
+	public BinarySearchTreeImpl<T> union(BinarySearchTreeImpl<T> other, Execution execution) {
+		return combine(other, SetOperation.UNION, execution);
+	}
+
+	/**
+	 * Devuelve un árbol nuevo, equilibrado, con los elementos que están a
+	 * la vez en este árbol y en other. Ninguno de los dos se modifica.
+	 * 
+	 * @param other el otro árbol.
+	 * @return la intersección de los dos árboles.
+	 * @throws IllegalArgumentException si other es null
+	 */
+	public BinarySearchTreeImpl<T> intersection(BinarySearchTreeImpl<T> other) {
+		return intersection(other, Execution.SEQUENTIAL);
+	}
+
+	/**
+	 * Como {@link #intersection(BinarySearchTreeImpl)}, eligiendo cómo ejecutarlo.
+	 */
+	public BinarySearchTreeImpl<T> intersection(BinarySearchTreeImpl<T> other, Execution execution) {
+		return combine(other, SetOperation.INTERSECTION, execution);
+	}
+
+	/**
+	 * Devuelve un árbol nuevo, equilibrado, con los elementos de este
+	 * árbol que no están en other. Ninguno de los dos se modifica.
+	 * 
+	 * @param other el otro árbol.
+	 * @return la diferencia entre este árbol y other.
+	 * @throws IllegalArgumentException si other es null
+	 */
+	public BinarySearchTreeImpl<T> difference(BinarySearchTreeImpl<T> other) {
+		return difference(other, Execution.SEQUENTIAL);
+	}
+
+	/**
+	 * Como {@link #difference(BinarySearchTreeImpl)}, eligiendo cómo ejecutarlo.
+	 */
+	public BinarySearchTreeImpl<T> difference(BinarySearchTreeImpl<T> other, Execution execution) {
+		return combine(other, SetOperation.DIFFERENCE, execution);
+	}
+
+	/**
+	 * Parte el árbol por key: este árbol se queda con los elementos
+	 * menores que key y se devuelve un árbol nuevo con los mayores o
+	 * iguales. Los dos quedan equilibrados.
+	 * 
+	 * @param key valor por el que se parte.
+	 * @return árbol con los elementos mayores o iguales que key.
+	 * @throws IllegalArgumentException si key es null
+	 */
+	public BinarySearchTreeImpl<T> split(T key) {
+		return split(key, Execution.SEQUENTIAL);
+	}
+
+	/**
+	 * Como {@link #split(Comparable)}, eligiendo cómo ejecutarlo.
+	 */
+	@SuppressWarnings("unchecked")
+	public BinarySearchTreeImpl<T> split(T key, Execution execution) {
+		if(key == null || execution == null){
+			throw new IllegalArgumentException();
+		}
+		Object[] all = this.toSortedArray(execution);
+		//	Primera posición con un elemento mayor o igual que key
+		int lo = 0, hi = all.length;
+		while(lo < hi){
+			int mid = (lo + hi) >>> 1;
+			if(((T) all[mid]).compareTo(key) < 0){
+				lo = mid + 1;
+			}else{
+				hi = mid;
+			}
+		}
+		BinarySearchTreeImpl<T> greater = new BinarySearchTreeImpl<T>(state.balance);
+		greater.rebuild(all, lo, all.length, execution);
+		this.rebuild(all, 0, lo, execution);
+		state.modCount++;
+		refreshFilter();
+		return greater;
+	}
+
+	/**
+	 * Devuelve un árbol nuevo, equilibrado, con los elementos de left y
+	 * de right, sabiendo que todos los de left son menores que todos los
+	 * de right. Ninguno de los dos se modifica. El resultado usa el mismo
+	 * modo de equilibrado que left.
+	 * 
+	 * @param left árbol con los elementos menores.
+	 * @param right árbol con los elementos mayores.
+	 * @return la unión de los dos árboles.
+	 * @throws IllegalArgumentException si alguno es null o si no todos los
+	 *                                  elementos de left son menores que
+	 *                                  los de right
+	 */
+	public static <T extends Comparable<? super T>> BinarySearchTreeImpl<T> join(BinarySearchTreeImpl<T> left, BinarySearchTreeImpl<T> right) {
+		return join(left, right, Execution.SEQUENTIAL);
+	}
+
+	/**
+	 * Como {@link #join(BinarySearchTreeImpl, BinarySearchTreeImpl)}, eligiendo cómo ejecutarlo.
+	 */
+	public static <T extends Comparable<? super T>> BinarySearchTreeImpl<T> join(BinarySearchTreeImpl<T> left, BinarySearchTreeImpl<T> right, Execution execution) {
+		if(left == null || right == null || execution == null){
+			throw new IllegalArgumentException();
+		}
+		if(!left.isEmpty() && !right.isEmpty() && left.last().compareTo(right.first()) >= 0){
+			throw new IllegalArgumentException();
+		}
+		Object[] all = new Object[left.size() + right.size()];
+		left.copyInorder(all, 0, execution);
+		right.copyInorder(all, left.size(), execution);
+		BinarySearchTreeImpl<T> result = new BinarySearchTreeImpl<T>(left.state.balance);
+		result.rebuild(all, 0, all.length, execution);
+		return result;
+	}
+
+	private BinarySearchTreeImpl<T> combine(BinarySearchTreeImpl<T> other, SetOperation operation, Execution execution) {
+		if(other == null || execution == null){
+			throw new IllegalArgumentException();
+		}
+		Object[] a = this.toSortedArray(execution);
+		Object[] b = other.toSortedArray(execution);
+		Object[] out = new Object[a.length + b.length];
+		int n;
+		if(execution == Execution.PARALLEL){
+			MergeTask task = new MergeTask(operation, a, 0, a.length, b, 0, b.length, out);
+			ForkJoinPool.commonPool().invoke(task);
+			n = task.compact();
+		}else{
+			n = merge(operation, a, 0, a.length, b, 0, b.length, out, 0);
+		}
+		BinarySearchTreeImpl<T> result = new BinarySearchTreeImpl<T>(state.balance);
+		result.rebuild(out, 0, n, execution);
+		return result;
+	}
+
+	/**
+	 * Mezcla a[alo, ahi) y b[blo, bhi), ordenados y sin repetidos, según
+	 * la operación, y deja el resultado (también ordenado) en out a partir
+	 * de from.
+	 * 
+	 * @return número de elementos escritos en out
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T extends Comparable<? super T>> int merge(SetOperation operation, Object[] a, int alo, int ahi, Object[] b, int blo, int bhi, Object[] out, int from) {
+		int i = alo, j = blo, k = from;
+		while(i < ahi && j < bhi){
+			int cmp = ((T) a[i]).compareTo((T) b[j]);
+			if(cmp < 0){
+				if(operation != SetOperation.INTERSECTION){
+					out[k++] = a[i];
+				}
+				i++;
+			}else if(cmp > 0){
+				if(operation == SetOperation.UNION){
+					out[k++] = b[j];
+				}
+				j++;
+			}else{
+				if(operation != SetOperation.DIFFERENCE){
+					out[k++] = a[i];
+				}
+				i++;
+				j++;
+			}
+		}
+		if(operation != SetOperation.INTERSECTION){
+			while(i < ahi){
+				out[k++] = a[i++];
+			}
+		}
+		if(operation == SetOperation.UNION){
+			while(j < bhi){
+				out[k++] = b[j++];
+			}
+		}
+		return k - from;
+	}
+
+	/**
+	 * Mezcla en paralelo. Cada tarea escribe en out a partir de alo + blo,
+	 * con hueco para (ahi - alo) + (bhi - blo) elementos, así que las
+	 * tareas no se pisan; al final compact() junta los trozos.
+	 */
+	private static final class MergeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final SetOperation operation;
+		private final Object[] a, b, out;
+		private final int alo, ahi, blo, bhi;
+
+		//	Elementos escritos, si es una hoja, o las dos mitades si no
+		private int count;
+		private MergeTask low, high;
+
+		MergeTask(SetOperation operation, Object[] a, int alo, int ahi, Object[] b, int blo, int bhi, Object[] out) {
+			this.operation = operation;
+			this.a = a;
+			this.alo = alo;
+			this.ahi = ahi;
+			this.b = b;
+			this.blo = blo;
+			this.bhi = bhi;
+			this.out = out;
+		}
+
+		@Override
+		protected void compute() {
+			if((ahi - alo) + (bhi - blo) <= PARALLEL_THRESHOLD){
+				count = merge(operation, a, alo, ahi, b, blo, bhi, out, alo + blo);
+				return;
+			}
+			//	Se parte la secuencia más larga por la mitad y la otra por la
+			//	misma clave: los iguales quedan en la misma mitad
+			int amid, bmid;
+			if(ahi - alo >= bhi - blo){
+				amid = (alo + ahi) >>> 1;
+				bmid = lowerBound(b, blo, bhi, a[amid]);
+			}else{
+				bmid = (blo + bhi) >>> 1;
+				amid = lowerBound(a, alo, ahi, b[bmid]);
+			}
+			low = new MergeTask(operation, a, alo, amid, b, blo, bmid, out);
+			high = new MergeTask(operation, a, amid, ahi, b, bmid, bhi, out);
+			invokeAll(low, high);
+		}
+
+		/**
+		 * Junta al principio de out los trozos escritos por las hojas, en
+		 * orden, sin recursividad.
+		 * 
+		 * @return número total de elementos
+		 */
+		int compact() {
+			int n = 0;
+			ArrayDeque<MergeTask> pending = new ArrayDeque<MergeTask>();
+			pending.push(this);
+			while(!pending.isEmpty()){
+				MergeTask task = pending.pop();
+				if(task.low == null){
+					System.arraycopy(out, task.alo + task.blo, out, n, task.count);
+					n += task.count;
+				}else{
+					pending.push(task.high);
+					pending.push(task.low);
+				}
+			}
+			return n;
+		}
+	}
+
+	//	Primera posición de sorted[lo, hi) con un elemento mayor o igual que key
+	@SuppressWarnings("unchecked")
+	private static <T extends Comparable<? super T>> int lowerBound(Object[] sorted, int lo, int hi, Object key) {
+		while(lo < hi){
+			int mid = (lo + hi) >>> 1;
+			if(((T) sorted[mid]).compareTo((T) key) < 0){
+				lo = mid + 1;
+			}else{
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	//	Elementos del árbol en inorden
+	private Object[] toSortedArray(Execution execution) {
+		Object[] all = new Object[this.size()];
+		copyInorder(all, 0, execution);
+		return all;
+	}
+
+	//	Copia los elementos del árbol en inorden en out a partir de from
+	private void copyInorder(Object[] out, int from, Execution execution) {
+		if(this.isEmpty()){
+			return;
+		}
+		if(execution == Execution.PARALLEL){
+			ForkJoinPool.commonPool().invoke(new CopyTask(this, out, from));
+			return;
+		}
+		int k = from;
+		for(BinarySearchTreeImpl<T> node = firstInorder(); node != null; node = nextInorder(node)){
+			out[k++] = node.getContent();
+		}
+	}
+
+	/**
+	 * Volcado en paralelo: el tamaño del sub-árbol izquierdo de cada nodo
+	 * dice en qué posición va, así que los dos hijos se copian a la vez.
+	 */
+	private static final class CopyTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final BinarySearchTreeImpl<?> tree;
+		private final Object[] out;
+		private final int from;
+
+		CopyTask(BinarySearchTreeImpl<?> tree, Object[] out, int from) {
+			this.tree = tree;
+			this.out = out;
+			this.from = from;
+		}
+
+		@Override
+		protected void compute() {
+			//	Sólo se reparte si los dos hijos son grandes: en un árbol muy
+			//	desequilibrado la recursión no sería logarítmica
+			if(Math.min(tree.left().subtreeSize, tree.right().subtreeSize) <= PARALLEL_THRESHOLD){
+				tree.copyInorder(out, from, Execution.SEQUENTIAL);
+				return;
+			}
+			int mid = from + tree.left().subtreeSize;
+			out[mid] = tree.getContent();
+			invokeAll(new CopyTask(tree.left(), out, from), new CopyTask(tree.right(), out, mid + 1));
+		}
+	}
+
+	//	Sustituye el contenido de este árbol por sorted[lo, hi), equilibrado
+	private void rebuild(Object[] sorted, int lo, int hi, Execution execution) {
+		state.finger = null;
+		if(lo >= hi){
+			this.clear();
+		}else if(execution == Execution.PARALLEL && hi - lo > PARALLEL_THRESHOLD){
+			ForkJoinPool.commonPool().invoke(new BuildTask(this, sorted, lo, hi));
+		}else{
+			this.build(sorted, lo, hi);
+		}
+	}
+
+	/**
+	 * Como {@link #build(Object[], int, int)}, construyendo los dos
+	 * hijos de cada nodo a la vez mientras sean grandes.
+	 */
+	private static final class BuildTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final BinarySearchTreeImpl<?> tree;
+		private final Object[] sorted;
+		private final int lo, hi;
+
+		BuildTask(BinarySearchTreeImpl<?> tree, Object[] sorted, int lo, int hi) {
+			this.tree = tree;
+			this.sorted = sorted;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			build(tree);
+		}
+
+		@SuppressWarnings("unchecked")
+		private <T extends Comparable<? super T>> void build(BinarySearchTreeImpl<T> node) {
+			if(hi - lo <= PARALLEL_THRESHOLD){
+				node.build(sorted, lo, hi);
+				return;
+			}
+			int mid = (lo + hi) >>> 1;
+			node.setContent((T) sorted[mid]);
+			node.tags = null;
+			BinarySearchTreeImpl<T> left = new BinarySearchTreeImpl<T>(node);
+			BinarySearchTreeImpl<T> right = new BinarySearchTreeImpl<T>(node);
+			node.setLeftBST(left);
+			node.setRightBST(right);
+			invokeAll(new BuildTask(left, sorted, lo, mid), new BuildTask(right, sorted, mid + 1, hi));
+			node.updateMeasures();
+		}
+	}
+
+	/**
+	 * Elimina un elemento del árbol.
+	 * 
+	 * Si el elemento tiene dos hijos, se tomará el criterio de sustituir el elemento por
+	 *  el menor de sus mayores y eliminar el menor de los mayores.
+	 * 
+	 * @throws NoSuchElementException si el elemento a eliminar no está en el árbol           
+	 */
+	public void remove(T element) {
+		OperationMetrics.Probe probe = state.probe;
+		if(probe == null || this.father != null){
+			if(!removeElement(element)){
+				throw new NoSuchElementException();
+			}
+			return;
+		}
+		long start = probe.start();
+		try{
+			if(!removeElement(element)){
+				throw new NoSuchElementException();
+			}
+		}finally{
+			probe.record(OperationMetrics.Operation.REMOVE, start);
+		}
+	}
+
+	//	Borra el elemento con un único descenso; false si no estaba
+	private boolean removeElement(T element) {
+		if(element == null){
+			throw new IllegalArgumentException();
+		}
+		if(this.isEmpty()){
+			return false;
+		}
+		BinarySearchTreeImpl<T> node = search(element);
+		if(node.getContent().compareTo(element) != 0){
+			return false;
+		}
+		state.modCount++;
+		if(state.filter != null){
+			state.filter.remove(element);
+		}
+
+		if(!node.left().isEmpty() && !node.right().isEmpty()){
+			//	Dos hijos: se sustituye por el menor de sus mayores, que
+			//	tiene como mucho un hijo (el derecho) y es el que se elimina
+			BinarySearchTreeImpl<T> subtree = node.right();
+			while(!subtree.left().isEmpty()){
+				subtree = subtree.left();
+			}
+			node.setContent(subtree.getContent());
+			node = subtree;
+		}
+
+		if(node.isLeaf()){
+			if(node == this){
+				this.clear();
+				retrace(this.father);
+			}else{
+				//	El padre pasa a apuntar al árbol vacío compartido
+				BinarySearchTreeImpl<T> parent = node.father;
+				if(parent.left() == node){
+					parent.setLeftBST(emptyBST());
+				}else{
+					parent.setRightBST(emptyBST());
+				}
+				node.father = null;
+				if(state.fingerSearch){
+					state.finger = parent;
+				}
+				retrace(parent);
+			}
+		}else{
+			//	Un único hijo: sube a ocupar el lugar de este nodo
+			BinarySearchTreeImpl<T> child = node.left().isEmpty() ? node.right() : node.left();
+			node.setContent(child.getContent());
+			node.setLeftBST(child.left());
+			node.setRightBST(child.right());
+			retrace(node);
+		}
+		return true;
+	}
+
+	/**
+	 * Devuelve la altura del árbol, contando niveles (un árbol con sólo
+	 * la raíz tiene altura 1 y el árbol vacío altura 0).
+	 * 
+	 * @return altura del árbol.
+	 */
+	public int height() {
+		return subtreeHeight;
+	}
+
+	/**
+	 * Recorre hacia arriba, por los padres, desde node hasta la raíz del
+	 * árbol completo (no sólo hasta este sub-árbol, que puede ser un hijo
+	 * sobre el que se ha llamado a insert o remove), actualizando alturas
+	 * y tamaños y reequilibrando tras una inserción o borrado bajo node.
+	 */
+	private void retrace(BinarySearchTreeImpl<T> node) {
+		while(node != null){
+			node.rebalance();
+			node = node.father;
+		}
+	}
+
+	//	Recalcula la altura y el tamaño de este nodo a partir de los de sus hijos
+	private void updateMeasures() {
+		this.subtreeHeight = 1 + Math.max(left().subtreeHeight, right().subtreeHeight);
+		this.subtreeSize = 1 + left().subtreeSize + right().subtreeSize;
+	}
+
+	/**
+	 * Devuelve el número de elementos del árbol.
+	 * 
+	 * @return número de elementos, 0 si es vacío.
+	 */
+	public int size() {
+		return subtreeSize;
+	}
+
+	/**
+	 * Devuelve cuántos elementos del árbol son estrictamente menores que
+	 * el dado, que no tiene por qué estar en el árbol.
+	 * 
+	 * Por ejemplo, en {10, {5, {2, ∅, ∅}, ∅}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}
+	 * rank(15) es 3 y rank(16) es 4.
+	 * 
+	 * @param element valor de referencia.
+	 * @return posición (empezando en 0) que ocupa o que ocuparía el elemento.
+	 * @throws IllegalArgumentException si element es null
+	 */
+	public int rank(T element) {
+		return countBelow(element, false);
+	}
+
+	/**
+	 * Devuelve el k-ésimo menor elemento del árbol, empezando en 0, de
+	 * forma que select(rank(x)) es x para todo x del árbol.
+	 * 
+	 * @param k posición del elemento en el recorrido en inorden.
+	 * @return elemento en esa posición.
+	 * @throws IndexOutOfBoundsException si k no está en [0, size())
+	 */
+	public T select(int k) {
+		if(k < 0 || k >= subtreeSize){
+			throw new IndexOutOfBoundsException();
+		}
+		BinarySearchTreeImpl<T> node = this;
+		while(true){
+			int left = node.left().subtreeSize;
+			if(k < left){
+				node = node.left();
+			}else if(k > left){
+				k -= left + 1;
+				node = node.right();
+			}else{
+				return node.getContent();
+			}
+		}
+	}
+
+	/**
+	 * Cuenta los elementos del árbol en el intervalo cerrado [lo, hi].
+	 * 
+	 * @param lo extremo inferior.
+	 * @param hi extremo superior.
+	 * @return número de elementos x con lo <= x <= hi (0 si lo > hi).
+	 * @throws IllegalArgumentException si alguno de los extremos es null
+	 */
+	public int countInRange(T lo, T hi) {
+		if(lo == null || hi == null){
+			throw new IllegalArgumentException();
+		}
+		if(lo.compareTo(hi) > 0){
+			return 0;
+		}
+		return countBelow(hi, true) - countBelow(lo, false);
+	}
+
+	//	Cuenta los elementos menores (o menores o iguales) que element
+	private int countBelow(T element, boolean inclusive) {
+		if(element == null){
+			throw new IllegalArgumentException();
+		}
+		int count = 0;
+		BinarySearchTreeImpl<T> node = this;
+		while(!node.isEmpty()){
+			int cmp = node.getContent().compareTo(element);
+			if(cmp > 0 || (cmp == 0 && !inclusive)){
+				node = node.left();
+			}else{
+				count += node.left().subtreeSize + 1;
+				if(cmp == 0){
+					return count;
+				}
+				node = node.right();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Restablece la condición AVL en este nodo (si el árbol está en ese modo),
+	 * suponiendo que sus dos sub-árboles ya la cumplen, y actualiza su altura.
+	 */
+	private void rebalance() {
+		if (state.balance == Balance.AVL) {
+			int factor = left().subtreeHeight - right().subtreeHeight;
+			if (factor > 1) {
+				//	Caso izquierda-derecha: primero se rota el hijo
+				if (left().left().subtreeHeight < left().right().subtreeHeight) {
+					left().rotateLeft();
+				}
+				rotateRight();
+			} else if (factor < -1) {
+				//	Caso derecha-izquierda: primero se rota el hijo
+				if (right().right().subtreeHeight < right().left().subtreeHeight) {
+					right().rotateRight();
+				}
+				rotateLeft();
+			}
+		}
+		updateMeasures();
+	}
+
+	/**
+	 * Rotación simple a la derecha.
+	 * 
+	 * Quien tenga una referencia a este árbol debe seguir viéndolo como
+	 * la raíz, así que en lugar de mover este nodo se intercambia su
+	 * contenido con el del hijo izquierdo y se recolocan los sub-árboles:
+	 * 
+	 *       N(x)              N(y)
+	 *      /    \            /    \
+	 *    L(y)    C   ==>    A    L(x)
+	 *   /   \                   /   \
+	 *  A     B                 B     C
+	 */
+	private void rotateRight() {
+		BinarySearchTreeImpl<T> pivot = left();
+		swapContent(pivot);
+		this.setLeftBST(pivot.left());
+		pivot.setLeftBST(pivot.right());
+		pivot.setRightBST(this.right());
+		this.setRightBST(pivot);
+		pivot.updateMeasures();
+		this.updateMeasures();
+	}
+
+	/**
+	 * Rotación simple a la izquierda, simétrica de {@link #rotateRight()}.
+	 */
+	private void rotateLeft() {
+		BinarySearchTreeImpl<T> pivot = right();
+		swapContent(pivot);
+		this.setRightBST(pivot.right());
+		pivot.setRightBST(pivot.left());
+		pivot.setLeftBST(this.left());
+		this.setLeftBST(pivot);
+		pivot.updateMeasures();
+		this.updateMeasures();
+	}
+
+	//	Intercambia la información (y sus etiquetas) con la de otro nodo
+	private void swapContent(BinarySearchTreeImpl<T> other) {
+		T c = this.content;
+		this.content = other.content;
+		other.content = c;
+
+		TagStore t = this.tags;
+		this.tags = other.tags;
+		other.tags = t;
+	}
+	
+	/**
+	 * Importante: Solamente se puede recorrer el árbol una vez
+	 * 
+	 * Etiqueta cada nodo con la etiqueta "height" y el valor correspondiente a la altura del nodo.
+	 * 
+	 * Por ejemplo, sea un árbol "A":
+	 * 
+	 * {10, {5, {2, ∅, ∅}, ∅}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}
+	 * 
+     * 10
      * |  5
      * |  |  2
      * |  |  |  ∅
@@ -384,37 +1861,585 @@ public class BinarySearchTreeImpl<T extends Comparable<? super T>> extends
      * |  |  |  ∅
      * 
 	 * 
-	 * el árbol quedaría etiquetado:
+	 * el árbol quedaría etiquetado:
+	 * 
+	 *   {10 [(height, 1)], {5 [(height, 2)], {2 [(height, 3)], ∅, ∅}, ∅},
+	 *               {20 [(height, 2)], {15 [(height, 3)], {12 [(height, 4)], ∅, ∅}, ∅}, ∅}}
+	 * 
+	 */
+	public void tagHeight() {
+		this.traverse(heightTagger());
+	}
+
+	//	Etiqueta "height": la profundidad en el recorrido más la del padre
+	//	de este árbol, si ya está etiquetado
+	private TreeVisitor<T> heightTagger() {
+		final int base = (father == null) ? 0 : father.tags.getInt("height");
+		return new TreeVisitor<T>() {
+			@Override
+			public void preorder(TreeADT<T> node, int depth) {
+				node.setTag("height", base + depth);
+			}
+		};
+	}
+	
+	
+	/**
+	 * Importante: Solamente se puede recorrer el árbol una vez
+	 * 
+	 * Etiqueta cada nodo con el valor correspondiente al número de descendientes que tiene en este árbol.
+	 * 
+	 * Por ejemplo, sea un árbol "A":
+	 * 
+	 * {10, {5, {2, ∅, ∅}, ∅}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}
+	 * 
+     * 10
+     * |  5
+     * |  |  2
+     * |  |  |  ∅
+     * |  |  |  ∅
+     * |  |  ∅
+     * |  20
+     * |  |  15
+     * |  |  |  ∅
+     * |  |  |  ∅ 
+     * |  |  30
+     * |  |  |  ∅
+     * |  |  |  ∅
+     * 
+	 * 
+	 * el árbol quedaría etiquetado:
+	 * 
+	 *  {10 [(decendents, 5)], 
+	 *       {5 [(decendents, 1)], {2 [(decendents, 0)], ∅, ∅}, ∅}, 
+	 *       {20 [(decendents, 2)], {15 [(decendents, 0)], ∅, ∅}, {30 [(decendents, 0)], ∅, ∅}}}
+	 * 
+	 * 
+	 */
+	public void tagDecendents() {
+		this.traverse(decendentsTagger());
+	}
+
+	/**
+	 * Como {@link #tagDecendents()}, pero permite repartir el trabajo
+	 * entre varios hilos: los dos hijos de un nodo se etiquetan como tareas
+	 * separadas del ForkJoinPool común si ambos tienen más de
+	 * PARALLEL_THRESHOLD nodos.
+	 * 
+	 * @param execution forma de ejecutarlo
+	 */
+	public void tagDecendents(Execution execution) {
+		if(execution == Execution.PARALLEL){
+			ForkJoinPool.commonPool().invoke(new DecendentsTask(this));
+		}else{
+			tagDecendents();
+		}
+	}
+
+	//	Tamaño de sub-árbol por debajo del cual no compensa crear tareas
+	private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+	private static final class DecendentsTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final BinarySearchTreeImpl<?> tree;
+
+		DecendentsTask(BinarySearchTreeImpl<?> tree) {
+			this.tree = tree;
+		}
+
+		@Override
+		protected void compute() {
+			//	Como en CopyTask, sólo se reparte si los dos hijos son grandes:
+			//	en un árbol degenerado habría una tarea anidada por nodo
+			if(tree.isEmpty() || Math.min(tree.left().subtreeSize, tree.right().subtreeSize) <= PARALLEL_THRESHOLD){
+				tree.tagDecendents();
+				return;
+			}
+			tree.setTag("decendents", tree.subtreeSize - 1);
+			invokeAll(new DecendentsTask(tree.left()), new DecendentsTask(tree.right()));
+		}
+	}
+
+	//	Etiqueta "decendents": cada nodo ya conoce el tamaño de su
+	//	sub-árbol, así que basta con visitarlo una vez
+	private TreeVisitor<T> decendentsTagger() {
+		return new TreeVisitor<T>() {
+			@Override
+			public void preorder(TreeADT<T> node, int depth) {
+				node.setTag("decendents", ((BinarySearchTreeImpl<T>) node).subtreeSize - 1);
+			}
+		};
+	}
+		
+	
+	
+	/**
+	 * Devuelve el menor elemento del árbol.
+	 * 
+	 * @return el menor elemento.
+	 * @throws NoSuchElementException si el árbol es vacío
+	 */
+	public T first() {
+		if(this.isEmpty()){
+			throw new NoSuchElementException();
+		}
+		return firstInorder().getContent();
+	}
+
+	/**
+	 * Devuelve el mayor elemento del árbol.
+	 * 
+	 * @return el mayor elemento.
+	 * @throws NoSuchElementException si el árbol es vacío
+	 */
+	public T last() {
+		if(this.isEmpty()){
+			throw new NoSuchElementException();
+		}
+		return lastInorder().getContent();
+	}
+
+	/**
+	 * Devuelve el mayor elemento menor o igual que el dado.
+	 * 
+	 * @param element valor de referencia.
+	 * @return el elemento buscado, o null si no hay ninguno.
+	 * @throws IllegalArgumentException si element es null
+	 */
+	public T floor(T element) {
+		return contentOf(floorNode(element, true));
+	}
+
+	/**
+	 * Devuelve el menor elemento mayor o igual que el dado.
+	 * 
+	 * @param element valor de referencia.
+	 * @return el elemento buscado, o null si no hay ninguno.
+	 * @throws IllegalArgumentException si element es null
+	 */
+	public T ceiling(T element) {
+		return contentOf(ceilingNode(element, true));
+	}
+
+	/**
+	 * Devuelve el mayor elemento estrictamente menor que el dado.
+	 * 
+	 * @param element valor de referencia.
+	 * @return el elemento buscado, o null si no hay ninguno.
+	 * @throws IllegalArgumentException si element es null
+	 */
+	public T lower(T element) {
+		return contentOf(floorNode(element, false));
+	}
+
+	/**
+	 * Devuelve el menor elemento estrictamente mayor que el dado.
 	 * 
-	 *  {10 [(decendents, 5)], 
-	 *       {5 [(decendents, 1)], {2 [(decendents, 0)], ∅, ∅}, ∅}, 
-	 *       {20 [(decendents, 2)], {15 [(decendents, 0)], ∅, ∅}, {30 [(decendents, 0)], ∅, ∅}}}
+	 * @param element valor de referencia.
+	 * @return el elemento buscado, o null si no hay ninguno.
+	 * @throws IllegalArgumentException si element es null
+	 */
+	public T higher(T element) {
+		return contentOf(ceilingNode(element, false));
+	}
+
+	private static <T extends Comparable<? super T>> T contentOf(BinarySearchTreeImpl<T> node) {
+		return (node == null) ? null : node.getContent();
+	}
+
+	//	Nodo con el mayor elemento menor que element (o igual, si inclusive)
+	private BinarySearchTreeImpl<T> floorNode(T element, boolean inclusive) {
+		if(element == null){
+			throw new IllegalArgumentException();
+		}
+		BinarySearchTreeImpl<T> found = null;
+		BinarySearchTreeImpl<T> node = this;
+		while(!node.isEmpty()){
+			int cmp = node.getContent().compareTo(element);
+			if(cmp < 0 || (cmp == 0 && inclusive)){
+				found = node;
+				if(cmp == 0){
+					break;
+				}
+				node = node.right();
+			}else{
+				node = node.left();
+			}
+		}
+		return found;
+	}
+
+	//	Nodo con el menor elemento mayor que element (o igual, si inclusive)
+	private BinarySearchTreeImpl<T> ceilingNode(T element, boolean inclusive) {
+		if(element == null){
+			throw new IllegalArgumentException();
+		}
+		BinarySearchTreeImpl<T> found = null;
+		BinarySearchTreeImpl<T> node = this;
+		while(!node.isEmpty()){
+			int cmp = node.getContent().compareTo(element);
+			if(cmp > 0 || (cmp == 0 && inclusive)){
+				found = node;
+				if(cmp == 0){
+					break;
+				}
+				node = node.left();
+			}else{
+				node = node.right();
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Vista de los elementos en [fromElement, toElement).
 	 * 
+	 * La vista no copia nada: refleja los cambios posteriores del árbol y
+	 * su iterador recorre sólo los nodos del rango, en orden, con coste
+	 * O(log n + k). Si el árbol se modifica mientras se usa un iterador
+	 * de la vista, éste lanza ConcurrentModificationException.
 	 * 
+	 * @param fromElement extremo inferior, incluido.
+	 * @param toElement extremo superior, excluido.
+	 * @return vista ordenada de sólo lectura.
+	 * @throws IllegalArgumentException si algún extremo es null o fromElement > toElement
 	 */
-	public void tagDecendents() {
-	   // TODO Implementar el método
-		int decendents = 0;
-		if(!this.isEmpty()){
-			this.getRightBST().tagDecendents();
-			this.getLeftBST().tagDecendents();
-			if(this.isLeaf()){
-				this.setTag("decendents", 0);
-			}else {
-				if (this.getRightBST().isEmpty()) {
-					decendents = ((int) this.getLeftBST().getTag("decendents")) + 1;
-				} else if (this.getLeftBST().isEmpty()) {
-					decendents = ((int) this.getRightBST().getTag("decendents")) + 1;
-				} else {
-					decendents = ((int) this.getRightBST().getTag("decendents")) + ((int) this.getLeftBST().getTag("decendents")) + 2;
+	public SortedSet<T> subSet(T fromElement, T toElement) {
+		if(fromElement == null || toElement == null || fromElement.compareTo(toElement) > 0){
+			throw new IllegalArgumentException();
+		}
+		return new RangeView(fromElement, toElement);
+	}
+
+	/**
+	 * Vista de los elementos estrictamente menores que toElement, con
+	 * las mismas características que {@link #subSet(Comparable, Comparable)}.
+	 * 
+	 * @param toElement extremo superior, excluido.
+	 * @return vista ordenada de sólo lectura.
+	 * @throws IllegalArgumentException si toElement es null
+	 */
+	public SortedSet<T> headSet(T toElement) {
+		if(toElement == null){
+			throw new IllegalArgumentException();
+		}
+		return new RangeView(null, toElement);
+	}
+
+	/**
+	 * Vista de los elementos mayores o iguales que fromElement, con
+	 * las mismas características que {@link #subSet(Comparable, Comparable)}.
+	 * 
+	 * @param fromElement extremo inferior, incluido.
+	 * @return vista ordenada de sólo lectura.
+	 * @throws IllegalArgumentException si fromElement es null
+	 */
+	public SortedSet<T> tailSet(T fromElement) {
+		if(fromElement == null){
+			throw new IllegalArgumentException();
+		}
+		return new RangeView(fromElement, null);
+	}
+
+	/**
+	 * Vista de un rango [lo, hi) del árbol; un extremo null indica que
+	 * no hay límite por ese lado.
+	 */
+	private final class RangeView extends AbstractSet<T> implements SortedSet<T> {
+
+		private final T lo;
+		private final T hi;
+
+		RangeView(T lo, T hi) {
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		private boolean tooLow(T element) {
+			return lo != null && element.compareTo(lo) < 0;
+		}
+
+		private boolean tooHigh(T element) {
+			return hi != null && element.compareTo(hi) >= 0;
+		}
+
+		//	Primer nodo del rango, o null si no hay ninguno
+		private BinarySearchTreeImpl<T> lowest() {
+			BinarySearchTreeImpl<T> node = (lo == null) ? firstInorder() : ceilingNode(lo, true);
+			return (node == null || tooHigh(node.getContent())) ? null : node;
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+			return new NodeIterator(lowest()) {
+				@Override
+				BinarySearchTreeImpl<T> advance(BinarySearchTreeImpl<T> node) {
+					BinarySearchTreeImpl<T> next = nextInorder(node);
+					return (next == null || tooHigh(next.getContent())) ? null : next;
 				}
-				this.setTag("decendents", decendents);
+			};
+		}
+
+		@Override
+		public int size() {
+			if(lo == null){
+				return (hi == null) ? BinarySearchTreeImpl.this.size() : rank(hi);
+			}
+			return ((hi == null) ? BinarySearchTreeImpl.this.size() : rank(hi)) - rank(lo);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public boolean contains(Object o) {
+			T element = (T) o;
+			return element != null && !tooLow(element) && !tooHigh(element)
+					&& BinarySearchTreeImpl.this.contains(element);
+		}
+
+		@Override
+		public Comparator<? super T> comparator() {
+			//	Orden natural de los elementos
+			return null;
+		}
+
+		@Override
+		public SortedSet<T> subSet(T fromElement, T toElement) {
+			if(fromElement == null || toElement == null || fromElement.compareTo(toElement) > 0
+					|| tooLow(fromElement) || (hi != null && toElement.compareTo(hi) > 0)){
+				throw new IllegalArgumentException();
+			}
+			return new RangeView(fromElement, toElement);
+		}
+
+		@Override
+		public SortedSet<T> headSet(T toElement) {
+			if(toElement == null || tooLow(toElement) || (hi != null && toElement.compareTo(hi) > 0)){
+				throw new IllegalArgumentException();
+			}
+			return new RangeView(lo, toElement);
+		}
+
+		@Override
+		public SortedSet<T> tailSet(T fromElement) {
+			if(fromElement == null || tooLow(fromElement) || (hi != null && fromElement.compareTo(hi) > 0)){
+				throw new IllegalArgumentException();
+			}
+			return new RangeView(fromElement, hi);
+		}
+
+		@Override
+		public T first() {
+			BinarySearchTreeImpl<T> node = lowest();
+			if(node == null){
+				throw new NoSuchElementException();
+			}
+			return node.getContent();
+		}
+
+		@Override
+		public T last() {
+			BinarySearchTreeImpl<T> node;
+			if(hi == null){
+				node = lastInorder();
+			}else{
+				node = floorNode(hi, false);
+			}
+			if(node == null || tooLow(node.getContent())){
+				throw new NoSuchElementException();
 			}
+			return node.getContent();
 		}
 	}
-		
-	
-	
+
+	/**
+	 * Recorrido en inorden (de menor a mayor) que avanza siguiendo las
+	 * referencias al padre, sin pila. Lanza ConcurrentModificationException
+	 * si el árbol se modifica mientras se usa.
+	 */
+	@Override
+	public Iterator<T> iteratorInorder() {
+		return new NodeIterator(firstInorder()) {
+			@Override
+			BinarySearchTreeImpl<T> advance(BinarySearchTreeImpl<T> node) {
+				return nextInorder(node);
+			}
+		};
+	}
+
+	/**
+	 * Recorrido en preorden que avanza siguiendo las referencias al padre,
+	 * sin pila. Lanza ConcurrentModificationException si el árbol se
+	 * modifica mientras se usa.
+	 */
+	@Override
+	public Iterator<T> iteratorPreorder() {
+		return new NodeIterator(this.isEmpty() ? null : this) {
+			@Override
+			BinarySearchTreeImpl<T> advance(BinarySearchTreeImpl<T> node) {
+				return nextPreorder(node);
+			}
+		};
+	}
+
+	/**
+	 * Recorrido en postorden que avanza siguiendo las referencias al padre,
+	 * sin pila. Lanza ConcurrentModificationException si el árbol se
+	 * modifica mientras se usa.
+	 */
+	@Override
+	public Iterator<T> iteratorPostorder() {
+		return new NodeIterator(firstPostorder()) {
+			@Override
+			BinarySearchTreeImpl<T> advance(BinarySearchTreeImpl<T> node) {
+				return nextPostorder(node);
+			}
+		};
+	}
+
+	/**
+	 * Iterador sobre nodos del árbol; cada recorrido indica cómo pasar de
+	 * un nodo al siguiente (null al terminar).
+	 */
+	private abstract class NodeIterator implements Iterator<T> {
+
+		private final int expectedModCount = state.modCount;
+		private BinarySearchTreeImpl<T> next;
+
+		NodeIterator(BinarySearchTreeImpl<T> first) {
+			this.next = first;
+		}
+
+		abstract BinarySearchTreeImpl<T> advance(BinarySearchTreeImpl<T> node);
+
+		@Override
+		public boolean hasNext() {
+			checkForComodification();
+			return next != null;
+		}
+
+		@Override
+		public T next() {
+			checkForComodification();
+			if(next == null){
+				throw new NoSuchElementException();
+			}
+			T result = next.getContent();
+			next = advance(next);
+			return result;
+		}
+
+		private void checkForComodification() {
+			if(state.modCount != expectedModCount){
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+
+	/**
+	 * Devuelve un Spliterator que recorre los elementos en orden y que se
+	 * divide por sub-árboles: la parte que se separa es el sub-árbol
+	 * izquierdo de la zona pendiente. Conoce el tamaño exacto de cada parte,
+	 * así que las operaciones paralelas pueden repartir bien el trabajo.
+	 * 
+	 * @return spliterator ordenado, sin repetidos ni nulls y con tamaño
+	 */
+	public Spliterator<T> spliterator() {
+		return new InorderSpliterator(null, this);
+	}
+
+	/**
+	 * Devuelve un stream secuencial con los elementos en orden; con
+	 * stream().parallel() se reparte entre varios hilos.
+	 * 
+	 * @return stream de los elementos del árbol
+	 */
+	public Stream<T> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * Spliterator sobre un elemento suelto (head, si no es null) seguido de
+	 * todos los elementos del sub-árbol rest, en inorden.
+	 * 
+	 * Mientras no se haya empezado a recorrer rest se puede dividir: el
+	 * prefijo es head más el sub-árbol izquierdo de rest, y aquí queda la
+	 * raíz de rest más su sub-árbol derecho, que tiene la misma forma.
+	 */
+	private final class InorderSpliterator implements Spliterator<T> {
+
+		private final int expectedModCount = state.modCount;
+		private T head;
+		private BinarySearchTreeImpl<T> rest;
+
+		//	Nodo de rest por el que va el recorrido (null si no ha empezado
+		//	o si ya ha terminado) y cuántos de rest se han devuelto ya
+		private BinarySearchTreeImpl<T> current;
+		private int consumed;
+
+		InorderSpliterator(T head, BinarySearchTreeImpl<T> rest) {
+			this.head = head;
+			this.rest = rest;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			checkForComodification();
+			if(head != null){
+				T element = head;
+				head = null;
+				action.accept(element);
+				return true;
+			}
+			if(current == null){
+				if(consumed > 0 || rest.isEmpty()){
+					return false;
+				}
+				current = rest.firstInorder();
+			}
+			T element = current.getContent();
+			current = rest.nextInorder(current);
+			consumed++;
+			action.accept(element);
+			return true;
+		}
+
+		@Override
+		public Spliterator<T> trySplit() {
+			checkForComodification();
+			if(current != null || consumed > 0 || rest.isEmpty() || rest.left().isEmpty()){
+				return null;
+			}
+			InorderSpliterator prefix = new InorderSpliterator(head, rest.left());
+			head = rest.getContent();
+			rest = rest.right();
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return (head != null ? 1 : 0) + rest.subtreeSize - consumed;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | SORTED | DISTINCT | NONNULL | SIZED | SUBSIZED;
+		}
+
+		@Override
+		public Comparator<? super T> getComparator() {
+			//	Orden natural de los elementos
+			return null;
+		}
+
+		private void checkForComodification() {
+			if(state.modCount != expectedModCount){
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+
 	/**	
 	 * Devuelve un iterador que recorre los elementos del arbol por niveles según 
          * el recorrido en anchura
@@ -423,40 +2448,87 @@ public class BinarySearchTreeImpl<T extends Comparable<? super T>> extends
 	 * 
 	 * 		{50, {30, {10, ∅, ∅}, {40, ∅, ∅}}, {80, {60, ∅, ∅}, ∅}}
 	 * 
-	 * y devolvería el iterador que recorrería los nodos en el orden: 50, 30, 40, 10, 80, 60
+	 * y devolvería el iterador que recorrería los nodos en el orden: 50, 30, 80, 10, 40, 60
 	 * 
-	 * 		
+	 * El recorrido se genera a medida que se pide: sólo se guarda la
+	 * frontera del nivel actual (en una cola circular sobre array), y si
+	 * el árbol se modifica mientras se usa el iterador, éste lanza
+	 * ConcurrentModificationException.
 	 * 
 	 * @return iterador para el recorrido en anchura
 	 */
-
 	public Iterator<T> iteratorWidth() {
-		//	TODO Implementar método
-		// puede implementarse creando una lista con el recorrido en anchura de los elementos del árbol y devolver el iterador de dicha lista
-		LinkedList<T> result = new LinkedList<T>();
-		createTreeListRec(result);
-		return result.iterator();
-	}	
-
-	private void createTreeListRec(LinkedList<T> list){
-		if(!this.isEmpty()) {
-			if (this.father == null) {
-				list.add(this.getContent());
-			}
-			if (!this.getLeftBST().isEmpty() && !this.getRightBST().isEmpty()) {
-
-				list.add(this.getLeftBST().getContent());
-				list.add(this.getRightBST().getContent());
-				this.getLeftBST().createTreeListRec(list);
-				this.getRightBST().createTreeListRec(list);
-			} else if (!this.getRightBST().isEmpty()) {
-				list.add(this.getRightBST().getContent());
-				this.getRightBST().createTreeListRec(list);
-			} else if (!this.getLeftBST().isEmpty()) {
-				list.add(this.getLeftBST().getContent());
-				this.getLeftBST().createTreeListRec(list);
-			} else {
-				list.add(this.getContent());
+		return new WidthIterator(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Como {@link #iteratorWidth()}, pero recorriendo sólo los primeros
+	 * niveles del árbol, lo que permite muestrear árboles muy grandes.
+	 * 
+	 * @param maxDepth número de niveles a recorrer (1 para sólo la raíz).
+	 * @return iterador para el recorrido en anchura de esos niveles
+	 * @throws IllegalArgumentException si maxDepth es negativo
+	 */
+	public Iterator<T> iteratorWidth(int maxDepth) {
+		if(maxDepth < 0){
+			throw new IllegalArgumentException();
+		}
+		return new WidthIterator(maxDepth);
+	}
+
+	/**
+	 * Recorrido en anchura perezoso, limitado a un número de niveles.
+	 */
+	private final class WidthIterator implements Iterator<T> {
+
+		private final ArrayDeque<BinarySearchTreeImpl<T>> frontier = new ArrayDeque<BinarySearchTreeImpl<T>>();
+		private final int expectedModCount = state.modCount;
+		private final int maxDepth;
+
+		//	Nivel de los nodos que se están devolviendo, y cuántos quedan
+		//	de ese nivel en la cola (detrás van los del siguiente)
+		private int depth = 1;
+		private int remainingInLevel;
+
+		WidthIterator(int maxDepth) {
+			this.maxDepth = maxDepth;
+			if(maxDepth > 0 && !BinarySearchTreeImpl.this.isEmpty()){
+				frontier.add(BinarySearchTreeImpl.this);
+				remainingInLevel = 1;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			checkForComodification();
+			return !frontier.isEmpty();
+		}
+
+		@Override
+		public T next() {
+			checkForComodification();
+			if(frontier.isEmpty()){
+				throw new NoSuchElementException();
+			}
+			BinarySearchTreeImpl<T> node = frontier.poll();
+			if(depth < maxDepth){
+				if(!node.left().isEmpty()){
+					frontier.add(node.left());
+				}
+				if(!node.right().isEmpty()){
+					frontier.add(node.right());
+				}
+			}
+			if(--remainingInLevel == 0){
+				depth++;
+				remainingInLevel = frontier.size();
+			}
+			return node.getContent();
+		}
+
+		private void checkForComodification() {
+			if(state.modCount != expectedModCount){
+				throw new ConcurrentModificationException();
 			}
 		}
 	}
@@ -485,22 +2557,187 @@ public class BinarySearchTreeImpl<T extends Comparable<? super T>> extends
 	 * 
 	 */
 	public int tagOnlySonInorder() {
-		// TODO Implementar el método
-		int onlySons[] = {0};
-		tagOnlySonInorderRec(onlySons);
-		return onlySons[0];
+		OnlySonTagger onlySons = new OnlySonTagger();
+		this.traverse(onlySons);
+		return onlySons.count;
+	}
+
+	/**
+	 * Etiqueta "onlySon": numera en postorden los nodos cuyo padre no
+	 * tiene otro hijo.
+	 */
+	private final class OnlySonTagger implements TreeVisitor<T> {
+
+		int count;
+
+		@Override
+		public void postorder(TreeADT<T> node, int depth) {
+			BinarySearchTreeImpl<T> n = (BinarySearchTreeImpl<T>) node;
+			if (n.father != null && (n.father.left().isEmpty() || n.father.right().isEmpty())) {
+				count++;
+				n.setTag("onlySon", count);
+			}
+		}
+	}
+
+	/**
+	 * Calcula en un único recorrido las etiquetas de {@link #tagHeight()},
+	 * {@link #tagDecendents()} y {@link #tagOnlySonInorder()}, con los
+	 * mismos valores que si se llamara a los tres métodos.
+	 * 
+	 * @return número de nodos que son hijos únicos
+	 */
+	public int tagAll() {
+		OnlySonTagger onlySons = new OnlySonTagger();
+		this.traverse(TreeVisitor.fuse(heightTagger(), decendentsTagger(), onlySons));
+		return onlySons.count;
+	}
+
+	/**
+	 * Recorrido en profundidad siguiendo las referencias al padre, sin
+	 * pila: para cada nodo se sabe si se llega desde arriba, desde el
+	 * hijo izquierdo o desde el derecho. El visitante no debe modificar
+	 * la forma del árbol (sí sus etiquetas).
+	 */
+	@Override
+	public void traverse(TreeVisitor<T> visitor) {
+		if(this.isEmpty()){
+			return;
+		}
+		BinarySearchTreeImpl<T> node = this;
+		int depth = 1;
+		//	0: se llega desde arriba, 1: desde la izquierda, 2: desde la derecha
+		int from = 0;
+		while(true){
+			if(from == 0){
+				visitor.preorder(node, depth);
+				if(!node.left().isEmpty()){
+					node = node.left();
+					depth++;
+					continue;
+				}
+				from = 1;
+			}
+			if(from == 1){
+				visitor.inorder(node, depth);
+				if(!node.right().isEmpty()){
+					node = node.right();
+					depth++;
+					from = 0;
+					continue;
+				}
+			}
+			visitor.postorder(node, depth);
+			if(node == this){
+				return;
+			}
+			BinarySearchTreeImpl<T> parent = node.father;
+			from = (node == parent.left()) ? 1 : 2;
+			node = parent;
+			depth--;
+		}
+	}
+
+	/**
+	 * Primer nodo de este árbol en inorden (el menor), o null si es vacío.
+	 */
+	private BinarySearchTreeImpl<T> firstInorder() {
+		if(this.isEmpty()){
+			return null;
+		}
+		BinarySearchTreeImpl<T> node = this;
+		while(!node.left().isEmpty()){
+			node = node.left();
+		}
+		return node;
+	}
+
+	/**
+	 * Último nodo de este árbol en inorden (el mayor), o null si es vacío.
+	 */
+	private BinarySearchTreeImpl<T> lastInorder() {
+		if(this.isEmpty()){
+			return null;
+		}
+		BinarySearchTreeImpl<T> node = this;
+		while(!node.right().isEmpty()){
+			node = node.right();
+		}
+		return node;
+	}
+
+	/**
+	 * Siguiente nodo en inorden dentro de este árbol, o null si node es
+	 * el último. Sólo usa las referencias al padre.
+	 */
+	private BinarySearchTreeImpl<T> nextInorder(BinarySearchTreeImpl<T> node) {
+		if(!node.right().isEmpty()){
+			node = node.right();
+			while(!node.left().isEmpty()){
+				node = node.left();
+			}
+			return node;
+		}
+		while(node != this){
+			BinarySearchTreeImpl<T> parent = node.father;
+			if(node == parent.left()){
+				return parent;
+			}
+			node = parent;
+		}
+		return null;
 	}
 
-	private void tagOnlySonInorderRec(int onlySons[]){
-		if (!this.isEmpty()) {
-			this.getLeftBST().tagOnlySonInorderRec(onlySons);
-			this.getRightBST().tagOnlySonInorderRec(onlySons);
-			if (this.father != null && (this.father.getLeftBST().isEmpty() || this.father.getRightBST().isEmpty())) {
-				onlySons[0] += 1;
-				this.setTag("onlySon", onlySons[0]);
+	/**
+	 * Siguiente nodo no vacío en preorden dentro de este árbol, o null si
+	 * node es el último. Sólo usa las referencias al padre.
+	 */
+	private BinarySearchTreeImpl<T> nextPreorder(BinarySearchTreeImpl<T> node) {
+		if(!node.left().isEmpty()){
+			return node.left();
+		}
+		if(!node.right().isEmpty()){
+			return node.right();
+		}
+		while(node != this){
+			BinarySearchTreeImpl<T> parent = node.father;
+			if(node == parent.left() && !parent.right().isEmpty()){
+				return parent.right();
 			}
+			node = parent;
+		}
+		return null;
+	}
+
+	//	Nodo no vacío más profundo por la izquierda a partir de node
+	private static <T extends Comparable<? super T>> BinarySearchTreeImpl<T> deepestLeft(BinarySearchTreeImpl<T> node) {
+		while(!node.isLeaf()){
+			node = node.left().isEmpty() ? node.right() : node.left();
+		}
+		return node;
+	}
 
+	/**
+	 * Primer nodo de este árbol en postorden, o null si es vacío.
+	 */
+	private BinarySearchTreeImpl<T> firstPostorder() {
+		return this.isEmpty() ? null : deepestLeft(this);
+	}
+
+	/**
+	 * Siguiente nodo en postorden dentro de este árbol, o null si node
+	 * es el último (este mismo árbol). Sólo usa las referencias al padre.
+	 */
+	private BinarySearchTreeImpl<T> nextPostorder(BinarySearchTreeImpl<T> node) {
+		if(node == this){
+			return null;
 		}
+		BinarySearchTreeImpl<T> parent = node.father;
+		if(node == parent.left() && !parent.right().isEmpty()){
+			return deepestLeft(parent.right());
+		}
+		return parent;
 	}
+
 }
 
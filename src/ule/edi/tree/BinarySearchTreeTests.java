@@ -1,10 +1,24 @@
 package ule.edi.tree;
 
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -177,6 +191,21 @@ public class BinarySearchTreeTests {
 			ejemplo.remove(1,2,3);
 		}
 
+		@Test
+		public void testRemoveListAllOrNothing(){
+			String before = ejemplo.toString();
+			try {
+				ejemplo.remove(5, 15, 7);
+				Assert.fail();
+			} catch (NoSuchElementException e) {
+			}
+			Assert.assertEquals(before, ejemplo.toString());
+			//	Los repetidos se borran una vez, y el resto del árbol no cambia
+			ejemplo.setTag("kept", 1);
+			ejemplo.remove(5, 15, 5);
+			Assert.assertEquals("{10 [(kept, 1)], {2, ∅, ∅}, {20, ∅, {30, ∅, ∅}}}", ejemplo.toString());
+		}
+
 		@Test
 		public void testIteratorWidth(){
 			BinarySearchTreeImpl<Integer> emptyTree = new BinarySearchTreeImpl<Integer>();
@@ -199,6 +228,1212 @@ public class BinarySearchTreeTests {
 		}
 
 	
-	}
+	
+		//	Árboles AVL
+
+		private static final int BIG = 1000000;
+
+		//	Cota de altura de un AVL: 1.44 * log2(n + 2)
+		private static int maxAVLHeight(int n) {
+			return (int) Math.floor(1.4405 * Math.log(n + 2) / Math.log(2));
+		}
+
+		//	Comprueba recursivamente la condición AVL, las alturas y los padres
+		private static <T extends Comparable<? super T>> int checkAVL(BinarySearchTreeImpl<T> t) {
+			if (t.isEmpty()) {
+				return 0;
+			}
+			Assert.assertTrue(Math.abs(t.getLeftBST().height() - t.getRightBST().height()) <= 1);
+			checkAVL(t.getLeftBST());
+			checkAVL(t.getRightBST());
+			return checkShape(t);
+		}
+
+		@Test
+		public void testAVLInsertRotations() {
+			BinarySearchTreeImpl<Integer> avl = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+			avl.insert(10, 20, 30);
+			Assert.assertEquals("{20, {10, ∅, ∅}, {30, ∅, ∅}}", avl.toString());
+			avl.insert(25, 27);
+			Assert.assertEquals("{20, {10, ∅, ∅}, {27, {25, ∅, ∅}, {30, ∅, ∅}}}", avl.toString());
+			avl.insert(5, 7);
+			Assert.assertEquals("{20, {7, {5, ∅, ∅}, {10, ∅, ∅}}, {27, {25, ∅, ∅}, {30, ∅, ∅}}}", avl.toString());
+			Assert.assertNull(avl.father);
+			checkAVL(avl);
+		}
+
+		@Test
+		public void testAVLRemoveRebalances() {
+			BinarySearchTreeImpl<Integer> avl = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+			avl.insert(20, 10, 30, 5, 15, 25, 35, 1);
+			avl.remove(25, 35);
+			Assert.assertEquals("{10, {5, {1, ∅, ∅}, ∅}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}", avl.toString());
+			checkAVL(avl);
+			avl.remove(10);
+			checkAVL(avl);
+			Assert.assertFalse(avl.contains(10));
+			Assert.assertTrue(avl.contains(15));
+		}
+
+		@Test
+		public void testAVLKeepsTagOperations() {
+			BinarySearchTreeImpl<Integer> avl = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+			avl.insert(1, 2, 3, 4);
+			avl.tagHeight();
+			avl.filterTags("height");
+			Assert.assertEquals("{2 [(height, 1)], {1 [(height, 2)], ∅, ∅}, {3 [(height, 2)], ∅, {4 [(height, 3)], ∅, ∅}}}", avl.toString());
+		}
+
+		@Test
+		public void testAVLHeightSortedInput() {
+			BinarySearchTreeImpl<Integer> avl = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+			for (int i = 0; i < BIG; i++) {
+				Assert.assertTrue(avl.insert(i));
+			}
+			Assert.assertTrue(avl.height() <= maxAVLHeight(BIG));
+			checkAVL(avl);
+		}
+
+		@Test
+		public void testAVLHeightReverseSortedInput() {
+			BinarySearchTreeImpl<Integer> avl = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+			for (int i = BIG; i > 0; i--) {
+				Assert.assertTrue(avl.insert(i));
+			}
+			Assert.assertTrue(avl.height() <= maxAVLHeight(BIG));
+			checkAVL(avl);
+		}
+
+		@Test
+		public void testAVLHeightZigZagInput() {
+			BinarySearchTreeImpl<Integer> avl = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+			for (int i = 0; i < BIG / 2; i++) {
+				Assert.assertTrue(avl.insert(i));
+				Assert.assertTrue(avl.insert(BIG - 1 - i));
+			}
+			Assert.assertTrue(avl.height() <= maxAVLHeight(BIG));
+			checkAVL(avl);
+			for (int i = 0; i < BIG; i += 2) {
+				avl.remove(i);
+			}
+			Assert.assertTrue(avl.height() <= maxAVLHeight(BIG / 2));
+			checkAVL(avl);
+		}
+
+
+		//	Árboles degenerados (listas), sin desbordar la pila
+
+		private static final int DEGENERATE = 5000000;
+
+		//	Construye la lista 0, 1, ..., n-1 insertando siempre desde el
+		//	último nodo, para no pagar el descenso cuadrático desde la raíz
+		private static BinarySearchTreeImpl<Integer> degenerate(int n) {
+			//	Se cuelgan los nodos directamente y se calculan alturas y
+			//	tamaños al final: insertar uno a uno costaría O(n²)
+			BinarySearchTreeImpl<Integer> root = new BinarySearchTreeImpl<Integer>();
+			root.insert(0);
+			BinarySearchTreeImpl<Integer> tail = root;
+			for (int i = 1; i < n; i++) {
+				tail = tail.addChild(false, i);
+			}
+			root.recomputeMeasures();
+			return root;
+		}
+
+		@Test
+		public void testSubtreeHandleUpdatesRoot() {
+			BinarySearchTreeImpl<Integer> right = ejemplo.getRightBST();
+			Assert.assertTrue(right.insert(17));
+			right.getLeftBST().insert(12);
+			Assert.assertEquals(8, ejemplo.size());
+			Assert.assertEquals(4, ejemplo.height());
+			Assert.assertEquals(5, ejemplo.rank(17));
+			Assert.assertEquals(Integer.valueOf(15), ejemplo.select(4));
+			Assert.assertEquals(4, ejemplo.countInRange(11, 20));
+
+			right.remove(30);
+			right.getLeftBST().remove(12);
+			Assert.assertEquals(6, ejemplo.size());
+			Assert.assertEquals(4, ejemplo.height());
+			Assert.assertEquals("{10, {5, {2, ∅, ∅}, ∅}, {20, {15, ∅, {17, ∅, ∅}}, ∅}}", ejemplo.toString());
+			//	Borrar el único nodo de un sub-árbol lo deja vacío
+			ejemplo.getLeftBST().getLeftBST().remove(2);
+			Assert.assertEquals(5, ejemplo.size());
+			Assert.assertEquals("{10, {5, ∅, ∅}, {20, {15, ∅, {17, ∅, ∅}}, ∅}}", ejemplo.toString());
+			Assert.assertEquals(1, ejemplo.getLeftBST().size());
+		}
+
+		@Test
+		public void testDegenerateInsertContainsRemove() {
+			BinarySearchTreeImpl<Integer> list = degenerate(DEGENERATE);
+			Assert.assertTrue(list.contains(DEGENERATE - 1));
+			Assert.assertFalse(list.contains(DEGENERATE));
+			Assert.assertTrue(list.insert(DEGENERATE));
+			Assert.assertFalse(list.insert(DEGENERATE));
+			Assert.assertEquals(DEGENERATE + 1, list.height());
+			list.remove(DEGENERATE);
+			list.remove(DEGENERATE / 2);
+			Assert.assertFalse(list.contains(DEGENERATE / 2));
+			Assert.assertTrue(list.contains(DEGENERATE - 1));
+			Assert.assertEquals(DEGENERATE - 1, list.height());
+			Assert.assertEquals(DEGENERATE - 1, list.size());
+			Assert.assertEquals(DEGENERATE - 2, list.rank(DEGENERATE - 1));
+			Assert.assertEquals(Integer.valueOf(DEGENERATE - 1), list.select(DEGENERATE - 2));
+		}
+
+		//	Último nodo de la lista
+		private static BinarySearchTreeImpl<Integer> last(BinarySearchTreeImpl<Integer> list) {
+			while (!list.getRightBST().isEmpty()) {
+				list = list.getRightBST();
+			}
+			return list;
+		}
+
+		@Test
+		public void testDegenerateTags() {
+			BinarySearchTreeImpl<Integer> list = degenerate(DEGENERATE / 5);
+			list.tagHeight();
+			Assert.assertEquals(DEGENERATE / 5, last(list).getTag("height"));
+			list = degenerate(DEGENERATE / 5);
+			list.tagDecendents();
+			Assert.assertEquals(DEGENERATE / 5 - 1, list.getTag("decendents"));
+			Assert.assertEquals(0, last(list).getTag("decendents"));
+			list = degenerate(DEGENERATE / 5);
+			Assert.assertEquals(DEGENERATE / 5 - 1, list.tagOnlySonInorder());
+			Assert.assertEquals(1, last(list).getTag("onlySon"));
+			Assert.assertEquals(DEGENERATE / 5 - 1, list.getRightBST().getTag("onlySon"));
+		}
+
+		@Test
+		public void testDegenerateParallelTags() {
+			//	Con un solo hijo grande no se reparte: no se anidan tareas
+			BinarySearchTreeImpl<Integer> list = degenerate(DEGENERATE / 5);
+			list.tagDecendents(Execution.PARALLEL);
+			Assert.assertEquals(DEGENERATE / 5 - 1, list.getTag("decendents"));
+			Assert.assertEquals(DEGENERATE / 5 - 2, list.getRightBST().getTag("decendents"));
+			Assert.assertEquals(0, last(list).getTag("decendents"));
+		}
+
+
+		//	Etiquetas
+
+		@Test
+		public void testTagsAreCreatedLazily() {
+			for (Iterator<Integer> it = ejemplo.iteratorPreorder(); it.hasNext(); ) {
+				it.next();
+			}
+			Assert.assertNull(ejemplo.tags);
+			Assert.assertNull(ejemplo.getRightBST().getLeftBST().tags);
+			Assert.assertTrue(ejemplo.getTags().isEmpty());
+			Assert.assertNull(ejemplo.getTag("height"));
+			try {
+				ejemplo.getTags().put("height", 1);
+				Assert.fail();
+			} catch (UnsupportedOperationException e) {
+				Assert.assertNull(ejemplo.tags);
+			}
+		}
+
+		@Test
+		public void testCompactTags() {
+			ejemplo.tagHeight();
+			ejemplo.setTag("name", "root");
+			ejemplo.setTag("weight", 7);
+			ejemplo.setTag("name", "raíz");
+			Assert.assertEquals(Integer.valueOf(1), ejemplo.getTag("height"));
+			Assert.assertEquals(3, ejemplo.getTags().size());
+			Assert.assertEquals("{10 [(height, 1), (name, raíz), (weight, 7)], {5 [(height, 2)], {2 [(height, 3)], ∅, ∅}, ∅}, {20 [(height, 2)], {15 [(height, 3)], ∅, ∅}, {30 [(height, 3)], ∅, ∅}}}", ejemplo.toString());
+
+			ejemplo.getTags().remove("weight");
+			Assert.assertFalse(ejemplo.getTags().containsKey("weight"));
+			ejemplo.filterTags("name");
+			Assert.assertEquals("{10 [(name, raíz)], {5, {2, ∅, ∅}, ∅}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}", ejemplo.toString());
+			Assert.assertNull(ejemplo.getLeftBST().tags);
+			ejemplo.filterTags();
+			Assert.assertNull(ejemplo.tags);
+		}
+
+		@Test
+		public void testFilterTagsDegenerate() {
+			BinarySearchTreeImpl<Integer> list = degenerate(DEGENERATE / 5);
+			list.tagDecendents();
+			list.filterTags("height");
+			Assert.assertNull(list.tags);
+			Assert.assertNull(last(list).tags);
+		}
+
+
+		//	Recorridos con visitante
+
+		//	Anota cada llamada del recorrido como "fase:contenido@profundidad"
+		private static <T> TreeVisitor<T> recorder(final List<String> log) {
+			return new TreeVisitor<T>() {
+				@Override
+				public void preorder(TreeADT<T> node, int depth) {
+					log.add("pre:" + node.getContent() + "@" + depth);
+				}
+
+				@Override
+				public void inorder(TreeADT<T> node, int depth) {
+					log.add("in:" + node.getContent() + "@" + depth);
+				}
+
+				@Override
+				public void postorder(TreeADT<T> node, int depth) {
+					log.add("post:" + node.getContent() + "@" + depth);
+				}
+			};
+		}
+
+		@Test
+		public void testTraverseHooks() {
+			List<String> log = new ArrayList<String>();
+			other.getRightBST().traverse(BinarySearchTreeTests.<Integer>recorder(log));
+			Assert.assertEquals("[pre:20@1, pre:15@2, pre:12@3, in:12@3, post:12@3, in:15@2, post:15@2, in:20@1, post:20@1]", log.toString());
+			log.clear();
+			new BinarySearchTreeImpl<Integer>().traverse(BinarySearchTreeTests.<Integer>recorder(log));
+			Assert.assertTrue(log.isEmpty());
+		}
+
+		@Test
+		public void testFusedVisitorsRunInOrder() {
+			List<String> log = new ArrayList<String>();
+			ejemplo.getLeftBST().traverse(TreeVisitor.fuse(BinarySearchTreeTests.<Integer>recorder(log), BinarySearchTreeTests.<Integer>recorder(log)));
+			Assert.assertEquals("[pre:5@1, pre:5@1, pre:2@2, pre:2@2, in:2@2, in:2@2, post:2@2, post:2@2, in:5@1, in:5@1, post:5@1, post:5@1]", log.toString());
+		}
+
+		@Test
+		public void testTagAllMatchesSeparatePasses() {
+			BinarySearchTreeImpl<Integer> separate = new BinarySearchTreeImpl<Integer>();
+			BinarySearchTreeImpl<Integer> fused = new BinarySearchTreeImpl<Integer>();
+			Random random = new Random(17);
+			for (int i = 0; i < 2000; i++) {
+				int key = random.nextInt(5000);
+				separate.insert(key);
+				fused.insert(key);
+			}
+			separate.tagHeight();
+			separate.tagDecendents();
+			int onlySons = separate.tagOnlySonInorder();
+			Assert.assertEquals(onlySons, fused.tagAll());
+			Assert.assertEquals(separate.toString(), fused.toString());
+			Assert.assertEquals(3, other.tagAll());
+			other.filterTags("onlySon");
+			Assert.assertEquals("{10, {5, {2 [(onlySon, 1)], ∅, ∅}, ∅}, {20, {15 [(onlySon, 3)], {12 [(onlySon, 2)], ∅, ∅}, ∅}, ∅}}", other.toString());
+		}
+
+
+		//	Ejecución en paralelo
+
+		@Test
+		public void testParallelTagsMatchSequential() {
+			BinarySearchTreeImpl<Integer> sequential = new BinarySearchTreeImpl<Integer>();
+			BinarySearchTreeImpl<Integer> parallel = new BinarySearchTreeImpl<Integer>();
+			Random random = new Random(19);
+			for (int i = 0; i < BIG / 10; i++) {
+				int key = random.nextInt();
+				sequential.insert(key);
+				parallel.insert(key);
+			}
+			sequential.tagDecendents(Execution.SEQUENTIAL);
+			parallel.tagDecendents(Execution.PARALLEL);
+			sequential.tagHeight();
+			parallel.tagHeight();
+			Assert.assertEquals(sequential.toString(), parallel.toString());
+
+			sequential.filterTags(Execution.SEQUENTIAL, "height");
+			parallel.filterTags(Execution.PARALLEL, "height");
+			Assert.assertEquals(sequential.toString(), parallel.toString());
+			Assert.assertNull(parallel.getTag("decendents"));
+			Assert.assertEquals(1, parallel.getTag("height"));
+		}
+
+		@Test
+		public void testParallelOnSmallAndEmptyTrees() {
+			ejemplo.tagDecendents(Execution.PARALLEL);
+			ejemplo.filterTags(Execution.PARALLEL, "decendents");
+			Assert.assertEquals("{10 [(decendents, 5)], {5 [(decendents, 1)], {2 [(decendents, 0)], ∅, ∅}, ∅}, {20 [(decendents, 2)], {15 [(decendents, 0)], ∅, ∅}, {30 [(decendents, 0)], ∅, ∅}}}", ejemplo.toString());
+			BinarySearchTreeImpl<Integer> empty = new BinarySearchTreeImpl<Integer>();
+			empty.tagDecendents(Execution.PARALLEL);
+			empty.filterTags(Execution.PARALLEL);
+			Assert.assertEquals("∅", empty.toString());
+		}
+
+
+		//	Volcado a Appendable
+
+		@Test
+		public void testWriteToMatchesToString() throws IOException {
+			other.tagHeight();
+			StringWriter out = new StringWriter();
+			other.writeTo(out);
+			Assert.assertEquals("{10 [(height, 1)], {5 [(height, 2)], {2 [(height, 3)], ∅, ∅}, ∅}, {20 [(height, 2)], {15 [(height, 3)], {12 [(height, 4)], ∅, ∅}, ∅}, ∅}}", out.toString());
+			Assert.assertEquals(out.toString(), other.toString());
+			StringWriter rendered = new StringWriter();
+			other.renderTo(rendered);
+			Assert.assertEquals(other.render(), rendered.toString());
+			Assert.assertTrue(rendered.toString().startsWith("10 [(height, 1)]\n|  5 [(height, 2)]\n|  |  2 [(height, 3)]\n|  |  |  ∅\n"));
+			StringWriter empty = new StringWriter();
+			new BinarySearchTreeImpl<Integer>().writeTo(empty);
+			Assert.assertEquals("∅", empty.toString());
+		}
+
+		@Test
+		public void testWriteToDegenerate() throws IOException {
+			BinarySearchTreeImpl<Integer> list = degenerate(DEGENERATE / 5);
+			StringBuilder out = new StringBuilder();
+			list.writeTo(out);
+			Assert.assertTrue(out.toString().startsWith("{0, ∅, {1, ∅, {2, ∅, "));
+			int last = out.indexOf("{" + (DEGENERATE / 5 - 1) + ", ∅, ∅}");
+			//	Tras el último nodo sólo quedan las llaves de todos los anteriores
+			Assert.assertEquals(out.length(), out.indexOf("}") + DEGENERATE / 5);
+			Assert.assertTrue(last > 0);
+			Assert.assertEquals(out.length(), list.toString().length());
+			//	render() repite la sangría en cada línea: con 1000 niveles basta
+			Assert.assertEquals(2001, degenerate(1000).render().split("\n").length);
+		}
+
+
+		//	Carga masiva
+
+		@Test
+		public void testBulkInsertEmptyBuildsBalanced() {
+			BinarySearchTreeImpl<Integer> t = new BinarySearchTreeImpl<Integer>();
+			Assert.assertEquals(7, t.bulkInsert(Arrays.asList(7, 1, 3, 5, 2, 6, 4, 3, 7)));
+			Assert.assertEquals("{4, {2, {1, ∅, ∅}, {3, ∅, ∅}}, {6, {5, ∅, ∅}, {7, ∅, ∅}}}", t.toString());
+			Assert.assertEquals(3, t.height());
+			Assert.assertSame(t, t.getLeftBST().father);
+			Assert.assertSame(t.getLeftBST(), t.getLeftBST().getRightBST().father);
+		}
+
+		@Test
+		public void testBulkInsertMergesExisting() {
+			Assert.assertEquals(3, ejemplo.bulkInsert(Arrays.asList(30, 12, 1, 25, 12)));
+			Assert.assertEquals("{12, {5, {2, {1, ∅, ∅}, ∅}, {10, ∅, ∅}}, {25, {20, {15, ∅, ∅}, ∅}, {30, ∅, ∅}}}", ejemplo.toString());
+			Assert.assertEquals(0, ejemplo.bulkInsert(Arrays.asList(1, 30)));
+			Assert.assertEquals(0, ejemplo.bulkInsert(new LinkedList<Integer>()));
+		}
+
+		@Test
+		public void testBulkInsertDropsTags() {
+			ejemplo.tagDecendents();
+			//	Sin elementos nuevos no se reconstruye
+			Assert.assertEquals(0, ejemplo.bulkInsert(Arrays.asList(2, 30)));
+			Assert.assertEquals(5, ejemplo.getTag("decendents"));
+			Assert.assertEquals(1, ejemplo.bulkInsert(Arrays.asList(12)));
+			Assert.assertEquals("{12, {5, {2, ∅, ∅}, {10, ∅, ∅}}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}", ejemplo.toString());
+		}
+
+		@Test
+		public void testBatchInsertIsOneByOne() {
+			//	insert(Collection) e insert(T...) no reconstruyen: mantienen la
+			//	forma y las etiquetas
+			ejemplo.tagDecendents();
+			Assert.assertEquals(2, ejemplo.insert(Arrays.asList(1, 3, 1)));
+			Assert.assertEquals(1, ejemplo.insert(40, 30));
+			Assert.assertEquals("{10 [(decendents, 5)], {5 [(decendents, 1)], {2 [(decendents, 0)], {1, ∅, ∅}, {3, ∅, ∅}}, ∅}, {20 [(decendents, 2)], {15 [(decendents, 0)], ∅, ∅}, {30 [(decendents, 0)], ∅, {40, ∅, ∅}}}}", ejemplo.toString());
+		}
+
+		@Test
+		public void testBulkInsertIntoSubtree() {
+			Assert.assertEquals(2, ejemplo.getRightBST().bulkInsert(Arrays.asList(25, 40)));
+			Assert.assertEquals(8, ejemplo.size());
+			Assert.assertEquals(4, ejemplo.height());
+			Assert.assertEquals("{10, {5, {2, ∅, ∅}, ∅}, {25, {20, {15, ∅, ∅}, ∅}, {40, {30, ∅, ∅}, ∅}}}", ejemplo.toString());
+		}
+
+		@Test
+		public void testBulkInsertNullInsertsNothing() {
+			try {
+				ejemplo.bulkInsert(Arrays.asList(3, null, 4));
+				Assert.fail();
+			} catch (IllegalArgumentException e) {
+				Assert.assertEquals("{10, {5, {2, ∅, ∅}, ∅}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}", ejemplo.toString());
+			}
+		}
+
+		@Test
+		public void testBulkInsertKeepsAVL() {
+			BinarySearchTreeImpl<Integer> avl = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+			List<Integer> keys = new ArrayList<Integer>();
+			for (int i = 0; i < BIG; i++) {
+				keys.add(i * 2);
+			}
+			Assert.assertEquals(BIG, avl.bulkInsert(keys));
+			Assert.assertEquals(20, avl.height());
+			for (int i = 0; i < 1000; i++) {
+				avl.insert(i * 2 + 1);
+			}
+			checkAVL(avl);
+		}
+
+
+		//	Hijos vacíos compartidos
+
+		//	Número de objetos distintos que forman el árbol, vacíos incluidos
+		private static int countNodeObjects(TreeADT<?> root) {
+			Set<TreeADT<?>> objects = Collections.newSetFromMap(new IdentityHashMap<TreeADT<?>, Boolean>());
+			ArrayDeque<TreeADT<?>> pending = new ArrayDeque<TreeADT<?>>();
+			pending.push(root);
+			while (!pending.isEmpty()) {
+				TreeADT<?> t = pending.pop();
+				if (objects.add(t) && !t.isEmpty()) {
+					pending.push(t.getSubtree(0));
+					pending.push(t.getSubtree(1));
+				}
+			}
+			return objects.size();
+		}
+
+		@Test
+		public void testEmptyChildrenAreSharedObjectCount() {
+			BinarySearchTreeImpl<Integer> t = new BinarySearchTreeImpl<Integer>();
+			Random random = new Random(13);
+			for (int i = 0; i < 100000; i++) {
+				t.insert(random.nextInt());
+			}
+			//	Un objeto por elemento más un único vacío compartido, en lugar
+			//	de los 2n + 1 vacíos de antes
+			Assert.assertEquals(t.size() + 1, countNodeObjects(t));
+			TreeADT<Integer> min = t;
+			while (!min.getSubtree(0).isEmpty()) {
+				min = min.getSubtree(0);
+			}
+			Assert.assertSame(ejemplo.getSubtree(0).getSubtree(1), min.getSubtree(0));
+
+			ejemplo.remove(2, 10, 30);
+			Assert.assertEquals("{15, {5, ∅, ∅}, {20, ∅, ∅}}", ejemplo.toString());
+			ejemplo.bulkInsert(Arrays.asList(1, 3, 40));
+			Assert.assertEquals(ejemplo.size() + 1, countNodeObjects(ejemplo));
+			Assert.assertEquals("{15, {3, {1, ∅, ∅}, {5, ∅, ∅}}, {40, {20, ∅, ∅}, ∅}}", ejemplo.toString());
+			Assert.assertEquals("15\n|  3\n|  |  1\n|  |  |  ∅\n|  |  |  ∅\n|  |  5\n|  |  |  ∅\n|  |  |  ∅\n|  40\n|  |  20\n|  |  |  ∅\n|  |  |  ∅\n|  |  ∅\n", ejemplo.render());
+		}
+
+		@Test(expected = UnsupportedOperationException.class)
+		public void testSharedEmptyIsReadOnly() {
+			((BinarySearchTreeImpl<Integer>) ejemplo.getSubtree(0).getSubtree(1)).insert(7);
+		}
+
+		@Test
+		public void testInsertIntoEmptyChild() {
+			//	Pedir un hijo vacío no lo guarda: sigue el vacío compartido
+			BinarySearchTreeImpl<Integer> empty = ejemplo.getLeftBST().getRightBST();
+			BinarySearchTreeImpl<Integer> other = ejemplo.getLeftBST().getRightBST();
+			Assert.assertTrue(empty.isEmpty());
+			Assert.assertTrue(ejemplo.getRightBST().getRightBST().getLeftBST().isEmpty());
+			Assert.assertEquals(ejemplo.size() + 1, countNodeObjects(ejemplo));
+
+			//	Hasta que se inserta en él
+			Assert.assertTrue(empty.insert(7));
+			Assert.assertEquals("{10, {5, {2, ∅, ∅}, {7, ∅, ∅}}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}", ejemplo.toString());
+			Assert.assertSame(empty, ejemplo.getLeftBST().getRightBST());
+			Assert.assertEquals(7, ejemplo.size());
+			Assert.assertTrue(ejemplo.contains(7));
+			//	Si el hueco ya está ocupado, se inserta desde el padre
+			Assert.assertTrue(other.insert(8));
+			Assert.assertFalse(other.insert(5));
+			Assert.assertTrue(other.isEmpty());
+			Assert.assertEquals("{10, {5, {2, ∅, ∅}, {7, ∅, {8, ∅, ∅}}}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}", ejemplo.toString());
+			Assert.assertEquals(8, ejemplo.size());
+			Assert.assertEquals(ejemplo.size() + 1, countNodeObjects(ejemplo));
+			ejemplo.remove(7, 8);
+			Assert.assertEquals("{10, {5, {2, ∅, ∅}, ∅}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}", ejemplo.toString());
+		}
+
+
+		//	Borrado masivo
+
+		@Test
+		public void testRemoveAllFewElementsRemovesOneByOne() {
+			Assert.assertEquals(1, ejemplo.removeAll(Arrays.asList(10, 10)));
+			Assert.assertEquals("{15, {5, {2, ∅, ∅}, ∅}, {20, ∅, {30, ∅, ∅}}}", ejemplo.toString());
+		}
+
+		@Test
+		public void testRemoveAllMergesAndRebuilds() {
+			Assert.assertEquals(2, ejemplo.removeAll(Arrays.asList(20, 2, 20)));
+			Assert.assertEquals("{15, {10, {5, ∅, ∅}, ∅}, {30, ∅, ∅}}", ejemplo.toString());
+			Assert.assertSame(ejemplo, ejemplo.getLeftBST().father);
+			Assert.assertSame(ejemplo.getLeftBST(), ejemplo.getLeftBST().getLeftBST().father);
+			Assert.assertEquals(4, ejemplo.removeAll(Arrays.asList(5, 10, 15, 30)));
+			Assert.assertTrue(ejemplo.isEmpty());
+			Assert.assertEquals(0, ejemplo.size());
+			Assert.assertEquals("∅", ejemplo.toString());
+		}
 
+		@Test
+		public void testRemoveAllIsAllOrNothing() {
+			for (List<Integer> batch : Arrays.asList(Arrays.asList(2, 3), Arrays.asList(2, 31), Arrays.asList(1, 2, 5), Arrays.asList(3))) {
+				try {
+					ejemplo.removeAll(batch);
+					Assert.fail();
+				} catch (NoSuchElementException e) {
+					Assert.assertEquals("{10, {5, {2, ∅, ∅}, ∅}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}", ejemplo.toString());
+				}
+			}
+		}
+
+		@Test(expected = IllegalArgumentException.class)
+		public void testRemoveAllNull() {
+			ejemplo.removeAll(Arrays.asList(2, null));
+		}
+
+		@Test
+		public void testRemoveAllLargeBatchKeepsAVL() {
+			BinarySearchTreeImpl<Integer> avl = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+			List<Integer> odd = new ArrayList<Integer>();
+			for (int i = 0; i < BIG / 10; i++) {
+				avl.insert(i);
+				if (i % 2 == 1) {
+					odd.add(i);
+				}
+			}
+			Collections.shuffle(odd, new Random(3));
+			Assert.assertEquals(odd.size(), avl.removeAll(odd));
+			Assert.assertEquals(BIG / 20, avl.size());
+			Iterator<Integer> it = avl.iteratorInorder();
+			for (int i = 0; i < BIG / 10; i += 2) {
+				Assert.assertEquals(i, it.next().intValue());
+			}
+			avl.remove(0);
+			avl.insert(1);
+			checkAVL(avl);
+		}
+
+
+		//	Estadísticos de orden
+
+		@Test
+		public void testSizeRankSelect() {
+			Assert.assertEquals(0, new BinarySearchTreeImpl<Integer>().size());
+			Assert.assertEquals(6, ejemplo.size());
+			Assert.assertEquals(0, ejemplo.rank(2));
+			Assert.assertEquals(3, ejemplo.rank(15));
+			Assert.assertEquals(4, ejemplo.rank(16));
+			Assert.assertEquals(6, ejemplo.rank(31));
+			int[] sorted = {2, 5, 10, 15, 20, 30};
+			for (int k = 0; k < sorted.length; k++) {
+				Assert.assertEquals(Integer.valueOf(sorted[k]), ejemplo.select(k));
+				Assert.assertEquals(k, ejemplo.rank(sorted[k]));
+			}
+			ejemplo.remove(10);
+			ejemplo.insert(11);
+			Assert.assertEquals(6, ejemplo.size());
+			Assert.assertEquals(Integer.valueOf(11), ejemplo.select(2));
+			Assert.assertEquals(5, ejemplo.getLeftBST().size() + ejemplo.getRightBST().size());
+		}
+
+		@Test(expected = IndexOutOfBoundsException.class)
+		public void testSelectOutOfRange() {
+			ejemplo.select(6);
+		}
+
+		@Test(expected = IllegalArgumentException.class)
+		public void testRankNull() {
+			ejemplo.rank(null);
+		}
+
+		@Test
+		public void testCountInRange() {
+			Assert.assertEquals(6, ejemplo.countInRange(0, 100));
+			Assert.assertEquals(3, ejemplo.countInRange(5, 15));
+			Assert.assertEquals(3, ejemplo.countInRange(6, 20));
+			Assert.assertEquals(1, ejemplo.countInRange(30, 30));
+			Assert.assertEquals(0, ejemplo.countInRange(16, 19));
+			Assert.assertEquals(0, ejemplo.countInRange(20, 5));
+		}
+
+
+		//	Búsquedas por aproximación y vistas de rangos
+
+		@Test
+		public void testFloorCeilingLowerHigher() {
+			Assert.assertEquals(Integer.valueOf(2), ejemplo.first());
+			Assert.assertEquals(Integer.valueOf(30), ejemplo.last());
+			Assert.assertEquals(Integer.valueOf(15), ejemplo.floor(15));
+			Assert.assertEquals(Integer.valueOf(15), ejemplo.floor(19));
+			Assert.assertNull(ejemplo.floor(1));
+			Assert.assertEquals(Integer.valueOf(20), ejemplo.ceiling(16));
+			Assert.assertNull(ejemplo.ceiling(31));
+			Assert.assertEquals(Integer.valueOf(10), ejemplo.lower(15));
+			Assert.assertNull(ejemplo.lower(2));
+			Assert.assertEquals(Integer.valueOf(20), ejemplo.higher(15));
+			Assert.assertNull(ejemplo.higher(30));
+		}
+
+		@Test(expected = NoSuchElementException.class)
+		public void testFirstEmpty() {
+			new BinarySearchTreeImpl<Integer>().first();
+		}
+
+		@Test
+		public void testSubSetViews() {
+			Assert.assertEquals("[5, 10, 15]", ejemplo.subSet(5, 20).toString());
+			Assert.assertEquals("[2, 5]", ejemplo.headSet(10).toString());
+			Assert.assertEquals("[20, 30]", ejemplo.tailSet(16).toString());
+			Assert.assertEquals("[]", ejemplo.subSet(16, 19).toString());
+			Assert.assertEquals(3, ejemplo.subSet(5, 20).size());
+			Assert.assertEquals(Integer.valueOf(5), ejemplo.subSet(3, 20).first());
+			Assert.assertEquals(Integer.valueOf(15), ejemplo.subSet(3, 20).last());
+			Assert.assertEquals(Integer.valueOf(30), ejemplo.tailSet(3).last());
+			Assert.assertTrue(ejemplo.subSet(5, 20).contains(15));
+			Assert.assertFalse(ejemplo.subSet(5, 20).contains(20));
+			Assert.assertEquals("[10, 15]", ejemplo.subSet(5, 20).subSet(10, 16).toString());
+		}
+
+		@Test
+		public void testViewsReflectLaterInserts() {
+			SortedSet<Integer> view = ejemplo.subSet(5, 20);
+			ejemplo.insert(12, 25);
+			ejemplo.remove(5);
+			Assert.assertEquals("[10, 12, 15]", view.toString());
+			Assert.assertEquals(3, view.size());
+		}
+
+		@Test(expected = ConcurrentModificationException.class)
+		public void testViewIteratorFailsFast() {
+			Iterator<Integer> it = ejemplo.tailSet(0).iterator();
+			it.next();
+			ejemplo.insert(7);
+			it.next();
+		}
+
+		@Test(expected = IllegalArgumentException.class)
+		public void testSubSetOutOfView() {
+			ejemplo.subSet(5, 20).subSet(1, 10);
+		}
+
+
+		//	Recorrido en anchura
+
+		private static <T> String drain(Iterator<T> it) {
+			List<T> out = new ArrayList<T>();
+			while (it.hasNext()) {
+				out.add(it.next());
+			}
+			return out.toString();
+		}
+
+		@Test
+		public void testIteratorWidthLevelOrder() {
+			BinarySearchTreeImpl<Integer> t = new BinarySearchTreeImpl<Integer>();
+			t.insert(50, 30, 80, 10, 40, 60, 5, 45, 70);
+			Assert.assertEquals("[50, 30, 80, 10, 40, 60, 5, 45, 70]", drain(t.iteratorWidth()));
+			Assert.assertEquals("[10, 5, 20, 2, 15, 30]", drain(ejemplo.iteratorWidth()));
+			Assert.assertEquals("[]", drain(new BinarySearchTreeImpl<Integer>().iteratorWidth()));
+		}
+
+		@Test
+		public void testIteratorWidthDepthLimit() {
+			BinarySearchTreeImpl<Integer> t = new BinarySearchTreeImpl<Integer>();
+			t.insert(50, 30, 80, 10, 40, 60, 5, 45, 70);
+			Assert.assertEquals("[]", drain(t.iteratorWidth(0)));
+			Assert.assertEquals("[50]", drain(t.iteratorWidth(1)));
+			Assert.assertEquals("[50, 30, 80, 10, 40, 60]", drain(t.iteratorWidth(3)));
+			Assert.assertEquals("[50, 30, 80, 10, 40, 60, 5, 45, 70]", drain(t.iteratorWidth(10)));
+		}
+
+		@Test(expected = ConcurrentModificationException.class)
+		public void testIteratorWidthFailsFast() {
+			Iterator<Integer> it = ejemplo.iteratorWidth();
+			it.next();
+			ejemplo.remove(30);
+			it.hasNext();
+		}
+
+		@Test
+		public void testIteratorWidthDegenerate() {
+			BinarySearchTreeImpl<Integer> list = degenerate(DEGENERATE / 5);
+			Iterator<Integer> it = list.iteratorWidth(3);
+			Assert.assertEquals(Integer.valueOf(0), it.next());
+			Assert.assertEquals(Integer.valueOf(1), it.next());
+			Assert.assertEquals(Integer.valueOf(2), it.next());
+			Assert.assertFalse(it.hasNext());
+		}
+
+
+		//	Recorridos en profundidad y Spliterator
+
+		@Test
+		public void testDepthFirstIterators() {
+			Assert.assertEquals("[2, 5, 10, 15, 20, 30]", drain(ejemplo.iteratorInorder()));
+			Assert.assertEquals("[10, 5, 2, 20, 15, 30]", drain(ejemplo.iteratorPreorder()));
+			Assert.assertEquals("[2, 5, 15, 30, 20, 10]", drain(ejemplo.iteratorPostorder()));
+			Assert.assertEquals("[]", drain(new BinarySearchTreeImpl<Integer>().iteratorInorder()));
+			Assert.assertEquals("[2, 5]", drain(ejemplo.getLeftBST().iteratorInorder()));
+		}
+
+		@Test(expected = ConcurrentModificationException.class)
+		public void testInorderIteratorFailsFast() {
+			Iterator<Integer> it = ejemplo.iteratorInorder();
+			it.next();
+			ejemplo.insert(3);
+			it.next();
+		}
+
+		@Test
+		public void testSpliteratorSplitsBySubtrees() {
+			Spliterator<Integer> right = ejemplo.spliterator();
+			Assert.assertEquals(6, right.estimateSize());
+			Spliterator<Integer> left = right.trySplit();
+			Assert.assertEquals(2, left.estimateSize());
+			Assert.assertEquals(4, right.estimateSize());
+			List<Integer> seen = new ArrayList<Integer>();
+			left.forEachRemaining(seen::add);
+			right.tryAdvance(seen::add);
+			Assert.assertEquals(3, right.estimateSize());
+			Spliterator<Integer> middle = right.trySplit();
+			Assert.assertEquals(1, middle.estimateSize());
+			Assert.assertEquals(2, right.estimateSize());
+			middle.forEachRemaining(seen::add);
+			right.tryAdvance(seen::add);
+			Assert.assertNull(right.trySplit());
+			right.forEachRemaining(seen::add);
+			Assert.assertEquals("[2, 5, 10, 15, 20, 30]", seen.toString());
+			Assert.assertEquals(0, right.estimateSize());
+		}
+
+		@Test
+		public void testParallelStream() {
+			BinarySearchTreeImpl<Integer> avl = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+			List<Integer> keys = new ArrayList<Integer>();
+			for (int i = 1; i <= BIG; i++) {
+				keys.add(i);
+			}
+			avl.bulkInsert(keys);
+			Assert.assertEquals((long) BIG * (BIG + 1) / 2, avl.stream().parallel().mapToLong(Integer::longValue).sum());
+			Assert.assertEquals(BIG, avl.stream().parallel().filter(x -> x > 0).count());
+			Assert.assertEquals(keys, avl.stream().parallel().collect(Collectors.toList()));
+		}
+
+		//	Álgebra de conjuntos
+
+		@Test
+		public void testSetOperations() {
+			//	ejemplo = {2, 5, 10, 15, 20, 30}, other = {2, 5, 10, 12, 15, 20}
+			Assert.assertEquals("{12, {5, {2, ∅, ∅}, {10, ∅, ∅}}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}", ejemplo.union(other).toString());
+			Assert.assertEquals("{10, {5, {2, ∅, ∅}, ∅}, {20, {15, ∅, ∅}, ∅}}", ejemplo.intersection(other).toString());
+			Assert.assertEquals("{30, ∅, ∅}", ejemplo.difference(other).toString());
+			Assert.assertEquals("{12, ∅, ∅}", other.difference(ejemplo).toString());
+			Assert.assertEquals("∅", ejemplo.difference(ejemplo).toString());
+			//	El resultado siempre se reconstruye equilibrado
+			Assert.assertEquals("{15, {5, {2, ∅, ∅}, {10, ∅, ∅}}, {30, {20, ∅, ∅}, ∅}}", ejemplo.union(new BinarySearchTreeImpl<Integer>()).toString());
+			//	Los operandos no cambian
+			Assert.assertEquals("{10, {5, {2, ∅, ∅}, ∅}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}", ejemplo.toString());
+			Assert.assertEquals("{10, {5, {2, ∅, ∅}, ∅}, {20, {15, {12, ∅, ∅}, ∅}, ∅}}", other.toString());
+		}
+
+		@Test(expected = IllegalArgumentException.class)
+		public void testSetOperationNull() {
+			ejemplo.union(null);
+		}
+
+		@Test
+		public void testSetOperationsLargeAndParallel() {
+			//	Una lista degenerada de 10^6 y un árbol aleatorio: coste lineal
+			BinarySearchTreeImpl<Integer> list = degenerate(DEGENERATE / 5);
+			BinarySearchTreeImpl<Integer> random = new BinarySearchTreeImpl<Integer>();
+			Random r = new Random(9);
+			for (int i = 0; i < 100000; i++) {
+				random.insert(r.nextInt(2 * DEGENERATE / 5) - DEGENERATE / 10);
+			}
+			for (Execution execution : Execution.values()) {
+				BinarySearchTreeImpl<Integer> union = list.union(random, execution);
+				BinarySearchTreeImpl<Integer> intersection = list.intersection(random, execution);
+				BinarySearchTreeImpl<Integer> difference = random.difference(list, execution);
+				Assert.assertEquals(list.size() + random.size(), union.size() + intersection.size());
+				Assert.assertEquals(random.size(), intersection.size() + difference.size());
+				for (BinarySearchTreeImpl<Integer> result : Arrays.asList(union, intersection, difference)) {
+					checkAVL(result);
+					//	Perfectamente equilibrados
+					Assert.assertEquals(32 - Integer.numberOfLeadingZeros(result.size()), result.height());
+				}
+				Assert.assertEquals(Math.min(0, random.first()), (int) union.first());
+				Assert.assertTrue(difference.stream().allMatch(key -> key < 0 || key >= DEGENERATE / 5));
+				Assert.assertTrue(intersection.stream().allMatch(key -> random.contains(key) && key >= 0 && key < DEGENERATE / 5));
+			}
+			Assert.assertEquals(list.union(random).toString(), list.union(random, Execution.PARALLEL).toString());
+		}
+
+		@Test
+		public void testSplitJoin() {
+			BinarySearchTreeImpl<Integer> greater = ejemplo.split(15);
+			Assert.assertEquals("{5, {2, ∅, ∅}, {10, ∅, ∅}}", ejemplo.toString());
+			Assert.assertEquals("{20, {15, ∅, ∅}, {30, ∅, ∅}}", greater.toString());
+			Assert.assertEquals("{15, {5, {2, ∅, ∅}, {10, ∅, ∅}}, {30, {20, ∅, ∅}, ∅}}", BinarySearchTreeImpl.join(ejemplo, greater).toString());
+			Assert.assertEquals("{20, {15, ∅, ∅}, {30, ∅, ∅}}", greater.split(0).toString());
+			Assert.assertTrue(greater.isEmpty());
+			Assert.assertEquals("∅", ejemplo.split(100).toString());
+			Assert.assertEquals(3, ejemplo.size());
+
+			BinarySearchTreeImpl<Integer> avl = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+			for (int i = 0; i < BIG; i++) {
+				avl.insert(i);
+			}
+			BinarySearchTreeImpl<Integer> high = avl.split(BIG / 3, Execution.PARALLEL);
+			Assert.assertEquals(BIG / 3, avl.size());
+			Assert.assertEquals(BIG - BIG / 3, high.size());
+			checkAVL(avl);
+			checkAVL(high);
+			//	Siguen en modo AVL
+			high.insert(-1);
+			checkAVL(high);
+			high.remove(-1);
+			BinarySearchTreeImpl<Integer> all = BinarySearchTreeImpl.join(avl, high, Execution.PARALLEL);
+			Assert.assertEquals(BIG, all.size());
+			Assert.assertEquals(20, all.height());
+		}
+
+		@Test(expected = IllegalArgumentException.class)
+		public void testJoinOverlapping() {
+			BinarySearchTreeImpl.join(ejemplo, other);
+		}
+
+		//	Búsqueda por dedo
+
+		@Test
+		public void testFingerSearchSameResults() {
+			for (BinarySearchTreeImpl.Balance balance : BinarySearchTreeImpl.Balance.values()) {
+				BinarySearchTreeImpl<Integer> plain = new BinarySearchTreeImpl<Integer>(balance);
+				BinarySearchTreeImpl<Integer> finger = new BinarySearchTreeImpl<Integer>(balance);
+				finger.setFingerSearch(true);
+				Assert.assertTrue(finger.isFingerSearch());
+				Random random = new Random(21);
+				int key = 0;
+				for (int i = 0; i < 20000; i++) {
+					//	Paseo aleatorio: claves casi siempre cercanas a la anterior
+					key += random.nextInt(21) - 10;
+					switch (random.nextInt(3)) {
+					case 0:
+						Assert.assertEquals(plain.insert(key), finger.insert(key));
+						break;
+					case 1:
+						Assert.assertEquals(plain.contains(key), finger.contains(key));
+						break;
+					default:
+						if (plain.contains(key)) {
+							plain.remove(key);
+							finger.remove(key);
+						} else {
+							try {
+								finger.remove(key);
+								Assert.fail();
+							} catch (NoSuchElementException e) {
+							}
+						}
+					}
+				}
+				Assert.assertEquals(plain.toString(), finger.toString());
+				Assert.assertEquals(plain.size(), finger.size());
+				Assert.assertTrue(finger.getFingerHits() > 4 * finger.getFingerMisses());
+			}
+		}
+
+		@Test
+		public void testFingerSearchCounters() {
+			ejemplo.setFingerSearch(true);
+			Assert.assertTrue(ejemplo.contains(2));
+			//	Sin dedo se empieza por la raíz
+			Assert.assertEquals(0, ejemplo.getFingerHits());
+			Assert.assertEquals(1, ejemplo.getFingerMisses());
+			//	Desde 2 se sube sólo hasta 5, que abarca el 4
+			Assert.assertFalse(ejemplo.contains(4));
+			Assert.assertEquals(1, ejemplo.getFingerHits());
+			//	El 15 queda fuera del sub-árbol de 5: hay que subir a la raíz
+			Assert.assertTrue(ejemplo.contains(15));
+			Assert.assertEquals(2, ejemplo.getFingerMisses());
+			Assert.assertTrue(ejemplo.insert(17));
+			Assert.assertTrue(ejemplo.contains(16) == false && ejemplo.contains(17));
+			Assert.assertEquals(4, ejemplo.getFingerHits());
+
+			//	Tras reconstruir, el dedo se olvida
+			ejemplo.bulkInsert(Arrays.asList(1, 3));
+			Assert.assertTrue(ejemplo.contains(3));
+			Assert.assertEquals(3, ejemplo.getFingerMisses());
+			Assert.assertEquals("{10, {3, {2, {1, ∅, ∅}, ∅}, {5, ∅, ∅}}, {20, {17, {15, ∅, ∅}, ∅}, {30, ∅, ∅}}}", ejemplo.toString());
+
+			ejemplo.setFingerSearch(false);
+			Assert.assertFalse(ejemplo.isFingerSearch());
+			Assert.assertTrue(ejemplo.contains(3));
+			Assert.assertEquals(0, ejemplo.getFingerHits() + ejemplo.getFingerMisses());
+		}
+
+		@Test
+		public void testFingerSearchSequentialScan() {
+			BinarySearchTreeImpl<Integer> avl = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+			avl.setFingerSearch(true);
+			for (int i = 0; i < BIG; i++) {
+				avl.insert(i);
+			}
+			//	Añadir siempre por la derecha obliga a subir hasta la raíz
+			//	(salvo la primera inserción, en el árbol vacío, que no busca)
+			Assert.assertEquals(BIG - 1, avl.getFingerMisses());
+			checkAVL(avl);
+			avl.setFingerSearch(true);
+			for (int i = 0; i < BIG; i++) {
+				Assert.assertTrue(avl.contains(i));
+			}
+			//	Pero al recorrer en orden casi todas empiezan cerca del anterior
+			Assert.assertTrue(avl.getFingerMisses() < 100);
+			for (int i = 0; i < BIG; i += 2) {
+				avl.remove(i);
+			}
+			Assert.assertEquals(BIG / 2, avl.size());
+			checkAVL(avl);
+		}
+
+		//	Filtro de pertenencia
+
+		@Test
+		public void testMembershipFilterSameResults() {
+			BinarySearchTreeImpl<Integer> plain = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+			BinarySearchTreeImpl<Integer> filtered = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+			filtered.setMembershipFilter(0.01, 1 << 20);
+			Assert.assertTrue(filtered.hasMembershipFilter());
+			Random random = new Random(23);
+			for (int i = 0; i < 50000; i++) {
+				int key = random.nextInt(20000);
+				switch (random.nextInt(4)) {
+				case 0:
+					Assert.assertEquals(plain.insert(key), filtered.insert(key));
+					break;
+				case 1:
+					if (plain.contains(key)) {
+						plain.remove(key);
+						filtered.remove(key);
+					}
+					break;
+				default:
+					Assert.assertEquals(plain.contains(key), filtered.contains(key));
+				}
+				if (i % 10000 == 0) {
+					//	Cambios en bloque, que rehacen el filtro
+					List<Integer> batch = Arrays.asList(key + 1, key + 2, key + 3);
+					Assert.assertEquals(plain.bulkInsert(batch), filtered.bulkInsert(batch));
+					Assert.assertEquals(plain.removeAll(batch), filtered.removeAll(batch));
+				}
+			}
+			Assert.assertEquals(plain.toString(), filtered.toString());
+			Assert.assertTrue(filtered.getFilterRejections() > 0);
+
+			BinarySearchTreeImpl<Integer> high = filtered.split(10000);
+			for (int i = 0; i < 20000; i++) {
+				Assert.assertEquals(plain.contains(i) && i < 10000, filtered.contains(i));
+				Assert.assertEquals(plain.contains(i) && i >= 10000, high.contains(i));
+			}
+			filtered.removeMembershipFilter();
+			Assert.assertFalse(filtered.hasMembershipFilter());
+		}
+
+		@Test
+		public void testMembershipFilterMisses() {
+			BinarySearchTreeImpl<Integer> avl = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+			avl.setMembershipFilter(0.01, 1 << 20);
+			//	Crece desde el árbol vacío: el filtro se va redimensionando
+			for (int i = 0; i < 100000; i++) {
+				avl.insert(2 * i);
+			}
+			for (int i = 0; i < 100000; i++) {
+				Assert.assertTrue(avl.contains(2 * i));
+				Assert.assertFalse(avl.contains(2 * i + 1));
+			}
+			Assert.assertEquals(100000, avl.getFilterRejections() + avl.getFilterFalsePositives());
+			Assert.assertTrue(avl.getFilterFalsePositives() < 2000);
+		}
+
+		@Test
+		public void testMembershipFilterBudget() {
+			//	Con 1KB para 100000 elementos casi todo pasa el filtro, pero
+			//	los resultados siguen siendo correctos
+			BinarySearchTreeImpl<Integer> avl = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+			avl.setMembershipFilter(0.01, 1024);
+			for (int i = 0; i < 100000; i++) {
+				avl.insert(2 * i);
+			}
+			for (int i = 0; i < 1000; i++) {
+				Assert.assertTrue(avl.contains(2 * i));
+				Assert.assertFalse(avl.contains(2 * i + 1));
+			}
+			Assert.assertTrue(avl.getFilterFalsePositives() > 900);
+		}
+
+		@Test(expected = IllegalArgumentException.class)
+		public void testMembershipFilterBadRate() {
+			ejemplo.setMembershipFilter(0, 1024);
+		}
+
+		@Test
+		public void testMetrics() {
+			OperationMetrics metrics = new OperationMetrics();
+			ejemplo.setMetrics(metrics);
+			Assert.assertSame(metrics, ejemplo.getMetrics());
+			//	10, 20, 15 más la comparación final con el nodo encontrado
+			Assert.assertTrue(ejemplo.contains(15));
+			Assert.assertFalse(ejemplo.contains(4));
+			Assert.assertTrue(ejemplo.insert(17));
+			ejemplo.remove(30);
+			try {
+				ejemplo.remove(99);
+				Assert.fail();
+			} catch (NoSuchElementException e) {
+			}
+			//	Las llamadas sobre un sub-árbol no se miden
+			Assert.assertTrue(ejemplo.getLeftBST().contains(2));
+
+			Map<String, Long> snapshot = metrics.snapshot();
+			Assert.assertEquals(2L, (long) snapshot.get("contains.count"));
+			Assert.assertEquals(8L, (long) snapshot.get("contains.comparisons"));
+			Assert.assertEquals(6L, (long) snapshot.get("contains.nodesVisited"));
+			Assert.assertEquals(6L, (long) snapshot.get("contains.depth.total"));
+			Assert.assertEquals(1L, (long) snapshot.get("insert.count"));
+			Assert.assertEquals(4L, (long) snapshot.get("insert.comparisons"));
+			Assert.assertEquals(2L, (long) snapshot.get("remove.count"));
+			Assert.assertEquals(7L, (long) snapshot.get("remove.comparisons"));
+			Assert.assertEquals(5L, (long) snapshot.get("remove.depth.total"));
+			Assert.assertEquals(3L, (long) snapshot.get("remove.depth.max"));
+			Assert.assertTrue(snapshot.get("contains.latency.p50") <= snapshot.get("contains.latency.max"));
+
+			ejemplo.setMetrics(null);
+			Assert.assertNull(ejemplo.getMetrics());
+			Assert.assertTrue(ejemplo.contains(15));
+			Assert.assertEquals(snapshot, metrics.snapshot());
+		}
+
+		//	Comprueba recursivamente el orden, las alturas, los tamaños y los padres
+		private static <T extends Comparable<? super T>> int checkShape(BinarySearchTreeImpl<T> t) {
+			if (t.isEmpty()) {
+				return 0;
+			}
+			if (!t.getLeftBST().isEmpty()) {
+				Assert.assertSame(t, t.getLeftBST().father);
+				Assert.assertTrue(t.getLeftBST().getContent().compareTo(t.getContent()) < 0);
+			}
+			if (!t.getRightBST().isEmpty()) {
+				Assert.assertSame(t, t.getRightBST().father);
+				Assert.assertTrue(t.getRightBST().getContent().compareTo(t.getContent()) > 0);
+			}
+			int h = 1 + Math.max(checkShape(t.getLeftBST()), checkShape(t.getRightBST()));
+			Assert.assertEquals(h, t.height());
+			Assert.assertEquals(1 + t.getLeftBST().size() + t.getRightBST().size(), t.size());
+			return h;
+		}
+
+		@Test
+		public void testScapegoatRebuild() {
+			BinarySearchTreeImpl<Integer> tree = new BinarySearchTreeImpl<Integer>();
+			tree.setScapegoatRebuild(1);
+			Assert.assertTrue(tree.hasScapegoatRebuild());
+			tree.insert(1, 2);
+			Assert.assertEquals(0, tree.getRebuildCount());
+			//	Con 3 nodos en lista la altura pasa de log2(4): se rehace todo
+			tree.insert(3);
+			Assert.assertEquals("{2, {1, ∅, ∅}, {3, ∅, ∅}}", tree.toString());
+			Assert.assertNull(tree.father);
+			tree.insert(4, 5);
+			//	Sólo se rehace el sub-árbol de 3, el más bajo demasiado alto
+			Assert.assertEquals("{2, {1, ∅, ∅}, {4, {3, ∅, ∅}, {5, ∅, ∅}}}", tree.toString());
+			Assert.assertEquals(2, tree.getRebuildCount());
+			Assert.assertEquals(6, tree.getRebuiltNodes());
+			checkShape(tree);
+
+			tree.removeScapegoatRebuild();
+			Assert.assertFalse(tree.hasScapegoatRebuild());
+			tree.insert(6, 7, 8);
+			Assert.assertEquals(2, tree.getRebuildCount());
+			Assert.assertEquals(6, tree.height());
+		}
+
+		@Test
+		public void testScapegoatRebuildSorted() {
+			BinarySearchTreeImpl<Integer> tree = new BinarySearchTreeImpl<Integer>();
+			tree.setScapegoatRebuild(2);
+			for (int i = 0; i < 20000; i++) {
+				Assert.assertTrue(tree.insert(i));
+				Assert.assertTrue(tree.getImbalanceRatio() <= 2);
+			}
+			checkShape(tree);
+			Assert.assertEquals(20000, tree.size());
+			Assert.assertTrue(tree.getRebuildCount() > 0);
+			//	Coste amortizado logarítmico: menos de log2(n) nodos rehechos
+			//	por inserción
+			Assert.assertTrue(tree.getRebuiltNodes() < 20000 * Math.log(20000) / Math.log(2));
+			Iterator<Integer> it = tree.iteratorInorder();
+			for (int i = 0; i < 20000; i++) {
+				Assert.assertEquals(i, (int) it.next());
+			}
+			//	Sigue funcionando con normalidad tras las reconstrucciones
+			tree.remove(0);
+			Assert.assertFalse(tree.contains(0));
+			Assert.assertTrue(tree.contains(19999));
+		}
+
+		@Test
+		public void testScapegoatRebuildRandom() {
+			BinarySearchTreeImpl<Integer> tree = new BinarySearchTreeImpl<Integer>();
+			tree.setScapegoatRebuild(1.5);
+			Random random = new Random(25);
+			int n = 0;
+			while (n < 20000) {
+				if (tree.insert(random.nextInt())) {
+					n++;
+				}
+				Assert.assertTrue(tree.getImbalanceRatio() <= 1.5 || tree.height() <= 2);
+			}
+			checkShape(tree);
+			Assert.assertTrue(tree.getRebuildCount() > 0);
+			//	En orden aleatorio casi nunca hace falta
+			Assert.assertTrue(tree.getRebuiltNodes() < 20000);
+		}
+
+		@Test
+		public void testScapegoatRebuildShallowInsert() {
+			//	Activada sobre una lista, sólo se rehace al insertar al fondo
+			BinarySearchTreeImpl<Integer> tree = new BinarySearchTreeImpl<Integer>();
+			for (int i = 10; i < 20; i++) {
+				tree.insert(i);
+			}
+			tree.setScapegoatRebuild(1);
+			tree.insert(5);
+			Assert.assertEquals(0, tree.getRebuildCount());
+			Assert.assertEquals(10, tree.height());
+			//	Y sólo lo justo: el camino desde 18 ya es demasiado largo
+			tree.insert(20);
+			Assert.assertEquals(1, tree.getRebuildCount());
+			Assert.assertEquals(3, tree.getRebuiltNodes());
+			Assert.assertEquals(10, tree.height());
+			checkShape(tree);
+		}
+
+		@Test
+		public void testScapegoatRebuildAVLAndRatio() {
+			Assert.assertEquals(0, new BinarySearchTreeImpl<Integer>().getImbalanceRatio(), 0);
+			Assert.assertEquals(3 / (Math.log(7) / Math.log(2)), ejemplo.getImbalanceRatio(), 1e-9);
+			BinarySearchTreeImpl<Integer> avl = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+			avl.setScapegoatRebuild(1);
+			for (int i = 0; i < 1000; i++) {
+				avl.insert(i);
+			}
+			Assert.assertEquals(0, avl.getRebuildCount());
+			checkAVL(avl);
+		}
+
+		@Test(expected = IllegalArgumentException.class)
+		public void testScapegoatRebuildBadAlpha() {
+			ejemplo.setScapegoatRebuild(0.5);
+		}
+
+		@Test
+		public void testMetricsFingerSearch() {
+			OperationMetrics metrics = new OperationMetrics();
+			ejemplo.setMetrics(metrics);
+			ejemplo.setFingerSearch(true);
+			Assert.assertTrue(ejemplo.contains(2));
+			//	Se sube de 2 a 5, que ya acota el 4, y se baja desde 2: 2, 5, 2 y la final
+			Assert.assertFalse(ejemplo.contains(4));
+			Map<String, Long> snapshot = metrics.snapshot();
+			Assert.assertEquals(4L + 4L, (long) snapshot.get("contains.comparisons"));
+			Assert.assertEquals(3L + 3L, (long) snapshot.get("contains.nodesVisited"));
+			Assert.assertEquals(3L, (long) snapshot.get("contains.depth.max"));
+		}
 
+}
@@ -0,0 +1,239 @@
+package ule.edi.tree;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Árbol binario de búsqueda (AVL) que pueden usar a la vez varios hilos.
+ * 
+ * El árbol es una sucesión de versiones inmutables (ver {@link PersistentNode})
+ * y aquí sólo se guarda una referencia atómica a la versión actual:
+ * 
+ * - Las consultas ({@link #contains(Comparable)}, {@link #size()}, los
+ *   iteradores...) leen la versión actual y trabajan sobre ella sin
+ *   ningún bloqueo; como esa versión no cambia nunca, los iteradores no
+ *   fallan aunque otros hilos modifiquen el árbol mientras tanto.
+ * 
+ * - Las modificaciones son optimistas: calculan la nueva versión a partir
+ *   de la actual copiando sólo el camino afectado y la publican con un
+ *   compareAndSet, que sólo tiene éxito si nadie ha publicado otra versión
+ *   entre medias; si no, repiten la operación sobre la nueva.
+ * 
+ * Todas las operaciones son linealizables: cada una tiene efecto en el
+ * instante de su lectura (consultas) o de su compareAndSet con éxito
+ * (modificaciones). Las operaciones con varios elementos se aplican de
+ * forma atómica, todos a la vez.
+ * 
+ * @param <T> tipo de la información en cada nodo, comparable.
+ */
+public class ConcurrentBinarySearchTree<T extends Comparable<? super T>> {
+
+	//	Versión actual del árbol (null si es vacío)
+	private final AtomicReference<PersistentNode<T>> root = new AtomicReference<PersistentNode<T>>();
+
+	/**
+	 * Inserta un nuevo elemento en el árbol, si no estaba.
+	 * 
+	 * @param element valor a insertar.
+	 * @return true si se pudo insertar (no existia ese elemento en el arbol), false en caso contrario
+	 * @throws IllegalArgumentException si element es null
+	 */
+	public boolean insert(T element) {
+		if (element == null) {
+			throw new IllegalArgumentException();
+		}
+		while (true) {
+			PersistentNode<T> current = root.get();
+			PersistentNode<T> next = PersistentNode.insert(current, element);
+			if (next == current) {
+				return false;
+			}
+			if (root.compareAndSet(current, next)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Inserta de forma atómica los elementos de una colección.
+	 *  si alguno es 'null', NO INSERTA NINGUNO
+	 * 
+	 * @param elements valores a insertar.
+	 * @return numero de elementos insertados en el arbol (los que ya están no los inserta)
+	 * @throws IllegalArgumentException si alguno de los elementos es null
+	 */
+	public int insert(Collection<T> elements) {
+		for (T element : elements) {
+			if (element == null) {
+				throw new IllegalArgumentException();
+			}
+		}
+		while (true) {
+			PersistentNode<T> current = root.get();
+			PersistentNode<T> next = current;
+			for (T element : elements) {
+				next = PersistentNode.insert(next, element);
+			}
+			if (next == current || root.compareAndSet(current, next)) {
+				return PersistentNode.size(next) - PersistentNode.size(current);
+			}
+		}
+	}
+
+	/**
+	 * Inserta de forma atómica los elementos de un array.
+	 *  si alguno es 'null', NO INSERTA NINGUNO
+	 * 
+	 * @param elements elementos a insertar.
+	 * @return numero de elementos insertados en el arbol (los que ya están no los inserta)
+	 * @throws IllegalArgumentException si alguno de los elementos es null
+	 */
+	@SafeVarargs
+	public final int insert(T ... elements) {
+		//	Como insert(Collection), pero recorriendo el array sin que se
+		//	escape de este método
+		for (T element : elements) {
+			if (element == null) {
+				throw new IllegalArgumentException();
+			}
+		}
+		while (true) {
+			PersistentNode<T> current = root.get();
+			PersistentNode<T> next = current;
+			for (T element : elements) {
+				next = PersistentNode.insert(next, element);
+			}
+			if (next == current || root.compareAndSet(current, next)) {
+				return PersistentNode.size(next) - PersistentNode.size(current);
+			}
+		}
+	}
+
+	/**
+	 * Busca el elemento en el árbol, sin bloqueos.
+	 * 
+	 * @param element valor a buscar.
+	 * @return true si el elemento está en el árbol, false en caso contrario
+	 * @throws IllegalArgumentException si element es null
+	 */
+	public boolean contains(T element) {
+		if (element == null) {
+			throw new IllegalArgumentException();
+		}
+		return PersistentNode.contains(root.get(), element);
+	}
+
+	/**
+	 * Elimina un elemento del árbol.
+	 * 
+	 * @param element valor a eliminar.
+	 * @throws IllegalArgumentException si element es null
+	 * @throws NoSuchElementException si el elemento a eliminar no está en el árbol
+	 */
+	public void remove(T element) {
+		if (element == null) {
+			throw new IllegalArgumentException();
+		}
+		while (true) {
+			PersistentNode<T> current = root.get();
+			PersistentNode<T> next = PersistentNode.remove(current, element);
+			if (next == current) {
+				throw new NoSuchElementException();
+			}
+			if (root.compareAndSet(current, next)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Elimina de forma atómica los valores en un array del árbol.
+	 * O todos o ninguno; si alguno es 'null' o no lo contiene el árbol, no se eliminará ningún elemento
+	 * 
+	 * @throws IllegalArgumentException si alguno de los elementos es null
+	 * @throws NoSuchElementException si alguno de los elementos a eliminar no está en el árbol
+	 */
+	@SafeVarargs
+	public final void remove(T ... elements) {
+		for (T element : elements) {
+			if (element == null) {
+				throw new IllegalArgumentException();
+			}
+		}
+		while (true) {
+			PersistentNode<T> current = root.get();
+			PersistentNode<T> next = current;
+			for (T element : elements) {
+				PersistentNode<T> after = PersistentNode.remove(next, element);
+				if (after == next) {
+					throw new NoSuchElementException();
+				}
+				next = after;
+			}
+			if (root.compareAndSet(current, next)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Devuelve el número de elementos del árbol.
+	 * 
+	 * @return número de elementos, 0 si es vacío.
+	 */
+	public int size() {
+		return PersistentNode.size(root.get());
+	}
+
+	/**
+	 * Cierto si el árbol no tiene elementos.
+	 * 
+	 * @return cierto para árboles vacíos
+	 */
+	public boolean isEmpty() {
+		return root.get() == null;
+	}
+
+	/**
+	 * Devuelve la altura del árbol, contando niveles (0 si es vacío).
+	 * 
+	 * @return altura del árbol.
+	 */
+	public int height() {
+		return PersistentNode.height(root.get());
+	}
+
+	/**
+	 * Devuelve la versión actual del árbol, que ya no cambiará aunque
+	 * otros hilos sigan modificando éste. Cuesta O(1): no se copia nada.
+	 * 
+	 * @return instantánea del árbol
+	 */
+	public PersistentBinarySearchTree<T> snapshot() {
+		return new PersistentBinarySearchTree<T>(root.get());
+	}
+
+	/**
+	 * Devuelve un iterador que recorre en orden los elementos que había
+	 * en el árbol al llamar a este método, sin bloqueos y sin verse
+	 * afectado por las modificaciones posteriores.
+	 * 
+	 * @return iterador para el recorrido en inorden
+	 */
+	public Iterator<T> iteratorInorder() {
+		return PersistentNode.iterator(root.get());
+	}
+
+	/**
+	 * Representa la versión actual del árbol con el formato de
+	 * {@link AbstractTreeADT#toString()}.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder bx = new StringBuilder();
+		PersistentNode.append(bx, root.get());
+		return bx.toString();
+	}
+}
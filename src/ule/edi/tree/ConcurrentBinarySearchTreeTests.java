@@ -0,0 +1,203 @@
+package ule.edi.tree;
+
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class ConcurrentBinarySearchTreeTests {
+
+	private static final int THREADS = 4;
+
+	private ConcurrentBinarySearchTree<Integer> ejemplo = null;
+
+	@Before
+	public void setupTrees() {
+		ejemplo = new ConcurrentBinarySearchTree<Integer>();
+		Assert.assertEquals(6, ejemplo.insert(10, 20, 5, 2, 15, 30));
+		Assert.assertEquals("{10, {5, {2, ∅, ∅}, ∅}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}", ejemplo.toString());
+	}
+
+	@Test
+	public void testBasicOperations() {
+		Assert.assertFalse(ejemplo.insert(15));
+		Assert.assertTrue(ejemplo.insert(1));
+		Assert.assertEquals("{10, {2, {1, ∅, ∅}, {5, ∅, ∅}}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}", ejemplo.toString());
+		Assert.assertTrue(ejemplo.contains(1));
+		Assert.assertFalse(ejemplo.contains(3));
+		ejemplo.remove(10);
+		Assert.assertEquals("{15, {2, {1, ∅, ∅}, {5, ∅, ∅}}, {20, ∅, {30, ∅, ∅}}}", ejemplo.toString());
+		Assert.assertEquals(6, ejemplo.size());
+		Assert.assertEquals(3, ejemplo.height());
+	}
+
+	@Test
+	public void testRemoveAllOrNothing() {
+		try {
+			ejemplo.remove(2, 5, 3);
+			Assert.fail();
+		} catch (NoSuchElementException e) {
+			Assert.assertEquals(6, ejemplo.size());
+		}
+		ejemplo.remove(2, 5);
+		Assert.assertEquals(4, ejemplo.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInsertNull() {
+		ejemplo.insert(1, null);
+	}
+
+	@Test
+	public void testIteratorIsSnapshot() {
+		Iterator<Integer> it = ejemplo.iteratorInorder();
+		Assert.assertEquals(2, it.next().intValue());
+		ejemplo.remove(5);
+		ejemplo.insert(3);
+		StringBuilder rest = new StringBuilder();
+		while (it.hasNext()) {
+			rest.append(it.next()).append(' ');
+		}
+		Assert.assertEquals("5 10 15 20 30 ", rest.toString());
+	}
+
+	/**
+	 * Lanza THREADS hilos que ejecutan body(índice) a la vez y propaga
+	 * el primer error que se produzca en cualquiera.
+	 */
+	private static void runConcurrently(int threads, final IntBody body) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			workers[t] = new Thread(() -> {
+				try {
+					start.await();
+					body.run(id);
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+			});
+			workers[t].start();
+		}
+		start.countDown();
+		for (Thread w : workers) {
+			w.join();
+		}
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+	}
+
+	private interface IntBody {
+		void run(int id) throws Exception;
+	}
+
+	@Test
+	public void testConcurrentDisjointInserts() throws InterruptedException {
+		final ConcurrentBinarySearchTree<Integer> t = new ConcurrentBinarySearchTree<Integer>();
+		final int perThread = 20000;
+		runConcurrently(THREADS, id -> {
+			for (int i = 0; i < perThread; i++) {
+				Assert.assertTrue(t.insert(i * THREADS + id));
+			}
+		});
+		Assert.assertEquals(THREADS * perThread, t.size());
+		int expected = 0;
+		for (Iterator<Integer> it = t.iteratorInorder(); it.hasNext(); ) {
+			Assert.assertEquals(expected++, it.next().intValue());
+		}
+		Assert.assertTrue(t.height() <= 1.45 * (Math.log(THREADS * perThread) / Math.log(2)) + 2);
+	}
+
+	@Test
+	public void testLinearizableVisibility() throws InterruptedException {
+		//	Cada escritor inserta sus claves en orden: si un lector ve la
+		//	clave i, por linealizabilidad debe ver también todas las
+		//	anteriores de ese escritor, y seguir viéndola después.
+		final ConcurrentBinarySearchTree<Integer> t = new ConcurrentBinarySearchTree<Integer>();
+		final int writers = 2;
+		final int perWriter = 20000;
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicInteger finishedWriters = new AtomicInteger();
+		runConcurrently(writers + 2, id -> {
+			if (id < writers) {
+				for (int i = 0; i < perWriter; i++) {
+					t.insert(i * writers + id);
+				}
+				if (finishedWriters.incrementAndGet() == writers) {
+					done.set(true);
+				}
+			} else {
+				//	Última clave vista de cada escritor (-1 ninguna)
+				int[] seen = new int[writers];
+				Arrays.fill(seen, -1);
+				while (! done.get()) {
+					for (int w = 0; w < writers; w++) {
+						int probe = seen[w] + 1;
+						while (probe < perWriter && t.contains(probe * writers + w)) {
+							probe++;
+						}
+						int last = probe - 1;
+						if (last >= 0) {
+							Assert.assertTrue(t.contains(last * writers + w));
+							Assert.assertTrue(t.contains((last / 2) * writers + w));
+						}
+						seen[w] = Math.max(seen[w], last);
+					}
+				}
+			}
+		});
+		Assert.assertEquals(writers * perWriter, t.size());
+	}
+
+	@Test
+	public void testConcurrentToggleAccounting() throws InterruptedException {
+		//	Todos los hilos insertan y borran las mismas claves: el número de
+		//	inserciones con éxito menos el de borrados con éxito de cada clave
+		//	tiene que coincidir con que esté o no al final.
+		final ConcurrentBinarySearchTree<Integer> t = new ConcurrentBinarySearchTree<Integer>();
+		final int keys = 64;
+		final AtomicInteger[] balance = new AtomicInteger[keys];
+		for (int k = 0; k < keys; k++) {
+			balance[k] = new AtomicInteger();
+		}
+		runConcurrently(THREADS, id -> {
+			Random random = new Random(id);
+			for (int i = 0; i < 50000; i++) {
+				int k = random.nextInt(keys);
+				if (random.nextBoolean()) {
+					if (t.insert(k)) {
+						balance[k].incrementAndGet();
+					}
+				} else {
+					try {
+						t.remove(k);
+						balance[k].decrementAndGet();
+					} catch (NoSuchElementException e) {
+						//	No estaba, otro hilo lo ha borrado antes
+					}
+				}
+			}
+		});
+		int size = 0;
+		for (int k = 0; k < keys; k++) {
+			int b = balance[k].get();
+			Assert.assertTrue(b == 0 || b == 1);
+			Assert.assertEquals(b == 1, t.contains(k));
+			size += b;
+		}
+		Assert.assertEquals(size, t.size());
+	}
+}
@@ -0,0 +1,143 @@
+package ule.edi.tree;
+
+import java.util.Arrays;
+
+
+/**
+ * Filtro de Bloom con contadores, para saber sin recorrer un árbol que un
+ * elemento NO está en él.
+ *
+ * Cada elemento marca k de los m contadores (elegidos a partir de su
+ * hashCode()) y, al quitarlo, los desmarca. Si alguno de los k contadores
+ * de un elemento está a 0, el elemento seguro que no está; si no, puede
+ * que esté (con una probabilidad de falso positivo que depende de m, k y
+ * el número de elementos).
+ *
+ * Los contadores son de 4 bits, 16 por cada long. Uno que llegue a 15 se
+ * queda saturado para siempre: no se incrementa ni se decrementa más,
+ * con lo que como mucho da algún falso positivo de más, pero nunca un
+ * falso negativo.
+ *
+ * Sólo es correcto si los elementos iguales según compareTo() tienen el
+ * mismo hashCode().
+ */
+final class CountingBloomFilter {
+
+	private static final int MAX_COUNT = 15;
+
+	//	Número de contadores, de funciones hash y de elementos para el que
+	//	se dimensionó
+	private final int counters;
+	private final int hashes;
+	private final int capacity;
+
+	private final long[] words;
+
+	/**
+	 * Filtro para capacity elementos con la tasa de falsos positivos dada,
+	 * sin pasar de maxBytes (si no cabe, se usa el máximo y la tasa real
+	 * será peor).
+	 */
+	CountingBloomFilter(int capacity, double falsePositiveRate, long maxBytes) {
+		if (capacity < 1 || !(falsePositiveRate > 0 && falsePositiveRate < 1) || maxBytes < 8) {
+			throw new IllegalArgumentException();
+		}
+		double ln2 = Math.log(2);
+		double optimal = Math.ceil(-capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+		//	Dos contadores por byte, y en words enteros
+		long limit = Math.min(2 * maxBytes, (long) Integer.MAX_VALUE - 15);
+		long m = Math.min((long) optimal, limit);
+		m = Math.max(16, (m + 15) & ~15L);
+		if (m > limit) {
+			m -= 16;
+		}
+		this.counters = (int) m;
+		this.hashes = (int) Math.max(1, Math.min(16, Math.round((double) m / capacity * ln2)));
+		this.capacity = capacity;
+		this.words = new long[counters >>> 4];
+	}
+
+	int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Cierto si ya no puede crecer sin pasar de maxBytes.
+	 */
+	boolean isAtLimit(long maxBytes) {
+		return 2 * maxBytes - counters < 16;
+	}
+
+	void add(Object element) {
+		long h = mix(element.hashCode());
+		int h1 = (int) h;
+		int h2 = (int) (h >>> 32) | 1;
+		for (int i = 0; i < hashes; i++) {
+			int index = reduce(h1 + i * h2);
+			int count = get(index);
+			if (count < MAX_COUNT) {
+				set(index, count + 1);
+			}
+		}
+	}
+
+	void remove(Object element) {
+		long h = mix(element.hashCode());
+		int h1 = (int) h;
+		int h2 = (int) (h >>> 32) | 1;
+		for (int i = 0; i < hashes; i++) {
+			int index = reduce(h1 + i * h2);
+			int count = get(index);
+			if (count > 0 && count < MAX_COUNT) {
+				set(index, count - 1);
+			}
+		}
+	}
+
+	/**
+	 * Falso si el elemento seguro que no está.
+	 */
+	boolean mightContain(Object element) {
+		long h = mix(element.hashCode());
+		int h1 = (int) h;
+		int h2 = (int) (h >>> 32) | 1;
+		for (int i = 0; i < hashes; i++) {
+			if (get(reduce(h1 + i * h2)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	void clear() {
+		Arrays.fill(words, 0L);
+	}
+
+	//	Número de bytes que ocupan los contadores
+	long bytes() {
+		return 8L * words.length;
+	}
+
+	private int get(int index) {
+		return (int) (words[index >>> 4] >>> ((index & 15) << 2)) & 0xF;
+	}
+
+	private void set(int index, int count) {
+		int shift = (index & 15) << 2;
+		words[index >>> 4] = (words[index >>> 4] & ~(0xFL << shift)) | ((long) count << shift);
+	}
+
+	//	Lleva un hash de 32 bits a [0, counters) sin división
+	private int reduce(int hash) {
+		return (int) (((hash & 0xFFFFFFFFL) * counters) >>> 32);
+	}
+
+	//	Mezcla los bits de hashCode() (que suele ser pobre, p.ej. en Integer)
+	private static long mix(int hash) {
+		long h = hash * 0x9E3779B97F4A7C15L;
+		h ^= h >>> 32;
+		h *= 0xC2B2AE3D27D4EB4FL;
+		h ^= h >>> 29;
+		return h;
+	}
+}
@@ -0,0 +1,66 @@
+package ule.edi.tree;
+
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class CountingBloomFilterTests {
+
+	@Test
+	public void testNoFalseNegativesAndRate() {
+		CountingBloomFilter filter = new CountingBloomFilter(100000, 0.01, 1 << 20);
+		for (int i = 0; i < 100000; i++) {
+			filter.add(2 * i);
+		}
+		for (int i = 0; i < 100000; i++) {
+			Assert.assertTrue(filter.mightContain(2 * i));
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < 100000; i++) {
+			if (filter.mightContain(2 * i + 1)) {
+				falsePositives++;
+			}
+		}
+		Assert.assertTrue(falsePositives < 2000);
+	}
+
+	@Test
+	public void testRemove() {
+		CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01, 1 << 20);
+		filter.add("dragón");
+		filter.add("princesa");
+		filter.remove("dragón");
+		Assert.assertTrue(filter.mightContain("princesa"));
+		Assert.assertFalse(filter.mightContain("dragón"));
+		filter.clear();
+		Assert.assertFalse(filter.mightContain("princesa"));
+	}
+
+	@Test
+	public void testSaturatedCountersKeepElements() {
+		//	Filtro diminuto: los contadores se saturan, pero quitar unos
+		//	elementos no puede hacer desaparecer a otros
+		CountingBloomFilter filter = new CountingBloomFilter(10, 0.5, 8);
+		Assert.assertEquals(8, filter.bytes());
+		Random random = new Random(1);
+		int[] keys = new int[1000];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = random.nextInt();
+			filter.add(keys[i]);
+		}
+		for (int i = 0; i < keys.length; i += 2) {
+			filter.remove(keys[i]);
+		}
+		for (int i = 1; i < keys.length; i += 2) {
+			Assert.assertTrue(filter.mightContain(keys[i]));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadRate() {
+		new CountingBloomFilter(10, 1.0, 1024);
+	}
+}
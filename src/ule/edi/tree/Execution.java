@@ -0,0 +1,20 @@
+package ule.edi.tree;
+
+/**
+ * Forma de evaluar los cálculos que recorren el árbol completo, como
+ * {@link AbstractTreeADT#filterTags(Execution, String...)},
+ * {@link BinarySearchTreeImpl#tagDecendents(Execution)} o
+ * {@link World#countEntity(int, Execution)}.
+ * 
+ * Las dos dan siempre el mismo resultado.
+ */
+public enum Execution {
+	/** En el hilo que hace la llamada. */
+	SEQUENTIAL,
+	/**
+	 * Repartido entre los hilos del ForkJoinPool común: cada sub-árbol
+	 * grande se calcula como una tarea aparte y los resultados parciales
+	 * se combinan al terminar las dos.
+	 */
+	PARALLEL
+}
@@ -0,0 +1,172 @@
+package ule.edi.tree;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Árbol binario de búsqueda de claves de tipo long, sin objetos por nodo.
+ * 
+ * Tiene el mismo comportamiento que un {@link BinarySearchTreeImpl}
+ * de Long sin equilibrar (misma forma del árbol y mismo toString()),
+ * pero las claves se guardan en un long[] y los enlaces en arrays de
+ * índices (ver {@link AbstractPooledBinarySearchTree}), así que cada
+ * clave ocupa 20 bytes más el margen de crecimiento de los arrays.
+ * Las búsquedas comparan directamente valores primitivos y no reservan memoria.
+ */
+public class LongBinarySearchTree extends AbstractPooledBinarySearchTree {
+
+	private long[] keys;
+
+	/**
+	 * Árbol vacío.
+	 */
+	public LongBinarySearchTree() {
+		super();
+		keys = new long[left.length];
+	}
+
+	/**
+	 * Árbol vacío con espacio reservado para el número de claves indicado.
+	 * 
+	 * @param initialCapacity número de claves previsto.
+	 */
+	public LongBinarySearchTree(int initialCapacity) {
+		super(initialCapacity);
+		keys = new long[left.length];
+	}
+
+	@Override
+	void growKeys(int capacity) {
+		keys = Arrays.copyOf(keys, capacity);
+	}
+
+	@Override
+	int compareKey(long key, int node) {
+		return Long.compare(key, keys[node]);
+	}
+
+	@Override
+	void setKey(int node, long key) {
+		keys[node] = key;
+	}
+
+	@Override
+	void appendKey(StringBuilder bx, int node) {
+		bx.append(keys[node]);
+	}
+
+	/**
+	 * Inserta (como hoja) una nueva clave en el árbol.
+	 * Si la clave ya existe en el árbol NO la inserta.
+	 * 
+	 * @param key valor a insertar.
+	 * @return true si se pudo insertar (no existía esa clave en el árbol), false en caso contrario
+	 */
+	public boolean insert(long key) {
+		return insertKey(key);
+	}
+
+	/**
+	 * Inserta las claves de un array en el árbol.
+	 * 
+	 * @param keys claves a insertar.
+	 * @return número de claves insertadas (las que ya están no las inserta)
+	 */
+	public int insert(long ... keys) {
+		int inserted = 0;
+		for (long key : keys) {
+			if (insertKey(key)) {
+				inserted++;
+			}
+		}
+		return inserted;
+	}
+
+	/**
+	 * Busca la clave en el árbol.
+	 * 
+	 * @param key valor a buscar.
+	 * @return true si la clave está en el árbol, false en caso contrario
+	 */
+	public boolean contains(long key) {
+		return find(key) != NIL;
+	}
+
+	/**
+	 * Elimina una clave del árbol.
+	 * 
+	 * Si la clave tiene dos hijos, se sustituye por la menor de sus mayores.
+	 * 
+	 * @param key valor a eliminar.
+	 * @throws NoSuchElementException si la clave no está en el árbol
+	 */
+	public void remove(long key) {
+		removeKey(key);
+	}
+
+	/**
+	 * Elimina las claves de un array del árbol.
+	 * O todas o ninguna: si alguna no está, no se elimina ninguna. Cada
+	 * clave se busca una sola vez; las repetidas se eliminan una vez.
+	 * 
+	 * @param keys claves a eliminar.
+	 * @throws NoSuchElementException si alguna de las claves no está en el árbol
+	 */
+	public void remove(long ... keys) {
+		int[] nodes = new int[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			nodes[i] = find(keys[i]);
+			if (nodes[i] == NIL) {
+				throw new NoSuchElementException();
+			}
+		}
+		unlinkAll(nodes);
+	}
+
+	/**
+	 * Devuelve un iterador que recorre las claves de menor a mayor.
+	 * Lanza ConcurrentModificationException si el árbol se modifica mientras se usa.
+	 * 
+	 * @return iterador para el recorrido en inorden
+	 */
+	public PrimitiveIterator.OfLong iteratorInorder() {
+		return keysOf(inorderIndexes());
+	}
+
+	/**
+	 * Devuelve un iterador que recorre las claves por niveles, como
+	 * {@link BinarySearchTreeImpl#iteratorWidth()}.
+	 * 
+	 * @return iterador para el recorrido en anchura
+	 */
+	public PrimitiveIterator.OfLong iteratorWidth() {
+		return keysOf(widthIndexes(Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Como {@link #iteratorWidth()}, pero recorriendo sólo los primeros niveles.
+	 * 
+	 * @param maxDepth número de niveles a recorrer (1 para sólo la raíz).
+	 * @return iterador para el recorrido en anchura de esos niveles
+	 * @throws IllegalArgumentException si maxDepth es negativo
+	 */
+	public PrimitiveIterator.OfLong iteratorWidth(int maxDepth) {
+		return keysOf(widthIndexes(maxDepth));
+	}
+
+	private PrimitiveIterator.OfLong keysOf(final IndexIterator indexes) {
+		return new PrimitiveIterator.OfLong() {
+
+			@Override
+			public boolean hasNext() {
+				return indexes.hasNext();
+			}
+
+			@Override
+			public long nextLong() {
+				return keys[indexes.nextIndex()];
+			}
+		};
+	}
+}
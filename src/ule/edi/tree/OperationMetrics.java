@@ -0,0 +1,222 @@
+package ule.edi.tree;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Métricas de las operaciones de los árboles, para ver en qué se va el
+ * tiempo: por cada tipo de operación, cuántas se han hecho, cuántas
+ * comparaciones y visitas a nodos han necesitado, a qué profundidad han
+ * llegado y un histograma de su latencia.
+ *
+ * Se activan con {@link BinarySearchTreeImpl#setMetrics(OperationMetrics)}
+ * o {@link World#setMetrics(OperationMetrics)}; mientras no se activen,
+ * las operaciones sólo comprueban que no hay métricas, sin reservar
+ * memoria ni medir tiempos. Un mismo objeto puede recoger las de varios
+ * árboles, incluso desde varios hilos.
+ *
+ * El histograma es logarítmico-lineal, como los HDR: los valores menores
+ * de 64 ns se guardan exactos y a partir de ahí cada potencia de 2 se
+ * parte en 32 tramos, con lo que los percentiles tienen un error relativo
+ * menor del 3.2% con un número fijo de contadores.
+ */
+public final class OperationMetrics {
+
+	/**
+	 * Operaciones que se miden.
+	 */
+	public enum Operation {
+		INSERT("insert"),
+		CONTAINS("contains"),
+		REMOVE("remove"),
+		COUNT_ENTITY("countEntity"),
+		COUNT_ACCESIBLE_PRINCESS("countAccesiblePrincess");
+
+		private final String key;
+
+		Operation(String key) {
+			this.key = key;
+		}
+
+		/**
+		 * Prefijo de las claves de esta operación en {@link OperationMetrics#snapshot()}.
+		 */
+		public String key() {
+			return key;
+		}
+	}
+
+	private static final int SUB_BITS = 5;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+
+	//	Tramos suficientes para cualquier long no negativo
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+	private static final String[] PERCENTILE_KEYS = { "p50", "p90", "p99", "p999" };
+
+	private final long[] count = new long[Operation.values().length];
+	private final long[] comparisons = new long[count.length];
+	private final long[] nodesVisited = new long[count.length];
+	private final long[] depthTotal = new long[count.length];
+	private final long[] depthMax = new long[count.length];
+	private final long[] latencyTotal = new long[count.length];
+	private final long[] latencyMax = new long[count.length];
+	private final long[][] latency = new long[count.length][BUCKETS];
+
+	/**
+	 * Contadores de la operación en curso en un árbol: cada árbol con
+	 * métricas tiene el suyo, que se reutiliza en todas sus operaciones.
+	 */
+	static final class Probe {
+
+		final OperationMetrics metrics;
+
+		int comparisons;
+		int visited;
+		int depth;
+
+		Probe(OperationMetrics metrics) {
+			this.metrics = metrics;
+		}
+
+		/**
+		 * Pone a cero los contadores y devuelve el instante de inicio.
+		 */
+		long start() {
+			comparisons = 0;
+			visited = 0;
+			depth = 0;
+			return System.nanoTime();
+		}
+
+		/**
+		 * Cuenta la visita a un nodo a esa profundidad (1 la raíz) en el
+		 * que se han hecho esas comparaciones.
+		 */
+		void visit(int depth, int comparisons) {
+			this.visited++;
+			this.comparisons += comparisons;
+			if (depth > this.depth) {
+				this.depth = depth;
+			}
+		}
+
+		void record(Operation operation, long start) {
+			metrics.record(operation, System.nanoTime() - start, comparisons, visited, depth);
+		}
+	}
+
+	synchronized void record(Operation operation, long nanos, int comparisons, int visited, int depth) {
+		int op = operation.ordinal();
+		count[op]++;
+		this.comparisons[op] += comparisons;
+		this.nodesVisited[op] += visited;
+		this.depthTotal[op] += depth;
+		this.depthMax[op] = Math.max(depthMax[op], depth);
+		nanos = Math.max(0, nanos);
+		this.latencyTotal[op] += nanos;
+		this.latencyMax[op] = Math.max(latencyMax[op], nanos);
+		this.latency[op][bucket(nanos)]++;
+	}
+
+	/**
+	 * Devuelve una copia de las métricas como un mapa de nombres a valores,
+	 * en el orden de {@link Operation}. Por cada operación, con su
+	 * {@link Operation#key()} como prefijo:
+	 *
+	 * 		count, comparisons, nodesVisited: totales. En los mundos, las
+	 * 		comparaciones son las entidades examinadas.
+	 *
+	 * 		depth.total, depth.max: profundidad máxima alcanzada (1 la raíz)
+	 * 		en cada operación, sumada y la mayor.
+	 *
+	 * 		latency.total, latency.max, latency.p50, latency.p90,
+	 * 		latency.p99, latency.p999: en nanosegundos.
+	 *
+	 * @return nuevo mapa, que se puede modificar.
+	 */
+	public synchronized Map<String, Long> snapshot() {
+		Map<String, Long> result = new LinkedHashMap<String, Long>();
+		for (Operation operation : Operation.values()) {
+			int op = operation.ordinal();
+			String prefix = operation.key() + ".";
+			result.put(prefix + "count", count[op]);
+			result.put(prefix + "comparisons", comparisons[op]);
+			result.put(prefix + "nodesVisited", nodesVisited[op]);
+			result.put(prefix + "depth.total", depthTotal[op]);
+			result.put(prefix + "depth.max", depthMax[op]);
+			result.put(prefix + "latency.total", latencyTotal[op]);
+			result.put(prefix + "latency.max", latencyMax[op]);
+			for (int i = 0; i < PERCENTILES.length; i++) {
+				result.put(prefix + "latency." + PERCENTILE_KEYS[i], percentile(op, PERCENTILES[i]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Pone a cero todas las métricas.
+	 */
+	public synchronized void reset() {
+		for (int op = 0; op < count.length; op++) {
+			count[op] = 0;
+			comparisons[op] = 0;
+			nodesVisited[op] = 0;
+			depthTotal[op] = 0;
+			depthMax[op] = 0;
+			latencyTotal[op] = 0;
+			latencyMax[op] = 0;
+			Arrays.fill(latency[op], 0L);
+		}
+	}
+
+	//	Menor latencia tal que el p por ciento de las operaciones tardaron
+	//	lo mismo o menos, redondeada al extremo superior de su tramo
+	private long percentile(int op, double p) {
+		if (count[op] == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(p / 100 * count[op]));
+		long seen = 0;
+		for (int b = 0; b < BUCKETS; b++) {
+			seen += latency[op][b];
+			if (seen >= rank) {
+				return Math.min(latencyMax[op], highest(b));
+			}
+		}
+		return latencyMax[op];
+	}
+
+	/**
+	 * Tramo del histograma en el que cae un valor no negativo.
+	 */
+	static int bucket(long value) {
+		if (value < SUB_COUNT) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		int sub = (int) (value >>> shift) & (SUB_COUNT - 1);
+		return (shift + 1) * SUB_COUNT + sub;
+	}
+
+	/**
+	 * Menor valor que cae en el tramo b.
+	 */
+	static long lowest(int b) {
+		if (b < SUB_COUNT) {
+			return b;
+		}
+		int shift = b / SUB_COUNT - 1;
+		return (long) (SUB_COUNT + b % SUB_COUNT) << shift;
+	}
+
+	/**
+	 * Mayor valor que cae en el tramo b.
+	 */
+	static long highest(int b) {
+		return (b + 1 < BUCKETS) ? lowest(b + 1) - 1 : Long.MAX_VALUE;
+	}
+}
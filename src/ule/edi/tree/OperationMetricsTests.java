@@ -0,0 +1,62 @@
+package ule.edi.tree;
+
+
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class OperationMetricsTests {
+
+	@Test
+	public void testBuckets() {
+		//	Hasta 63 son exactos; a partir de ahí, tramos de menos del 3.2%
+		for (long v = 0; v < 64; v++) {
+			Assert.assertEquals(v, OperationMetrics.lowest(OperationMetrics.bucket(v)));
+			Assert.assertEquals(v, OperationMetrics.highest(OperationMetrics.bucket(v)));
+		}
+		Random random = new Random(9);
+		for (int i = 0; i < 100000; i++) {
+			long v = random.nextLong() >>> (1 + random.nextInt(63));
+			int b = OperationMetrics.bucket(v);
+			long lowest = OperationMetrics.lowest(b);
+			long highest = OperationMetrics.highest(b);
+			Assert.assertTrue(lowest <= v && v <= highest);
+			Assert.assertTrue(v < 64 || (highest - lowest) * 32.0 <= lowest);
+			Assert.assertEquals(b, OperationMetrics.bucket(lowest));
+		}
+		Assert.assertEquals(Long.MAX_VALUE, OperationMetrics.highest(OperationMetrics.bucket(Long.MAX_VALUE)));
+	}
+
+	@Test
+	public void testSnapshotAndReset() {
+		OperationMetrics metrics = new OperationMetrics();
+		Map<String, Long> empty = metrics.snapshot();
+		Assert.assertEquals(5 * 11, empty.size());
+		Assert.assertEquals(0L, (long) empty.get("insert.count"));
+		Assert.assertEquals(0L, (long) empty.get("countAccesiblePrincess.latency.p99"));
+
+		for (int i = 1; i <= 100; i++) {
+			metrics.record(OperationMetrics.Operation.CONTAINS, i, 2, 1, i % 7);
+		}
+		Map<String, Long> snapshot = metrics.snapshot();
+		Assert.assertEquals(100L, (long) snapshot.get("contains.count"));
+		Assert.assertEquals(200L, (long) snapshot.get("contains.comparisons"));
+		Assert.assertEquals(100L, (long) snapshot.get("contains.nodesVisited"));
+		Assert.assertEquals(6L, (long) snapshot.get("contains.depth.max"));
+		Assert.assertEquals(5050L, (long) snapshot.get("contains.latency.total"));
+		Assert.assertEquals(100L, (long) snapshot.get("contains.latency.max"));
+		Assert.assertEquals(50L, (long) snapshot.get("contains.latency.p50"));
+		Assert.assertEquals(91L, (long) snapshot.get("contains.latency.p90"));
+		Assert.assertEquals(99L, (long) snapshot.get("contains.latency.p99"));
+		Assert.assertEquals(100L, (long) snapshot.get("contains.latency.p999"));
+		Assert.assertEquals(0L, (long) snapshot.get("remove.count"));
+
+		//	La copia no cambia con nuevas operaciones
+		metrics.reset();
+		Assert.assertEquals(100L, (long) snapshot.get("contains.count"));
+		Assert.assertEquals(empty, metrics.snapshot());
+	}
+}
@@ -0,0 +1,162 @@
+package ule.edi.tree;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Árbol binario de búsqueda (AVL) persistente: no se modifica nunca.
+ * 
+ * insert y remove no cambian este árbol, sino que devuelven otro que
+ * comparte con él todos los sub-árboles que no han cambiado; sólo se
+ * copian los nodos del camino desde la raíz (O(log n) nodos nuevos). Cada
+ * versión es por tanto una instantánea que cuesta O(1) guardar, y se
+ * puede recorrer desde cualquier hilo sin bloqueos mientras se siguen
+ * creando versiones nuevas.
+ * 
+ * @param <T> tipo de la información en cada nodo, comparable.
+ */
+public final class PersistentBinarySearchTree<T extends Comparable<? super T>> implements Iterable<T> {
+
+	private static final PersistentBinarySearchTree<?> EMPTY = new PersistentBinarySearchTree<>(null);
+
+	private final PersistentNode<T> root;
+
+	PersistentBinarySearchTree(PersistentNode<T> root) {
+		this.root = root;
+	}
+
+	/**
+	 * Devuelve el árbol vacío.
+	 * 
+	 * @return árbol persistente sin elementos
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends Comparable<? super T>> PersistentBinarySearchTree<T> empty() {
+		return (PersistentBinarySearchTree<T>) EMPTY;
+	}
+
+	private PersistentBinarySearchTree<T> withRoot(PersistentNode<T> newRoot) {
+		return (newRoot == root) ? this : new PersistentBinarySearchTree<T>(newRoot);
+	}
+
+	/**
+	 * Devuelve un árbol con los elementos de éste y element.
+	 * 
+	 * @param element valor a insertar.
+	 * @return el nuevo árbol, o éste mismo si ya contenía element
+	 * @throws IllegalArgumentException si element es null
+	 */
+	public PersistentBinarySearchTree<T> insert(T element) {
+		if (element == null) {
+			throw new IllegalArgumentException();
+		}
+		return withRoot(PersistentNode.insert(root, element));
+	}
+
+	/**
+	 * Devuelve un árbol con los elementos de éste y los del array.
+	 *  si alguno es 'null', no devuelve ningún árbol
+	 * 
+	 * @param elements elementos a insertar.
+	 * @return el nuevo árbol, o éste mismo si ya los contenía todos
+	 * @throws IllegalArgumentException si alguno de los elementos es null
+	 */
+	@SafeVarargs
+	public final PersistentBinarySearchTree<T> insert(T ... elements) {
+		for (T element : elements) {
+			if (element == null) {
+				throw new IllegalArgumentException();
+			}
+		}
+		PersistentNode<T> next = root;
+		for (T element : elements) {
+			next = PersistentNode.insert(next, element);
+		}
+		return withRoot(next);
+	}
+
+	/**
+	 * Devuelve un árbol con los elementos de éste salvo element.
+	 * 
+	 * @param element valor a eliminar.
+	 * @return el nuevo árbol
+	 * @throws IllegalArgumentException si element es null
+	 * @throws NoSuchElementException si el elemento a eliminar no está en el árbol
+	 */
+	public PersistentBinarySearchTree<T> remove(T element) {
+		if (element == null) {
+			throw new IllegalArgumentException();
+		}
+		PersistentNode<T> next = PersistentNode.remove(root, element);
+		if (next == root) {
+			throw new NoSuchElementException();
+		}
+		return new PersistentBinarySearchTree<T>(next);
+	}
+
+	/**
+	 * Busca el elemento en el árbol.
+	 * 
+	 * @param element valor a buscar.
+	 * @return true si el elemento está en el árbol, false en caso contrario
+	 * @throws IllegalArgumentException si element es null
+	 */
+	public boolean contains(T element) {
+		if (element == null) {
+			throw new IllegalArgumentException();
+		}
+		return PersistentNode.contains(root, element);
+	}
+
+	/**
+	 * Devuelve el número de elementos del árbol.
+	 * 
+	 * @return número de elementos, 0 si es vacío.
+	 */
+	public int size() {
+		return PersistentNode.size(root);
+	}
+
+	/**
+	 * Cierto si el árbol no tiene elementos.
+	 * 
+	 * @return cierto para árboles vacíos
+	 */
+	public boolean isEmpty() {
+		return root == null;
+	}
+
+	/**
+	 * Devuelve la altura del árbol, contando niveles (0 si es vacío).
+	 * 
+	 * @return altura del árbol.
+	 */
+	public int height() {
+		return PersistentNode.height(root);
+	}
+
+	/**
+	 * Recorre los elementos de menor a mayor. Como el árbol no cambia, el
+	 * iterador no necesita comprobar modificaciones.
+	 * 
+	 * @return iterador para el recorrido en inorden
+	 */
+	public Iterator<T> iteratorInorder() {
+		return PersistentNode.iterator(root);
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return iteratorInorder();
+	}
+
+	/**
+	 * Representa el árbol con el formato de {@link AbstractTreeADT#toString()}.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder bx = new StringBuilder();
+		PersistentNode.append(bx, root);
+		return bx.toString();
+	}
+}
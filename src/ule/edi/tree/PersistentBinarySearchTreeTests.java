@@ -0,0 +1,112 @@
+package ule.edi.tree;
+
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class PersistentBinarySearchTreeTests {
+
+	private PersistentBinarySearchTree<Integer> ejemplo = null;
+
+	@Before
+	public void setupTrees() {
+		ejemplo = PersistentBinarySearchTree.<Integer>empty().insert(10, 20, 5, 2, 15, 30);
+		Assert.assertEquals("{10, {5, {2, ∅, ∅}, ∅}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}", ejemplo.toString());
+	}
+
+	@Test
+	public void testEmpty() {
+		PersistentBinarySearchTree<String> t = PersistentBinarySearchTree.empty();
+		Assert.assertTrue(t.isEmpty());
+		Assert.assertEquals("∅", t.toString());
+		Assert.assertEquals(0, t.height());
+		Assert.assertFalse(t.iterator().hasNext());
+	}
+
+	@Test
+	public void testOldVersionsAreUnchanged() {
+		PersistentBinarySearchTree<Integer> v1 = ejemplo.insert(1);
+		PersistentBinarySearchTree<Integer> v2 = v1.remove(10);
+		Assert.assertEquals("{10, {5, {2, ∅, ∅}, ∅}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}", ejemplo.toString());
+		Assert.assertEquals("{10, {2, {1, ∅, ∅}, {5, ∅, ∅}}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}", v1.toString());
+		Assert.assertEquals("{15, {2, {1, ∅, ∅}, {5, ∅, ∅}}, {20, ∅, {30, ∅, ∅}}}", v2.toString());
+		Assert.assertFalse(ejemplo.contains(1));
+		Assert.assertTrue(v1.contains(10));
+		Assert.assertFalse(v2.contains(10));
+		Assert.assertEquals(6, ejemplo.size());
+		Assert.assertEquals(7, v1.size());
+		Assert.assertEquals(6, v2.size());
+	}
+
+	@Test
+	public void testInsertExistingReturnsSameTree() {
+		Assert.assertSame(ejemplo, ejemplo.insert(15));
+		Assert.assertSame(ejemplo, ejemplo.insert(2, 30));
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void testRemoveNoElement() {
+		ejemplo.remove(3);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInsertNull() {
+		ejemplo.insert((Integer) null);
+	}
+
+	@Test
+	public void testMatchesBinarySearchTreeImpl() {
+		Random random = new Random(5);
+		PersistentBinarySearchTree<Integer> p = PersistentBinarySearchTree.empty();
+		BinarySearchTreeImpl<Integer> avl = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+		for (int i = 0; i < 5000; i++) {
+			int key = random.nextInt(1000);
+			if (random.nextInt(3) == 0 && avl.contains(key)) {
+				avl.remove(key);
+				p = p.remove(key);
+			} else {
+				avl.insert(key);
+				p = p.insert(key);
+			}
+		}
+		Assert.assertEquals(avl.size(), p.size());
+		Iterator<Integer> expected = avl.iteratorInorder();
+		for (Integer x : p) {
+			Assert.assertEquals(expected.next(), x);
+		}
+		Assert.assertFalse(expected.hasNext());
+		Assert.assertTrue(p.height() <= 1.45 * (Math.log(p.size()) / Math.log(2)) + 2);
+	}
+
+	@Test
+	public void testSnapshotWhileWriting() throws InterruptedException {
+		final ConcurrentBinarySearchTree<Integer> live = new ConcurrentBinarySearchTree<Integer>();
+		for (int i = 0; i < 1000; i++) {
+			live.insert(i);
+		}
+		PersistentBinarySearchTree<Integer> snapshot = live.snapshot();
+		Thread writer = new Thread(() -> {
+			for (int i = 0; i < 1000; i += 2) {
+				live.remove(i);
+			}
+			for (int i = 1000; i < 50000; i++) {
+				live.insert(i);
+			}
+		});
+		writer.start();
+		int expected = 0;
+		for (Integer x : snapshot) {
+			Assert.assertEquals(expected++, x.intValue());
+		}
+		writer.join();
+		Assert.assertEquals(1000, expected);
+		Assert.assertEquals(1000, snapshot.size());
+		Assert.assertEquals(49500, live.size());
+	}
+}
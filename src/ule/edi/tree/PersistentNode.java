@@ -0,0 +1,188 @@
+package ule.edi.tree;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Nodo inmutable de un árbol AVL persistente.
+ * 
+ * Ninguna operación modifica un nodo existente: insertar o borrar
+ * devuelve una raíz nueva que copia sólo los nodos del camino
+ * modificado (y los de las rotaciones) y comparte todos los demás con
+ * la versión anterior, que sigue siendo válida. Por eso una raíz es a la
+ * vez una instantánea del árbol, y cualquier hilo puede leerla sin
+ * sincronización. El árbol vacío se representa con null.
+ * 
+ * Al ser AVL, la altura es O(log n) y la recursividad de las
+ * operaciones tiene esa profundidad.
+ * 
+ * @param <T> tipo de la información en cada nodo, comparable.
+ */
+final class PersistentNode<T extends Comparable<? super T>> {
+
+	final T content;
+	final PersistentNode<T> left;
+	final PersistentNode<T> right;
+
+	//	Altura y número de elementos del sub-árbol, fijados al construirlo
+	final int height;
+	final int size;
+
+	private PersistentNode(T content, PersistentNode<T> left, PersistentNode<T> right) {
+		this.content = content;
+		this.left = left;
+		this.right = right;
+		this.height = 1 + Math.max(height(left), height(right));
+		this.size = 1 + size(left) + size(right);
+	}
+
+	static int height(PersistentNode<?> node) {
+		return (node == null) ? 0 : node.height;
+	}
+
+	static int size(PersistentNode<?> node) {
+		return (node == null) ? 0 : node.size;
+	}
+
+	static <T extends Comparable<? super T>> boolean contains(PersistentNode<T> node, T element) {
+		while (node != null) {
+			int cmp = node.content.compareTo(element);
+			if (cmp > 0) {
+				node = node.left;
+			} else if (cmp < 0) {
+				node = node.right;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Devuelve la raíz del árbol con element añadido, o la misma raíz si
+	 * ya estaba.
+	 */
+	static <T extends Comparable<? super T>> PersistentNode<T> insert(PersistentNode<T> node, T element) {
+		if (node == null) {
+			return new PersistentNode<T>(element, null, null);
+		}
+		int cmp = node.content.compareTo(element);
+		if (cmp > 0) {
+			PersistentNode<T> l = insert(node.left, element);
+			return (l == node.left) ? node : balance(node.content, l, node.right);
+		} else if (cmp < 0) {
+			PersistentNode<T> r = insert(node.right, element);
+			return (r == node.right) ? node : balance(node.content, node.left, r);
+		}
+		return node;
+	}
+
+	/**
+	 * Devuelve la raíz del árbol sin element, o la misma raíz si no
+	 * estaba. Un nodo con dos hijos se sustituye por el menor de sus mayores.
+	 */
+	static <T extends Comparable<? super T>> PersistentNode<T> remove(PersistentNode<T> node, T element) {
+		if (node == null) {
+			return null;
+		}
+		int cmp = node.content.compareTo(element);
+		if (cmp > 0) {
+			PersistentNode<T> l = remove(node.left, element);
+			return (l == node.left) ? node : balance(node.content, l, node.right);
+		} else if (cmp < 0) {
+			PersistentNode<T> r = remove(node.right, element);
+			return (r == node.right) ? node : balance(node.content, node.left, r);
+		}
+		if (node.left == null) {
+			return node.right;
+		}
+		if (node.right == null) {
+			return node.left;
+		}
+		PersistentNode<T> successor = node.right;
+		while (successor.left != null) {
+			successor = successor.left;
+		}
+		return balance(successor.content, node.left, removeMin(node.right));
+	}
+
+	private static <T extends Comparable<? super T>> PersistentNode<T> removeMin(PersistentNode<T> node) {
+		if (node.left == null) {
+			return node.right;
+		}
+		return balance(node.content, removeMin(node.left), node.right);
+	}
+
+	/**
+	 * Construye un nodo nuevo con esos hijos, que cumplen la condición AVL
+	 * y cuyas alturas difieren como mucho en 2, rotando si hace falta.
+	 */
+	private static <T extends Comparable<? super T>> PersistentNode<T> balance(T content, PersistentNode<T> l, PersistentNode<T> r) {
+		int factor = height(l) - height(r);
+		if (factor > 1) {
+			if (height(l.left) < height(l.right)) {
+				//	Izquierda-derecha
+				return new PersistentNode<T>(l.right.content,
+						new PersistentNode<T>(l.content, l.left, l.right.left),
+						new PersistentNode<T>(content, l.right.right, r));
+			}
+			return new PersistentNode<T>(l.content, l.left, new PersistentNode<T>(content, l.right, r));
+		}
+		if (factor < -1) {
+			if (height(r.right) < height(r.left)) {
+				//	Derecha-izquierda
+				return new PersistentNode<T>(r.left.content,
+						new PersistentNode<T>(content, l, r.left.left),
+						new PersistentNode<T>(r.content, r.left.right, r.right));
+			}
+			return new PersistentNode<T>(r.content, new PersistentNode<T>(content, l, r.left), r.right);
+		}
+		return new PersistentNode<T>(content, l, r);
+	}
+
+	/**
+	 * Recorrido en inorden de la versión que empieza en node. Como los
+	 * nodos no cambian, no hace falta ninguna comprobación ni bloqueo.
+	 */
+	static <T extends Comparable<? super T>> Iterator<T> iterator(PersistentNode<T> node) {
+		final ArrayDeque<PersistentNode<T>> pending = new ArrayDeque<PersistentNode<T>>();
+		for (; node != null; node = node.left) {
+			pending.push(node);
+		}
+		return new Iterator<T>() {
+
+			@Override
+			public boolean hasNext() {
+				return ! pending.isEmpty();
+			}
+
+			@Override
+			public T next() {
+				if (pending.isEmpty()) {
+					throw new NoSuchElementException();
+				}
+				PersistentNode<T> n = pending.pop();
+				for (PersistentNode<T> r = n.right; r != null; r = r.left) {
+					pending.push(r);
+				}
+				return n.content;
+			}
+		};
+	}
+
+	/**
+	 * Representa el árbol con el formato de {@link AbstractTreeADT#toString()}.
+	 */
+	static void append(StringBuilder bx, PersistentNode<?> node) {
+		if (node == null) {
+			bx.append(AbstractTreeADT.EMPTY_TREE_MARK);
+		} else {
+			bx.append("{").append(node.content).append(", ");
+			append(bx, node.left);
+			bx.append(", ");
+			append(bx, node.right);
+			bx.append("}");
+		}
+	}
+}
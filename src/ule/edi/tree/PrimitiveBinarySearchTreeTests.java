@@ -0,0 +1,178 @@
+package ule.edi.tree;
+
+
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class PrimitiveBinarySearchTreeTests {
+
+	/*
+	* 10
+	* |  5
+	* |  |  2
+	* |  |  |  ∅
+	* |  |  |  ∅
+	* |  |  ∅
+	* |  20
+	* |  |  15
+	* |  |  |  ∅
+	* |  |  |  ∅
+	* |  |  30
+	* |  |  |  ∅
+	* |  |  |  ∅
+	*/
+	private IntBinarySearchTree ejemplo = null;
+
+	private LongBinarySearchTree ejemploLong = null;
+
+	@Before
+	public void setupTrees() {
+		ejemplo = new IntBinarySearchTree();
+		ejemplo.insert(10, 20, 5, 2, 15, 30);
+		Assert.assertEquals("{10, {5, {2, ∅, ∅}, ∅}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}", ejemplo.toString());
+
+		ejemploLong = new LongBinarySearchTree();
+		ejemploLong.insert(10L, 20L, 5L, 2L, 15L, 30L);
+		Assert.assertEquals("{10, {5, {2, ∅, ∅}, ∅}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}", ejemploLong.toString());
+	}
+
+	@Test
+	public void testEmpty() {
+		IntBinarySearchTree t = new IntBinarySearchTree();
+		Assert.assertTrue(t.isEmpty());
+		Assert.assertEquals(0, t.size());
+		Assert.assertEquals(0, t.height());
+		Assert.assertEquals("∅", t.toString());
+		Assert.assertFalse(t.iteratorWidth().hasNext());
+	}
+
+	@Test
+	public void testInsertContains() {
+		Assert.assertFalse(ejemplo.insert(15));
+		Assert.assertEquals(6, ejemplo.size());
+		Assert.assertEquals(3, ejemplo.height());
+		Assert.assertTrue(ejemplo.contains(15));
+		Assert.assertFalse(ejemplo.contains(13));
+		Assert.assertTrue(ejemploLong.contains(30L));
+		Assert.assertFalse(ejemploLong.contains(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testRemoveSameShapeAsBST() {
+		ejemplo.remove(10);
+		Assert.assertEquals("{15, {5, {2, ∅, ∅}, ∅}, {20, ∅, {30, ∅, ∅}}}", ejemplo.toString());
+		ejemplo.remove(5);
+		Assert.assertEquals("{15, {2, ∅, ∅}, {20, ∅, {30, ∅, ∅}}}", ejemplo.toString());
+		ejemploLong.remove(30L);
+		Assert.assertEquals("{10, {5, {2, ∅, ∅}, ∅}, {20, {15, ∅, ∅}, ∅}}", ejemploLong.toString());
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void testRemoveNoElement() {
+		ejemplo.remove(1);
+	}
+
+	@Test
+	public void testRemoveListAllOrNothing() {
+		try {
+			ejemplo.remove(2, 5, 3);
+			Assert.fail();
+		} catch (NoSuchElementException e) {
+			Assert.assertEquals(6, ejemplo.size());
+		}
+		ejemplo.remove(2, 5);
+		Assert.assertEquals(4, ejemplo.size());
+		//	Las repetidas se eliminan una vez, aunque antes se haya movido
+		//	su nodo para sustituir a otra con dos hijos
+		ejemploLong.remove(10L, 15L, 10L);
+		Assert.assertEquals("{20, {5, {2, ∅, ∅}, ∅}, {30, ∅, ∅}}", ejemploLong.toString());
+		Assert.assertEquals(4, ejemploLong.size());
+	}
+
+	@Test
+	public void testIterators() {
+		StringBuilder in = new StringBuilder();
+		for (PrimitiveIterator.OfInt it = ejemplo.iteratorInorder(); it.hasNext(); ) {
+			in.append(it.nextInt()).append(' ');
+		}
+		Assert.assertEquals("2 5 10 15 20 30 ", in.toString());
+
+		StringBuilder width = new StringBuilder();
+		for (PrimitiveIterator.OfLong it = ejemploLong.iteratorWidth(); it.hasNext(); ) {
+			width.append(it.nextLong()).append(' ');
+		}
+		Assert.assertEquals("10 5 20 2 15 30 ", width.toString());
+
+		PrimitiveIterator.OfInt top = ejemplo.iteratorWidth(2);
+		Assert.assertEquals(10, top.nextInt());
+		Assert.assertEquals(5, top.nextInt());
+		Assert.assertEquals(20, top.nextInt());
+		Assert.assertFalse(top.hasNext());
+	}
+
+	@Test(expected = ConcurrentModificationException.class)
+	public void testIteratorFailsFast() {
+		PrimitiveIterator.OfInt it = ejemplo.iteratorInorder();
+		it.nextInt();
+		ejemplo.insert(7);
+		it.nextInt();
+	}
+
+	@Test
+	public void testMatchesBinarySearchTreeImpl() {
+		Random random = new Random(7);
+		IntBinarySearchTree ints = new IntBinarySearchTree();
+		LongBinarySearchTree longs = new LongBinarySearchTree();
+		BinarySearchTreeImpl<Integer> bst = new BinarySearchTreeImpl<Integer>();
+		for (int i = 0; i < 2000; i++) {
+			int key = random.nextInt(500);
+			if (random.nextInt(3) == 0 && bst.contains(key)) {
+				bst.remove(key);
+				ints.remove(key);
+				longs.remove((long) key);
+			} else if (random.nextInt(10) == 0 && bst.contains(key) && bst.contains(key + 1)) {
+				bst.remove(key, key + 1);
+				ints.remove(key, key + 1);
+				longs.remove((long) key, (long) key + 1);
+			} else {
+				boolean inserted = bst.insert(key);
+				Assert.assertEquals(inserted, ints.insert(key));
+				Assert.assertEquals(inserted, longs.insert((long) key));
+			}
+		}
+		Assert.assertEquals(bst.toString(), ints.toString());
+		Assert.assertEquals(bst.toString(), longs.toString());
+		Assert.assertEquals(bst.size(), ints.size());
+		Assert.assertEquals(bst.height(), ints.height());
+	}
+
+	@Test
+	public void testFreeSlotsAreReused() {
+		IntBinarySearchTree t = new IntBinarySearchTree(4);
+		t.insert(1, 2, 3, 4);
+		int capacity = t.left.length;
+		t.remove(1, 3);
+		t.insert(5, 6);
+		Assert.assertEquals(capacity, t.left.length);
+		Assert.assertEquals("{2, ∅, {4, ∅, {5, ∅, {6, ∅, ∅}}}}", t.toString());
+	}
+
+	@Test
+	public void testCompactFootprint() {
+		IntBinarySearchTree t = new IntBinarySearchTree();
+		Random random = new Random(11);
+		for (int i = 0; i < 1000000; i++) {
+			t.insert(random.nextInt());
+		}
+		//	Clave y tres enlaces de 4 bytes por hueco reservado
+		long bytes = 16L * t.left.length;
+		Assert.assertTrue(bytes / t.size() < 32);
+	}
+}
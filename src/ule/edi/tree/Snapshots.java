@@ -0,0 +1,465 @@
+package ule.edi.tree;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+
+/**
+ * Copias binarias compactas de árboles, para guardarlos en un fichero y
+ * volver a cargarlos sin pasar por toString() ni por insert.
+ *
+ * Formato de un {@link BinarySearchTreeImpl}:
+ *
+ * 		"BST1", modo de equilibrado (un byte), número de elementos (varint)
+ * 		y las claves en preorden, codificadas con un {@link KeyCodec}.
+ *
+ * 		El preorden de un BST basta para reconstruirlo con la misma forma
+ * 		(y, por tanto, el mismo toString()), en tiempo lineal y sin
+ * 		comparar más que con los nodos de la rama que se está cerrando.
+ *
+ * Formato de un {@link World}:
+ *
+ * 		"WLD1", un byte a 1 si el mundo no es vacío y, por cada nodo en
+ * 		preorden, una cabecera varint con (entidades &lt;&lt; 2) | (tiene
+ * 		izquierdo &lt;&lt; 1) | (tiene derecho) seguida de los pares (tipo,
+ * 		cardinalidad) de sus entidades, también varint.
+ *
+ * Los enteros se guardan como varint (7 bits por byte, el bit alto indica
+ * que sigue otro byte), en zig-zag si pueden ser negativos, así que las
+ * claves pequeñas ocupan uno o dos bytes.
+ *
+ * Al cargar, el fichero se proyecta en memoria con {@link FileChannel#map}
+ * y las claves se decodifican directamente de esa proyección, sin copiar
+ * el fichero a un buffer intermedio.
+ */
+public final class Snapshots {
+
+	private static final byte[] BST_MAGIC = { 'B', 'S', 'T', '1' };
+
+	private static final byte[] WORLD_MAGIC = { 'W', 'L', 'D', '1' };
+
+	private Snapshots() {
+	}
+
+	/**
+	 * Codificación binaria de las claves de un árbol.
+	 *
+	 * @param <T> tipo de las claves
+	 */
+	public interface KeyCodec<T> {
+
+		void encode(T key, Output out) throws IOException;
+
+		T decode(Input in) throws IOException;
+	}
+
+	/** Enteros como varint en zig-zag. */
+	public static final KeyCodec<Integer> INTEGERS = new KeyCodec<Integer>() {
+		@Override
+		public void encode(Integer key, Output out) throws IOException {
+			out.writeVarLong(zigzag(key));
+		}
+
+		@Override
+		public Integer decode(Input in) throws IOException {
+			long value = unzigzag(in.readVarLong());
+			if (value != (int) value) {
+				throw new IOException("Clave fuera de rango: " + value);
+			}
+			return (int) value;
+		}
+	};
+
+	/** Enteros largos como varint en zig-zag. */
+	public static final KeyCodec<Long> LONGS = new KeyCodec<Long>() {
+		@Override
+		public void encode(Long key, Output out) throws IOException {
+			out.writeVarLong(zigzag(key));
+		}
+
+		@Override
+		public Long decode(Input in) throws IOException {
+			return unzigzag(in.readVarLong());
+		}
+	};
+
+	/** Cadenas como longitud varint seguida de sus bytes en UTF-8. */
+	public static final KeyCodec<String> STRINGS = new KeyCodec<String>() {
+		@Override
+		public void encode(String key, Output out) throws IOException {
+			byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+			out.writeVarLong(bytes.length);
+			out.write(bytes);
+		}
+
+		@Override
+		public String decode(Input in) throws IOException {
+			long length = in.readVarLong();
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("Cadena demasiado larga: " + length);
+			}
+			byte[] bytes = new byte[(int) length];
+			in.read(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	};
+
+	/**
+	 * Guarda el árbol en el fichero indicado, sustituyéndolo si existe.
+	 *
+	 * @throws IllegalArgumentException si algún parámetro es null
+	 */
+	public static <T extends Comparable<? super T>> void write(BinarySearchTreeImpl<T> tree, KeyCodec<? super T> codec, Path file) throws IOException {
+		if (tree == null || codec == null || file == null) {
+			throw new IllegalArgumentException();
+		}
+		try (Output out = new Output(Files.newOutputStream(file))) {
+			out.write(BST_MAGIC);
+			out.writeByte(tree.balance().ordinal());
+			out.writeVarLong(tree.size());
+			for (Iterator<T> it = tree.iteratorPreorder(); it.hasNext(); ) {
+				codec.encode(it.next(), out);
+			}
+		}
+	}
+
+	/**
+	 * Carga un árbol guardado con {@link #write(BinarySearchTreeImpl, KeyCodec, Path)}.
+	 *
+	 * El árbol resultante tiene la misma forma y el mismo modo de
+	 * equilibrado que el guardado. Se construye en O(n), enlazando los
+	 * nodos directamente en lugar de insertarlos.
+	 *
+	 * @throws IOException si el fichero no es una copia válida (formato
+	 *                     desconocido, truncado o claves fuera de orden)
+	 * @throws IllegalArgumentException si algún parámetro es null
+	 */
+	public static <T extends Comparable<? super T>> BinarySearchTreeImpl<T> readBinarySearchTree(Path file, KeyCodec<? extends T> codec) throws IOException {
+		if (file == null || codec == null) {
+			throw new IllegalArgumentException();
+		}
+		try (Input in = new Input(file)) {
+			in.expect(BST_MAGIC);
+			int mode = in.readByte();
+			BinarySearchTreeImpl.Balance[] modes = BinarySearchTreeImpl.Balance.values();
+			if (mode < 0 || mode >= modes.length) {
+				throw new IOException("Modo de equilibrado desconocido: " + mode);
+			}
+			BinarySearchTreeImpl<T> tree = new BinarySearchTreeImpl<T>(modes[mode]);
+			long n = in.readVarLong();
+			if (n > Integer.MAX_VALUE) {
+				throw new IOException("Demasiados elementos: " + n);
+			}
+			if (n > 0) {
+				tree.insert(decode(in, codec));
+				//	Rama derecha aún abierta: nodos cuyo hijo derecho puede
+				//	ser el siguiente en preorden
+				ArrayDeque<BinarySearchTreeImpl<T>> open = new ArrayDeque<BinarySearchTreeImpl<T>>();
+				open.push(tree);
+				T lowerBound = null;
+				for (long i = 1; i < n; i++) {
+					T key = decode(in, codec);
+					if (lowerBound != null && key.compareTo(lowerBound) <= 0) {
+						throw new IOException("Claves fuera de orden: " + key);
+					}
+					BinarySearchTreeImpl<T> node;
+					int cmp = key.compareTo(open.peek().getContent());
+					if (cmp < 0) {
+						node = open.peek().addChild(true, key);
+					} else if (cmp == 0) {
+						throw new IOException("Clave repetida: " + key);
+					} else {
+						//	Va a la derecha del último antepasado menor que key
+						BinarySearchTreeImpl<T> father = open.pop();
+						while (!open.isEmpty() && open.peek().getContent().compareTo(key) < 0) {
+							father = open.pop();
+						}
+						if (!open.isEmpty() && open.peek().getContent().compareTo(key) == 0) {
+							throw new IOException("Clave repetida: " + key);
+						}
+						lowerBound = father.getContent();
+						node = father.addChild(false, key);
+					}
+					open.push(node);
+				}
+				tree.recomputeMeasures();
+			}
+			in.expectEnd();
+			return tree;
+		}
+	}
+
+	private static <T> T decode(Input in, KeyCodec<? extends T> codec) throws IOException {
+		T key = codec.decode(in);
+		if (key == null) {
+			throw new IOException("Clave nula");
+		}
+		return key;
+	}
+
+	/**
+	 * Guarda el mundo en el fichero indicado, sustituyéndolo si existe.
+	 *
+	 * @throws IllegalArgumentException si algún parámetro es null
+	 */
+	public static void write(World world, Path file) throws IOException {
+		if (world == null || file == null) {
+			throw new IllegalArgumentException();
+		}
+		try (Output out = new Output(Files.newOutputStream(file))) {
+			out.write(WORLD_MAGIC);
+			out.writeByte(world.isEmpty() ? 0 : 1);
+			ArrayDeque<World> pending = new ArrayDeque<World>();
+			if (!world.isEmpty()) {
+				pending.push(world);
+			}
+			while (!pending.isEmpty()) {
+				World node = pending.pop();
+				World left = node.left();
+				World right = node.right();
+				LinkedList<Entity> entities = node.getContent();
+				out.writeVarLong(((long) entities.size() << 2) | (left.isEmpty() ? 0 : 2) | (right.isEmpty() ? 0 : 1));
+				for (Entity e : entities) {
+					out.writeVarLong(zigzag(e.getType()));
+					out.writeVarLong(zigzag(e.getCount()));
+				}
+				if (!right.isEmpty()) {
+					pending.push(right);
+				}
+				if (!left.isEmpty()) {
+					pending.push(left);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Carga un mundo guardado con {@link #write(World, Path)}.
+	 *
+	 * @throws IOException si el fichero no es una copia válida
+	 * @throws IllegalArgumentException si el parámetro es null
+	 */
+	public static World readWorld(Path file) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException();
+		}
+		try (Input in = new Input(file)) {
+			in.expect(WORLD_MAGIC);
+			int present = in.readByte();
+			if (present == 0) {
+				in.expectEnd();
+				return World.createEmptyWorld();
+			}
+			if (present != 1) {
+				throw new IOException("Cabecera no válida: " + present);
+			}
+			//	Nodos con los dos hijos cuyo hijo derecho está por leer
+			ArrayDeque<World> pendingRight = new ArrayDeque<World>();
+			World root = null;
+			World father = null;
+			boolean left = false;
+			while (true) {
+				long header = in.readVarLong();
+				long entities = header >>> 2;
+				LinkedList<Entity> content = new LinkedList<Entity>();
+				for (long i = 0; i < entities; i++) {
+					long type = unzigzag(in.readVarLong());
+					if (type != (int) type) {
+						throw new IOException("Tipo de entidad no válido: " + type);
+					}
+					content.add(new Entity((int) type, unzigzag(in.readVarLong())));
+				}
+				World node = World.node(content);
+				if (father == null) {
+					root = node;
+				} else if (left) {
+					father.setWorldLeft(node);
+				} else {
+					father.setWorldRight(node);
+				}
+
+				boolean hasLeft = (header & 2) != 0;
+				boolean hasRight = (header & 1) != 0;
+				if (hasLeft) {
+					if (hasRight) {
+						pendingRight.push(node);
+					}
+					father = node;
+					left = true;
+				} else if (hasRight) {
+					father = node;
+					left = false;
+				} else if (!pendingRight.isEmpty()) {
+					father = pendingRight.pop();
+					left = false;
+				} else {
+					break;
+				}
+			}
+			in.expectEnd();
+			return root;
+		}
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Destino de una copia: acumula los bytes en un buffer propio y los
+	 * vuelca al fichero en bloques.
+	 */
+	public static final class Output implements Closeable {
+
+		private final OutputStream out;
+		private final byte[] buffer = new byte[1 << 16];
+		private int count;
+
+		Output(OutputStream out) {
+			this.out = out;
+		}
+
+		public void writeByte(int b) throws IOException {
+			if (count == buffer.length) {
+				flush();
+			}
+			buffer[count++] = (byte) b;
+		}
+
+		public void write(byte[] bytes) throws IOException {
+			if (bytes.length > buffer.length - count) {
+				flush();
+				if (bytes.length > buffer.length) {
+					out.write(bytes);
+					return;
+				}
+			}
+			System.arraycopy(bytes, 0, buffer, count, bytes.length);
+			count += bytes.length;
+		}
+
+		/**
+		 * Escribe value sin signo, 7 bits por byte empezando por los bajos.
+		 */
+		public void writeVarLong(long value) throws IOException {
+			if (buffer.length - count < 10) {
+				flush();
+			}
+			while ((value & ~0x7FL) != 0) {
+				buffer[count++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			buffer[count++] = (byte) value;
+		}
+
+		private void flush() throws IOException {
+			out.write(buffer, 0, count);
+			count = 0;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				flush();
+			} finally {
+				out.close();
+			}
+		}
+	}
+
+	/**
+	 * Origen de una copia: el fichero proyectado en memoria.
+	 *
+	 * Una sola proyección no puede pasar de 2GB, así que los ficheros más
+	 * grandes se recorren por ventanas que se proyectan según se llega a
+	 * ellas.
+	 */
+	public static final class Input implements Closeable {
+
+		private static final long WINDOW = 1L << 30;
+
+		private final FileChannel channel;
+		private final long length;
+
+		//	Posición en el fichero del principio de la ventana actual
+		private long base;
+		private MappedByteBuffer window;
+
+		Input(Path file) throws IOException {
+			this.channel = FileChannel.open(file, StandardOpenOption.READ);
+			this.length = channel.size();
+			this.base = 0;
+			this.window = map(0);
+		}
+
+		private MappedByteBuffer map(long position) throws IOException {
+			return channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, length - position));
+		}
+
+		public int readByte() throws IOException {
+			if (!window.hasRemaining()) {
+				long next = base + window.limit();
+				if (next >= length) {
+					throw new EOFException();
+				}
+				base = next;
+				window = map(next);
+			}
+			return window.get() & 0xFF;
+		}
+
+		public void read(byte[] bytes) throws IOException {
+			int done = Math.min(bytes.length, window.remaining());
+			window.get(bytes, 0, done);
+			for (int i = done; i < bytes.length; i++) {
+				bytes[i] = (byte) readByte();
+			}
+		}
+
+		public long readVarLong() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = readByte();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new IOException("Varint demasiado largo");
+		}
+
+		void expect(byte[] magic) throws IOException {
+			for (byte b : magic) {
+				if (readByte() != (b & 0xFF)) {
+					throw new IOException("No es una copia de este tipo");
+				}
+			}
+		}
+
+		void expectEnd() throws IOException {
+			if (base + window.position() != length) {
+				throw new IOException("Datos de más al final de la copia");
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
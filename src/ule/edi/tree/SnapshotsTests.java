@@ -0,0 +1,159 @@
+package ule.edi.tree;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class SnapshotsTests {
+
+	private Path file = null;
+
+	@Before
+	public void createFile() throws IOException {
+		file = File.createTempFile("snapshot", ".bin").toPath();
+	}
+
+	@After
+	public void deleteFile() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	private BinarySearchTreeImpl<Integer> roundTrip(BinarySearchTreeImpl<Integer> tree) throws IOException {
+		Snapshots.write(tree, Snapshots.INTEGERS, file);
+		return Snapshots.readBinarySearchTree(file, Snapshots.INTEGERS);
+	}
+
+	@Test
+	public void testBinarySearchTreeSameShape() throws IOException {
+		BinarySearchTreeImpl<Integer> tree = new BinarySearchTreeImpl<Integer>();
+		tree.insert(10, 20, 5, 2, 15, 30, -7, 25);
+		BinarySearchTreeImpl<Integer> copy = roundTrip(tree);
+		Assert.assertEquals(tree.toString(), copy.toString());
+		Assert.assertEquals(tree.size(), copy.size());
+		Assert.assertEquals(tree.height(), copy.height());
+		//	Se puede seguir usando con normalidad
+		Assert.assertTrue(copy.insert(1));
+		copy.remove(10);
+		Assert.assertEquals("{15, {5, {2, {-7, ∅, {1, ∅, ∅}}, ∅}, ∅}, {20, ∅, {30, {25, ∅, ∅}, ∅}}}", copy.toString());
+	}
+
+	@Test
+	public void testBinarySearchTreeEmpty() throws IOException {
+		BinarySearchTreeImpl<Integer> copy = roundTrip(new BinarySearchTreeImpl<Integer>());
+		Assert.assertTrue(copy.isEmpty());
+		Assert.assertEquals("∅", copy.toString());
+	}
+
+	@Test
+	public void testBinarySearchTreeKeepsBalance() throws IOException {
+		BinarySearchTreeImpl<Integer> tree = new BinarySearchTreeImpl<Integer>(BinarySearchTreeImpl.Balance.AVL);
+		for (int i = 0; i < 1000; i++) {
+			tree.insert(i);
+		}
+		BinarySearchTreeImpl<Integer> copy = roundTrip(tree);
+		Assert.assertEquals(tree.toString(), copy.toString());
+		//	Sigue en modo AVL: insertar ordenado no la degenera
+		for (int i = 1000; i < 2000; i++) {
+			copy.insert(i);
+		}
+		Assert.assertEquals(11, copy.height());
+	}
+
+	@Test
+	public void testBinarySearchTreeStringsAndDegenerate() throws IOException {
+		BinarySearchTreeImpl<String> words = new BinarySearchTreeImpl<String>();
+		words.insert("mundo", "árbol", "dragón", "princesa", "", "zeta");
+		Snapshots.write(words, Snapshots.STRINGS, file);
+		Assert.assertEquals(words.toString(), Snapshots.readBinarySearchTree(file, Snapshots.STRINGS).toString());
+
+		//	Una lista de 20000 nodos no desborda la pila al cargar
+		BinarySearchTreeImpl<Long> list = new BinarySearchTreeImpl<Long>();
+		for (long i = 0; i < 20000; i++) {
+			list.insert(i);
+		}
+		Snapshots.write(list, Snapshots.LONGS, file);
+		BinarySearchTreeImpl<Long> copy = Snapshots.readBinarySearchTree(file, Snapshots.LONGS);
+		Assert.assertEquals(20000, copy.height());
+		Assert.assertEquals(20000, copy.size());
+	}
+
+	@Test
+	public void testBinarySearchTreeCompact() throws IOException {
+		Random random = new Random(3);
+		BinarySearchTreeImpl<Integer> tree = new BinarySearchTreeImpl<Integer>();
+		for (int i = 0; i < 10000; i++) {
+			tree.insert(random.nextInt(1 << 13));
+		}
+		BinarySearchTreeImpl<Integer> copy = roundTrip(tree);
+		Assert.assertEquals(tree.toString(), copy.toString());
+		//	Claves de 13 bits con signo en zig-zag: dos bytes por clave
+		Assert.assertTrue(Files.size(file) <= 8 + 2L * tree.size());
+	}
+
+	@Test(expected = IOException.class)
+	public void testBinarySearchTreeOutOfOrder() throws IOException {
+		//	Preorden 10, 5, 20, 7: el 7 no cabe a la derecha de 10
+		BinarySearchTreeImpl<Integer> tree = new BinarySearchTreeImpl<Integer>();
+		tree.insert(10, 5, 20, 30);
+		Snapshots.write(tree, Snapshots.INTEGERS, file);
+		byte[] bytes = Files.readAllBytes(file);
+		bytes[bytes.length - 1] = 14;
+		Files.write(file, bytes);
+		Snapshots.readBinarySearchTree(file, Snapshots.INTEGERS);
+	}
+
+	@Test(expected = IOException.class)
+	public void testBinarySearchTreeWrongFormat() throws IOException {
+		World world = World.createEmptyWorld();
+		world.insert("", Entity.dragons(1));
+		Snapshots.write(world, file);
+		Snapshots.readBinarySearchTree(file, Snapshots.INTEGERS);
+	}
+
+	@Test(expected = IOException.class)
+	public void testBinarySearchTreeTruncated() throws IOException {
+		BinarySearchTreeImpl<Integer> tree = new BinarySearchTreeImpl<Integer>();
+		tree.insert(10, 5, 20);
+		Snapshots.write(tree, Snapshots.INTEGERS, file);
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 1));
+		Snapshots.readBinarySearchTree(file, Snapshots.INTEGERS);
+	}
+
+	@Test
+	public void testWorld() throws IOException {
+		World world = World.createEmptyWorld();
+		world.insert("00", Entity.dragons(2));
+		world.insert("00", Entity.princesses(1));
+		world.insert("01", Entity.castles(1));
+		world.insert("", Entity.forests(1));
+		world.insert("1101", Entity.warriors(5000000000L));
+		Snapshots.write(world, file);
+		World copy = Snapshots.readWorld(file);
+		Assert.assertEquals(world.toString(), copy.toString());
+		Assert.assertEquals(5000000000L, copy.countEntity(Entity.WARRIOR));
+		copy.insert("10", Entity.dragons(1));
+		Assert.assertEquals(3, copy.countEntity(Entity.DRAGON));
+
+		Snapshots.write(World.createEmptyWorld(), file);
+		Assert.assertEquals("∅", Snapshots.readWorld(file).toString());
+	}
+
+	@Test(expected = IOException.class)
+	public void testWorldWrongFormat() throws IOException {
+		BinarySearchTreeImpl<Integer> tree = new BinarySearchTreeImpl<Integer>();
+		tree.insert(1);
+		Snapshots.write(tree, Snapshots.INTEGERS, file);
+		Snapshots.readWorld(file);
+	}
+}
@@ -0,0 +1,206 @@
+package ule.edi.tree;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Etiquetas de un nodo, guardadas de forma compacta.
+ * 
+ * Un nodo suele tener muy pocas etiquetas (ninguna, o una o dos como
+ * "height" o "decendents"), así que en lugar de una tabla hash se usan
+ * arrays pequeños que se recorren secuencialmente. Los valores enteros
+ * asignados con {@link #putInt(String, int)} se guardan en un array de
+ * int, sin crear un Integer por cada uno; sólo se convierten a Integer
+ * si se consultan como Object.
+ */
+final class TagStore extends AbstractMap<String, Object> {
+
+	//	Marca en values[i] de que el valor es entero y está en ints[i]
+	private static final Object INT_VALUE = new Object();
+
+	private String[] keys = new String[2];
+	private Object[] values = new Object[2];
+
+	//	Sólo se crea si se guarda algún entero
+	private int[] ints;
+
+	private int size;
+
+	private int indexOf(Object key) {
+		for (int i = 0; i < size; i++) {
+			if (Objects.equals(keys[i], key)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private Object valueAt(int i) {
+		return (values[i] == INT_VALUE) ? Integer.valueOf(ints[i]) : values[i];
+	}
+
+	//	Posición para la clave: la que ya tenía o una nueva al final
+	private int slotFor(String key) {
+		int i = indexOf(key);
+		if (i < 0) {
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+				if (ints != null) {
+					ints = Arrays.copyOf(ints, size * 2);
+				}
+			}
+			i = size++;
+			keys[i] = key;
+		}
+		return i;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@Override
+	public Object get(Object key) {
+		int i = indexOf(key);
+		return (i < 0) ? null : valueAt(i);
+	}
+
+	/**
+	 * Valor entero de la clave, sin crear objetos si se guardó como tal.
+	 * 
+	 * @throws NullPointerException si la clave no existe
+	 * @throws ClassCastException si su valor no es entero
+	 */
+	int getInt(String key) {
+		int i = indexOf(key);
+		if (i < 0) {
+			throw new NullPointerException(key);
+		}
+		return (values[i] == INT_VALUE) ? ints[i] : (Integer) values[i];
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		int i = slotFor(key);
+		Object old = valueAt(i);
+		values[i] = value;
+		return old;
+	}
+
+	/**
+	 * Asigna un valor entero a la clave, sin convertirlo a Integer.
+	 */
+	void putInt(String key, int value) {
+		int i = slotFor(key);
+		if (ints == null) {
+			ints = new int[keys.length];
+		}
+		values[i] = INT_VALUE;
+		ints[i] = value;
+	}
+
+	@Override
+	public Object remove(Object key) {
+		int i = indexOf(key);
+		if (i < 0) {
+			return null;
+		}
+		Object old = valueAt(i);
+		removeAt(i);
+		return old;
+	}
+
+	//	El orden no importa: el último pasa al hueco
+	private void removeAt(int i) {
+		size--;
+		keys[i] = keys[size];
+		values[i] = values[size];
+		if (ints != null) {
+			ints[i] = ints[size];
+		}
+		keys[size] = null;
+		values[size] = null;
+	}
+
+	/**
+	 * Elimina las claves que no estén en keep.
+	 */
+	void retain(String ... keep) {
+		for (int i = size - 1; i >= 0; i--) {
+			boolean kept = false;
+			for (String k : keep) {
+				if (Objects.equals(keys[i], k)) {
+					kept = true;
+					break;
+				}
+			}
+			if (! kept) {
+				removeAt(i);
+			}
+		}
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(keys, 0, size, null);
+		Arrays.fill(values, 0, size, null);
+		size = 0;
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return new AbstractSet<Entry<String, Object>>() {
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public Iterator<Entry<String, Object>> iterator() {
+				return new Iterator<Entry<String, Object>>() {
+
+					private int next = 0;
+					private boolean canRemove = false;
+
+					@Override
+					public boolean hasNext() {
+						return next < size;
+					}
+
+					@Override
+					public Entry<String, Object> next() {
+						if (next >= size) {
+							throw new NoSuchElementException();
+						}
+						canRemove = true;
+						int i = next++;
+						return new SimpleImmutableEntry<String, Object>(keys[i], valueAt(i));
+					}
+
+					@Override
+					public void remove() {
+						if (! canRemove) {
+							throw new IllegalStateException();
+						}
+						canRemove = false;
+						//	El último ocupa el hueco y aún no se ha visitado
+						removeAt(--next);
+					}
+				};
+			}
+		};
+	}
+}
@@ -1,6 +1,7 @@
 package ule.edi.tree;
 
 
+import java.util.Iterator;
 import java.util.Map;
 
 /**
@@ -53,6 +54,12 @@ public interface TreeADT<T> {
 	/**
 	 * Devuelve el sub-árbol n-ésimo, puede ser vacío
 	 * 
+	 * Un sub-árbol vacío puede ser un árbol vacío compartido por todas las
+	 * hojas, que sólo sirve para consultarlo: modificarlo (setContent,
+	 * setTag o insertar en él) lanza UnsupportedOperationException. Los
+	 * árboles que lo usan ofrecen sus propios métodos para obtener un
+	 * sub-árbol vacío en el que sí se puede insertar.
+	 * 
 	 * @param n índice del sub-árbol, empiezan en "0"
 	 * 
 	 * @return árbol n-ésimo
@@ -73,11 +80,37 @@ public interface TreeADT<T> {
 	 */
 	void setContent(T content);
 	
+	/**
+	 * Devuelve un iterador que recorre la información de los nodos en
+	 * preorden (cada nodo antes que sus sub-árboles, de izquierda a derecha).
+	 * 
+	 * @return iterador para el recorrido en preorden
+	 */
+	Iterator<T> iteratorPreorder();
+	
+	/**
+	 * Devuelve un iterador que recorre la información de los nodos en
+	 * postorden (cada nodo después de todos sus sub-árboles).
+	 * 
+	 * @return iterador para el recorrido en postorden
+	 */
+	Iterator<T> iteratorPostorder();
+	
+	/**
+	 * Recorre el árbol en profundidad una sola vez, llamando a las
+	 * operaciones del visitante en preorden, inorden y postorden de cada
+	 * nodo no vacío. Para calcular varias cosas en el mismo recorrido se
+	 * combinan con {@link TreeVisitor#fuse(TreeVisitor...)}.
+	 * 
+	 * @param visitor operación a aplicar a los nodos
+	 */
+	void traverse(TreeVisitor<T> visitor);
+	
 	
 	/**
 	 * Devuelve el mapa de etiquetas para este nodo.
 	 * 
-	 * @return
+	 * @return mapa de etiquetas, vacío y de sólo lectura si no tiene ninguna
 	 */
 	public Map<String, Object> getTags();
 	
@@ -88,6 +121,16 @@ public interface TreeADT<T> {
 	 * @param value
 	 */
 	public void setTag(String key, Object value);
+
+	/**
+	 * Asigna un par (clave,valor) con valor entero como etiqueta a este
+	 * nodo, guardándolo sin convertirlo a Integer. Al consultarlo con
+	 * {@link #getTag(String)} se obtiene un Integer.
+	 * 
+	 * @param key
+	 * @param value
+	 */
+	public void setTag(String key, int value);
 	
 	/**
 	 * Consulta un valor para la clave dada en este nodo, null si no existe.
@@ -104,4 +147,13 @@ public interface TreeADT<T> {
 	 * @param keep
 	 */
 	public void filterTags(String ... keep);
+
+	/**
+	 * Como {@link #filterTags(String...)}, pero permite elegir si se
+	 * reparte el trabajo entre varios hilos.
+	 * 
+	 * @param execution forma de ejecutarlo
+	 * @param keep
+	 */
+	public void filterTags(Execution execution, String ... keep);
 }
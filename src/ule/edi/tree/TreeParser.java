@@ -0,0 +1,368 @@
+package ule.edi.tree;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.function.Function;
+
+
+/**
+ * Lectura de árboles escritos con el formato de {@link AbstractTreeADT#toString()}:
+ *
+ * 		"∅" para el árbol vacío y "{(información raíz), izquierdo, derecho}"
+ * 		en otro caso, con los pares (clave,valor) del nodo, si los hay, tras
+ * 		la información: "{10 [(height, 3)], ∅, ∅}".
+ *
+ * Los árboles se reconstruyen tal cual están escritos, enlazando los nodos
+ * directamente en lugar de insertarlos, en una sola pasada y sin
+ * recursividad. El texto se lee por bloques de tamaño fijo desde cualquier
+ * {@link Readable} (un Reader, un CharBuffer...), así que además del propio
+ * árbol sólo se usa una cantidad constante de memoria, por grande que sea
+ * el texto o profundo el árbol.
+ *
+ * Los pares (clave,valor) de los nodos se saltan: en el texto no queda
+ * constancia del tipo de los valores.
+ */
+public final class TreeParser {
+
+	private TreeParser() {
+	}
+
+	/**
+	 * Lee un árbol binario de búsqueda.
+	 *
+	 * @param in texto del árbol.
+	 * @param keys convierte el texto de cada clave en la clave (p.ej. Integer::valueOf).
+	 * @return el árbol, sin equilibrar y con la misma forma que el texto.
+	 * @throws IOException si falla la lectura o el texto no es un árbol
+	 *                     válido (mal formado, claves que no se pueden
+	 *                     convertir, fuera de orden o repetidas).
+	 * @throws IllegalArgumentException si algún parámetro es null
+	 */
+	public static <T extends Comparable<? super T>> BinarySearchTreeImpl<T> parseBinarySearchTree(Readable in, Function<String, ? extends T> keys) throws IOException {
+		if (in == null || keys == null) {
+			throw new IllegalArgumentException();
+		}
+		Lexer lexer = new Lexer(in);
+		BinarySearchTreeImpl<T> tree = new BinarySearchTreeImpl<T>();
+		lexer.skipSpaces();
+		if (lexer.read() == AbstractTreeADT.EMPTY_TREE_MARK.charAt(0)) {
+			lexer.expectEnd();
+			return tree;
+		}
+		lexer.unread();
+		lexer.expect('{');
+		tree.insert(readKey(lexer, keys));
+
+		//	Nodo abierto y cuál de sus hijos toca leer (0 izquierdo, 1
+		//	derecho, 2 ninguno): el resto de la rama se recupera por father
+		BinarySearchTreeImpl<T> node = tree;
+		int slot = 0;
+		while (true) {
+			if (slot < 2) {
+				lexer.expect(',');
+				lexer.skipSpaces();
+				int c = lexer.read();
+				if (c == AbstractTreeADT.EMPTY_TREE_MARK.charAt(0)) {
+					slot++;
+				} else if (c == '{') {
+					node = node.addChild(slot == 0, readKey(lexer, keys));
+					slot = 0;
+				} else {
+					throw lexer.error("Se esperaba un sub-árbol");
+				}
+			} else {
+				lexer.expect('}');
+				if (node == tree) {
+					break;
+				}
+				slot = (node.father.left() == node) ? 1 : 2;
+				node = node.father;
+			}
+		}
+		lexer.expectEnd();
+		tree.recomputeMeasures();
+
+		//	Sin las cotas de cada rama no se puede comprobar el orden al
+		//	leer, pero sí después, en inorden y sin pila
+		Iterator<T> it = tree.iteratorInorder();
+		T previous = it.next();
+		while (it.hasNext()) {
+			T next = it.next();
+			if (previous.compareTo(next) >= 0) {
+				throw new IOException("Claves fuera de orden o repetidas: " + previous + ", " + next);
+			}
+			previous = next;
+		}
+		return tree;
+	}
+
+	//	Lee la clave de un nodo, hasta la coma, y salta sus pares (clave,valor)
+	private static <T> T readKey(Lexer lexer, Function<String, ? extends T> keys) throws IOException {
+		StringBuilder text = lexer.text;
+		text.setLength(0);
+		while (true) {
+			int c = lexer.read();
+			if (c == ',') {
+				lexer.unread();
+				break;
+			}
+			if (c == ' ' && lexer.peek() == '[') {
+				lexer.read();
+				lexer.skipTags();
+				break;
+			}
+			if (c < 0) {
+				throw new EOFException();
+			}
+			text.append((char) c);
+		}
+		T key;
+		try {
+			key = keys.apply(text.toString());
+		} catch (RuntimeException e) {
+			throw lexer.error("Clave no válida \"" + text + "\"");
+		}
+		if (key == null) {
+			throw lexer.error("Clave nula");
+		}
+		return key;
+	}
+
+	/**
+	 * Lee un mundo, con el formato de {@link World#toString()}:
+	 * "{[D(2), P(1)], izquierdo, derecho}".
+	 *
+	 * @param in texto del mundo.
+	 * @return el mundo, con la misma forma que el texto.
+	 * @throws IOException si falla la lectura o el texto no es un mundo válido.
+	 * @throws IllegalArgumentException si el parámetro es null
+	 */
+	public static World parseWorld(Readable in) throws IOException {
+		if (in == null) {
+			throw new IllegalArgumentException();
+		}
+		Lexer lexer = new Lexer(in);
+		lexer.skipSpaces();
+		if (lexer.read() == AbstractTreeADT.EMPTY_TREE_MARK.charAt(0)) {
+			lexer.expectEnd();
+			return World.createEmptyWorld();
+		}
+		lexer.unread();
+		lexer.expect('{');
+		World root = World.node(readEntities(lexer));
+
+		//	Los mundos no tienen enlace al padre. Para no necesitar una pila,
+		//	mientras se lee un hijo de un nodo abierto, el enlace a ese hijo
+		//	apunta al padre del nodo (inversión de enlaces), y se restaura al
+		//	cerrar el hijo. La raíz tiene como padre una marca no vacía.
+		World top = World.node(new LinkedList<Entity>());
+		World node = root;
+		World father = top;
+		int slot = 0;
+		while (true) {
+			if (slot < 2) {
+				lexer.expect(',');
+				lexer.skipSpaces();
+				int c = lexer.read();
+				if (c == AbstractTreeADT.EMPTY_TREE_MARK.charAt(0)) {
+					slot++;
+				} else if (c == '{') {
+					World child = World.node(readEntities(lexer));
+					if (slot == 0) {
+						node.setWorldLeft(father);
+					} else {
+						node.setWorldRight(father);
+					}
+					father = node;
+					node = child;
+					slot = 0;
+				} else {
+					throw lexer.error("Se esperaba un sub-árbol");
+				}
+			} else {
+				lexer.expect('}');
+				if (node == root) {
+					break;
+				}
+				//	Si el derecho sigue vacío es que se estaba leyendo el izquierdo
+				World grandfather;
+				if (father.right().isEmpty()) {
+					grandfather = father.left();
+					father.setWorldLeft(node);
+					slot = 1;
+				} else {
+					grandfather = father.right();
+					father.setWorldRight(node);
+					slot = 2;
+				}
+				node = father;
+				father = grandfather;
+			}
+		}
+		lexer.expectEnd();
+		return root;
+	}
+
+	//	Lee "[D(2), P(1)]" y salta los pares (clave,valor) que le sigan
+	private static LinkedList<Entity> readEntities(Lexer lexer) throws IOException {
+		LinkedList<Entity> entities = new LinkedList<Entity>();
+		lexer.expect('[');
+		if (lexer.read() != ']') {
+			lexer.unread();
+			do {
+				int type = entityType(lexer, lexer.read());
+				lexer.expect('(');
+				entities.add(new Entity(type, lexer.readLong()));
+				lexer.expect(')');
+			} while (lexer.skipSeparator());
+			lexer.expect(']');
+		}
+		if (lexer.read() == ' ') {
+			lexer.expect('[');
+			lexer.skipTags();
+		} else {
+			lexer.unread();
+		}
+		return entities;
+	}
+
+	//	Inversa de Entity.toString()
+	private static int entityType(Lexer lexer, int letter) throws IOException {
+		switch (letter) {
+		case 'D': return Entity.DRAGON;
+		case 'P': return Entity.PRINCESS;
+		case 'W': return Entity.WARRIOR;
+		case 'C': return Entity.CASTLE;
+		case 'F': return Entity.FOREST;
+		case 'U': return Entity.UNKNOWN;
+		default:
+			throw lexer.error("Entidad desconocida");
+		}
+	}
+
+	/**
+	 * Lectura carácter a carácter sobre un buffer de tamaño fijo, con un
+	 * carácter de vuelta atrás.
+	 */
+	private static final class Lexer {
+
+		private final Readable in;
+		private final CharBuffer buffer = CharBuffer.allocate(1 << 13);
+
+		//	Texto de la clave que se está leyendo, reutilizado entre claves
+		final StringBuilder text = new StringBuilder();
+
+		//	Caracteres consumidos, para los mensajes de error
+		private long position;
+
+		//	Último carácter leído y si se ha devuelto con unread()
+		private int last;
+		private boolean pushedBack;
+
+		Lexer(Readable in) {
+			this.in = in;
+			buffer.flip();
+		}
+
+		int read() throws IOException {
+			if (pushedBack) {
+				pushedBack = false;
+				return last;
+			}
+			while (!buffer.hasRemaining()) {
+				buffer.clear();
+				int n = in.read(buffer);
+				buffer.flip();
+				if (n < 0) {
+					last = -1;
+					return last;
+				}
+			}
+			position++;
+			last = buffer.get();
+			return last;
+		}
+
+		void unread() {
+			pushedBack = true;
+		}
+
+		int peek() throws IOException {
+			int c = read();
+			unread();
+			return c;
+		}
+
+		void expect(char c) throws IOException {
+			if (read() != c) {
+				throw error("Se esperaba '" + c + "'");
+			}
+		}
+
+		void skipSpaces() throws IOException {
+			while (Character.isWhitespace(read())) {
+			}
+			unread();
+		}
+
+		void expectEnd() throws IOException {
+			skipSpaces();
+			if (read() >= 0) {
+				throw error("Sobra texto tras el árbol");
+			}
+		}
+
+		//	Cierto si sigue ", " (que se consume)
+		boolean skipSeparator() throws IOException {
+			if (read() != ',') {
+				unread();
+				return false;
+			}
+			skipSpaces();
+			return true;
+		}
+
+		long readLong() throws IOException {
+			boolean negative = (read() == '-');
+			if (!negative) {
+				unread();
+			}
+			long value = 0;
+			int digits = 0;
+			for (int c = read(); c >= '0' && c <= '9'; c = read()) {
+				if (value > (Long.MAX_VALUE - (c - '0')) / 10) {
+					throw error("Número demasiado grande");
+				}
+				value = value * 10 + (c - '0');
+				digits++;
+			}
+			unread();
+			if (digits == 0) {
+				throw error("Se esperaba un número");
+			}
+			return negative ? -value : value;
+		}
+
+		//	Salta "(clave, valor), ...]" tras el '[' que abre los pares
+		void skipTags() throws IOException {
+			int depth = 1;
+			while (depth > 0) {
+				int c = read();
+				if (c < 0) {
+					throw new EOFException();
+				} else if (c == '[') {
+					depth++;
+				} else if (c == ']') {
+					depth--;
+				}
+			}
+		}
+
+		IOException error(String message) {
+			return new IOException(message + " en el carácter " + position);
+		}
+	}
+}
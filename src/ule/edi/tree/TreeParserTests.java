@@ -0,0 +1,160 @@
+package ule.edi.tree;
+
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+public class TreeParserTests {
+
+	private static BinarySearchTreeImpl<Integer> parseIntegers(String text) throws IOException {
+		return TreeParser.parseBinarySearchTree(new StringReader(text), Integer::valueOf);
+	}
+
+	@Test
+	public void testBinarySearchTreeRoundTrip() throws IOException {
+		BinarySearchTreeImpl<Integer> tree = parseIntegers("{10, {5, {2, ∅, ∅}, ∅}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}");
+		Assert.assertEquals("{10, {5, {2, ∅, ∅}, ∅}, {20, {15, ∅, ∅}, {30, ∅, ∅}}}", tree.toString());
+		Assert.assertEquals(6, tree.size());
+		Assert.assertEquals(3, tree.height());
+		Assert.assertTrue(tree.contains(15));
+		//	Se puede seguir usando con normalidad
+		tree.remove(10);
+		tree.insert(12);
+		Assert.assertEquals("{15, {5, {2, ∅, ∅}, {12, ∅, ∅}}, {20, ∅, {30, ∅, ∅}}}", tree.toString());
+
+		Random random = new Random(5);
+		BinarySearchTreeImpl<Integer> big = new BinarySearchTreeImpl<Integer>();
+		for (int i = 0; i < 5000; i++) {
+			big.insert(random.nextInt(100000) - 50000);
+		}
+		BinarySearchTreeImpl<Integer> copy = TreeParser.parseBinarySearchTree(CharBuffer.wrap(big.toString()), Integer::valueOf);
+		Assert.assertEquals(big.toString(), copy.toString());
+		Assert.assertEquals(big.height(), copy.height());
+		Assert.assertEquals(copy.size() + 1, countNodeObjects(copy));
+	}
+
+	//	Número de objetos distintos que forman el árbol, vacíos incluidos
+	private static int countNodeObjects(TreeADT<?> root) {
+		Set<TreeADT<?>> objects = Collections.newSetFromMap(new IdentityHashMap<TreeADT<?>, Boolean>());
+		ArrayDeque<TreeADT<?>> pending = new ArrayDeque<TreeADT<?>>();
+		pending.push(root);
+		while (!pending.isEmpty()) {
+			TreeADT<?> t = pending.pop();
+			if (objects.add(t) && !t.isEmpty()) {
+				pending.push(t.getSubtree(0));
+				pending.push(t.getSubtree(1));
+			}
+		}
+		return objects.size();
+	}
+
+	@Test
+	public void testBinarySearchTreeSharesEmptyChildren() throws IOException {
+		//	Un hijo derecho sin hermano izquierdo no crea un vacío propio
+		BinarySearchTreeImpl<Integer> tree = parseIntegers("{10, ∅, {20, ∅, ∅}}");
+		Assert.assertEquals(3, countNodeObjects(tree));
+		Assert.assertSame(tree.getSubtree(0), tree.getSubtree(1).getSubtree(0));
+		tree = parseIntegers("{10, {5, {2, ∅, ∅}, ∅}, {20, ∅, {30, ∅, {40, ∅, ∅}}}}");
+		Assert.assertEquals(tree.size() + 1, countNodeObjects(tree));
+	}
+
+	@Test
+	public void testBinarySearchTreeStringsTagsAndEmpty() throws IOException {
+		BinarySearchTreeImpl<String> tree = TreeParser.parseBinarySearchTree(new StringReader("{M [(height, 2), (path, [0, 1])], {E, ∅, ∅}, {la S, ∅, ∅}}"), s -> s);
+		Assert.assertEquals("{M, {E, ∅, ∅}, {la S, ∅, ∅}}", tree.toString());
+		Assert.assertTrue(parseIntegers("  ∅\n").isEmpty());
+	}
+
+	@Test
+	public void testBinarySearchTreeDegenerate() throws IOException {
+		//	Una lista de 10^6 nodos, sin desbordar la pila
+		int n = 1000000;
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < n; i++) {
+			text.append('{').append(i).append(", ∅, ");
+		}
+		text.append('∅');
+		for (int i = 0; i < n; i++) {
+			text.append('}');
+		}
+		BinarySearchTreeImpl<Integer> list = TreeParser.parseBinarySearchTree(CharBuffer.wrap(text), Integer::valueOf);
+		Assert.assertEquals(n, list.size());
+		Assert.assertEquals(n, list.height());
+	}
+
+	@Test(expected = IOException.class)
+	public void testBinarySearchTreeOutOfOrder() throws IOException {
+		parseIntegers("{10, {5, ∅, {12, ∅, ∅}}, ∅}");
+	}
+
+	@Test(expected = IOException.class)
+	public void testBinarySearchTreeBadKey() throws IOException {
+		parseIntegers("{10, {x, ∅, ∅}, ∅}");
+	}
+
+	@Test
+	public void testMalformed() {
+		String[] bad = { "", "{10, ∅}", "{10, ∅, ∅", "{10, ∅, ∅}}", "{10 ∅, ∅}", "{10, ∅, ∅} x" };
+		for (String text : bad) {
+			try {
+				parseIntegers(text);
+				Assert.fail(text);
+			} catch (IOException e) {
+			}
+		}
+		String[] badWorlds = { "{[D(2), ∅, ∅}", "{[X(1)], ∅, ∅}", "{[D()], ∅, ∅}", "{[D(1)], {[P(1)], ∅, ∅}}" };
+		for (String text : badWorlds) {
+			try {
+				TreeParser.parseWorld(new StringReader(text));
+				Assert.fail(text);
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	@Test
+	public void testWorldRoundTrip() throws IOException {
+		World world = World.createEmptyWorld();
+		world.insert("00", Entity.dragons(2));
+		world.insert("00", Entity.princesses(1));
+		world.insert("01", Entity.castles(1));
+		world.insert("", Entity.forests(1));
+		world.insert("1101", Entity.warriors(5000000000L));
+		World copy = TreeParser.parseWorld(new StringReader(world.toString()));
+		Assert.assertEquals(world.toString(), copy.toString());
+		Assert.assertEquals(2, copy.countEntity(Entity.DRAGON));
+		copy.insert("10", Entity.dragons(1));
+		Assert.assertEquals(3, copy.countEntity(Entity.DRAGON));
+
+		Assert.assertEquals("{[U(1)], {[D(3)], ∅, ∅}, ∅}", TreeParser.parseWorld(CharBuffer.wrap("{[U(1)], {[D(3)], ∅, ∅}, ∅}")).toString());
+		Assert.assertEquals("∅", TreeParser.parseWorld(new StringReader("∅")).toString());
+	}
+
+	@Test
+	public void testWorldDegenerate() throws IOException {
+		//	Sin enlace al padre ni pila: 10^5 niveles alternando lados
+		int n = 100000;
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < n; i++) {
+			text.append((i % 2 == 0) ? "{[D(1)], " : "{[P(1)], ∅, ");
+		}
+		text.append('∅');
+		for (int i = n - 1; i >= 0; i--) {
+			text.append((i % 2 == 0) ? ", ∅}" : "}");
+		}
+		World world = TreeParser.parseWorld(CharBuffer.wrap(text));
+		StringBuilder out = new StringBuilder();
+		world.writeTo(out);
+		Assert.assertEquals(text.toString(), out.toString());
+	}
+}
@@ -0,0 +1,88 @@
+package ule.edi.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Operación que se aplica a los nodos de un árbol durante un recorrido
+ * en profundidad (ver {@link TreeADT#traverse(TreeVisitor)}).
+ * 
+ * En un único recorrido se llama a cada nodo no vacío tres veces: antes
+ * de visitar sus sub-árboles (preorden), después del primero (inorden; en
+ * árboles con un solo sub-árbol posible, después de él) y después de todos
+ * (postorden). Cada operación redefine sólo los que necesite.
+ * 
+ * La profundidad es 1 para la raíz del recorrido, 2 para sus hijos, etc.
+ * 
+ * Con {@link #fuse(TreeVisitor...)} se combinan varias operaciones para
+ * calcularlas todas en el mismo recorrido.
+ * 
+ * @param <T> tipo de la información en cada nodo.
+ */
+public interface TreeVisitor<T> {
+
+	/**
+	 * Se llama al llegar al nodo, antes que a sus sub-árboles.
+	 * 
+	 * @param node nodo (no vacío).
+	 * @param depth profundidad del nodo.
+	 */
+	default void preorder(TreeADT<T> node, int depth) {
+	}
+
+	/**
+	 * Se llama después de recorrer el primer sub-árbol del nodo.
+	 * 
+	 * @param node nodo (no vacío).
+	 * @param depth profundidad del nodo.
+	 */
+	default void inorder(TreeADT<T> node, int depth) {
+	}
+
+	/**
+	 * Se llama después de recorrer todos los sub-árboles del nodo.
+	 * 
+	 * @param node nodo (no vacío).
+	 * @param depth profundidad del nodo.
+	 */
+	default void postorder(TreeADT<T> node, int depth) {
+	}
+
+	/**
+	 * Combina varias operaciones en una: en cada momento del recorrido se
+	 * llama a todas, en el orden en que se dan.
+	 * 
+	 * @param visitors operaciones a combinar.
+	 * @return operación que las aplica todas en un único recorrido
+	 */
+	@SafeVarargs
+	static <T> TreeVisitor<T> fuse(final TreeVisitor<T> ... visitors) {
+		final List<TreeVisitor<T>> all = new ArrayList<TreeVisitor<T>>(visitors.length);
+		for (TreeVisitor<T> v : visitors) {
+			all.add(v);
+		}
+		return new TreeVisitor<T>() {
+
+			@Override
+			public void preorder(TreeADT<T> node, int depth) {
+				for (TreeVisitor<T> v : all) {
+					v.preorder(node, depth);
+				}
+			}
+
+			@Override
+			public void inorder(TreeADT<T> node, int depth) {
+				for (TreeVisitor<T> v : all) {
+					v.inorder(node, depth);
+				}
+			}
+
+			@Override
+			public void postorder(TreeADT<T> node, int depth) {
+				for (TreeVisitor<T> v : all) {
+					v.postorder(node, depth);
+				}
+			}
+		};
+	}
+}
@@ -1,9 +1,12 @@
 package ule.edi.tree;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 
 /**
@@ -45,10 +48,21 @@ public class World extends AbstractBinaryTreeADT<LinkedList<Entity>> {
 	/**
 	 * Devuelve el mundo al que se llega al avanzar a la izquierda.
 	 * 
+	 * Si es vacío, se devuelve un mundo vacío nuevo en el que se puede
+	 * insertar. Este nodo sigue apuntando al vacío compartido hasta que se
+	 * inserte en él.
+	 * 
 	 * @return
 	 */
 	protected World getWorldLeft() {
-		
+		if (leftSubtree == EMPTY) {
+			return new EmptyChild(this, true);
+		}
+		return left();
+	}
+
+	//	Mundo izquierdo tal cual, que puede ser el vacío compartido
+	World left() {
 		return (World) leftSubtree;
 	}
 
@@ -60,10 +74,21 @@ public class World extends AbstractBinaryTreeADT<LinkedList<Entity>> {
 	/**
 	 * Devuelve el mundo al que se llega al avanzar a la derecha.
 	 * 
+	 * Si es vacío, se devuelve un mundo vacío nuevo en el que se puede
+	 * insertar. Este nodo sigue apuntando al vacío compartido hasta que se
+	 * inserte en él.
+	 * 
 	 * @return
 	 */
 	protected World getWorldRight() {
-		
+		if (rightSubtree == EMPTY) {
+			return new EmptyChild(this, false);
+		}
+		return right();
+	}
+
+	//	Mundo derecho tal cual, que puede ser el vacío compartido
+	World right() {
 		return (World) rightSubtree;
 	}
 
@@ -76,6 +101,142 @@ public class World extends AbstractBinaryTreeADT<LinkedList<Entity>> {
 	public static World createEmptyWorld() {
 		return new World();
 	}
+
+	/**
+	 * Mundo vacío que cuelga de todas las hojas, compartido por todos los
+	 * mundos en lugar de crear dos vacíos por cada nodo. No se puede
+	 * modificar: al insertar se sustituye por un mundo nuevo. Sólo se ve
+	 * desde fuera a través de getSubtree(); getWorldLeft() y
+	 * getWorldRight() devuelven en su lugar un {@link EmptyChild}.
+	 */
+	private static final World EMPTY = new World();
+
+	/**
+	 * Hijo vacío devuelto por getWorldLeft() o getWorldRight(): no se
+	 * guarda en el padre, que sigue apuntando al vacío compartido, hasta
+	 * que se inserta en él.
+	 */
+	private static final class EmptyChild extends World {
+
+		private final World parent;
+		private final boolean left;
+
+		EmptyChild(World parent, boolean left) {
+			this.parent = parent;
+			this.left = left;
+		}
+
+		//	Se cuelga del padre si el hueco sigue libre; si no, se inserta
+		//	en el mundo que lo ocupa
+		@Override
+		World attach() {
+			World current = left ? parent.left() : parent.right();
+			if (current != EMPTY) {
+				return current;
+			}
+			if (left) {
+				parent.setWorldLeft(this);
+			} else {
+				parent.setWorldRight(this);
+			}
+			return this;
+		}
+	}
+
+	//	Mundo en el que insertar cuando este está vacío
+	World attach() {
+		return this;
+	}
+
+	/**
+	 * El mundo vacío compartido no se puede modificar.
+	 * 
+	 * @throws UnsupportedOperationException si este mundo es un hijo vacío
+	 */
+	@Override
+	public void setContent(LinkedList<Entity> content) {
+		if (this == EMPTY) {
+			throw new UnsupportedOperationException();
+		}
+		super.setContent(content);
+	}
+
+	/**
+	 * El mundo vacío compartido no se puede etiquetar.
+	 * 
+	 * @throws UnsupportedOperationException si este mundo es un hijo vacío
+	 */
+	@Override
+	public void setTag(String k, Object v) {
+		if (this == EMPTY) {
+			throw new UnsupportedOperationException();
+		}
+		super.setTag(k, v);
+	}
+
+	/**
+	 * El mundo vacío compartido no se puede etiquetar.
+	 * 
+	 * @throws UnsupportedOperationException si este mundo es un hijo vacío
+	 */
+	@Override
+	public void setTag(String k, int v) {
+		if (this == EMPTY) {
+			throw new UnsupportedOperationException();
+		}
+		super.setTag(k, v);
+	}
+
+	//	Contadores de la operación en curso, si se están recogiendo
+	//	métricas de las llamadas sobre este mundo (null si no). Sólo lo
+	//	asigna setMetrics en el mundo sobre el que se llama, y se lee una
+	//	vez al empezar cada operación, sin cerrojos; con las referencias
+	//	comprimidas cabe en el relleno del objeto, así que no lo agranda
+	private OperationMetrics.Probe probe;
+
+	/**
+	 * Empieza a recoger métricas de {@link #insert(String, Entity)},
+	 * {@link #countEntity(int)} y {@link #countAccesiblePrincess(List)}
+	 * llamados sobre este mundo en metrics, o deja de hacerlo si es null.
+	 * Las llamadas sobre sus subárboles no se miden, ni la versión en
+	 * paralelo de countEntity.
+	 * 
+	 * Como comparaciones se cuentan las entidades examinadas en la lista
+	 * de cada nodo visitado.
+	 * 
+	 * @param metrics dónde acumularlas, que puede compartirse entre mundos.
+	 * @throws UnsupportedOperationException si este mundo es un hijo vacío
+	 */
+	public void setMetrics(OperationMetrics metrics) {
+		if (this == EMPTY) {
+			throw new UnsupportedOperationException();
+		}
+		this.probe = (metrics == null) ? null : new OperationMetrics.Probe(metrics);
+	}
+
+	/**
+	 * Métricas en las que se están recogiendo las operaciones, o null.
+	 */
+	public OperationMetrics getMetrics() {
+		return (probe == null) ? null : probe.metrics;
+	}
+
+	//	Convierte este mundo vacío en un nodo con esas entidades y sin hijos
+	private void fill(LinkedList<Entity> entities) {
+		this.setContent(entities);
+		this.setWorldLeft(EMPTY);
+		this.setWorldRight(EMPTY);
+	}
+
+	/**
+	 * Nuevo nodo con las entidades dadas y sin hijos, para construir un
+	 * mundo directamente (sin insert) cuando ya se conoce su forma.
+	 */
+	static World node(LinkedList<Entity> entities) {
+		World world = createEmptyWorld();
+		world.fill(entities);
+		return world;
+	}
 	
 	/**
 	 * Inserta la entidad indicada en este árbol.
@@ -126,42 +287,67 @@ public class World extends AbstractBinaryTreeADT<LinkedList<Entity>> {
 	 * @param e entidad a insertar.
 	 */
 	public void insert(String address, Entity e) {
-		//TODO implementar el metodo
-		LinkedList<Entity> entities;
-		String nextAddress = "";
-		if (this.isEmpty()) {
-			entities= new LinkedList<Entity>();
-			this.setContent(entities);
-			this.setWorldLeft(createEmptyWorld());
-			this.setWorldRight(createEmptyWorld());
+		OperationMetrics.Probe probe = this.probe;
+		if (probe == null) {
+			insert(address, e, null);
+			return;
+		}
+		long start = probe.start();
+		try {
+			insert(address, e, probe);
+		} finally {
+			probe.record(OperationMetrics.Operation.INSERT, start);
 		}
+	}
 
-		if(address.length() >= 1) {
-			if(this.getContent().isEmpty()) {
-				this.getContent().add(new Entity(Entity.UNKNOWN));
+	private void insert(String address, Entity e, OperationMetrics.Probe probe) {
+		//	Baja por la dirección creando los nodos que falten, que se
+		//	cuelgan del padre en lugar del mundo vacío compartido
+		if (this.isEmpty()) {
+			World target = this.attach();
+			if (target != this) {
+				target.insert(address, e, probe);
+				return;
 			}
-			for(int i = 1; i < address.length(); i++){
-				nextAddress = nextAddress + address.charAt(i);
+			this.fill(new LinkedList<Entity>());
+		}
+		World node = this;
+		for (int i = 0; i < address.length(); i++) {
+			if (probe != null) {
+				probe.visit(i + 1, 0);
 			}
-		}else{
-			if(this.getContent().contains(e)){
-				int index = 0;
-				long count;
-				while(!this.getContent().get(index).equals(e)){
-					index++;
+			if (node.getContent().isEmpty()) {
+				node.getContent().add(new Entity(Entity.UNKNOWN));
+			}
+			boolean left;
+			if (address.charAt(i) == '0') {
+				left = true;
+			} else if (address.charAt(i) == '1') {
+				left = false;
+			} else {
+				return;
+			}
+			World next = left ? node.left() : node.right();
+			if (next.isEmpty()) {
+				next = node(new LinkedList<Entity>());
+				if (left) {
+					node.setWorldLeft(next);
+				} else {
+					node.setWorldRight(next);
 				}
-				count = this.getContent().get(index).getCount();
-				this.getContent().get(index).setCount(count + e.getCount());
-			}else{
-				this.getContent().add(e);
 			}
+			node = next;
 		}
-		if(!address.equals("")) {
-			if (address.charAt(0) == '0') {
-				this.getWorldLeft().insert(nextAddress, e);
-			} else if (address.charAt(0) == '1') {
-				this.getWorldRight().insert(nextAddress, e);
-			}
+
+		int index = node.getContent().indexOf(e);
+		if (probe != null) {
+			probe.visit(address.length() + 1, (index >= 0) ? index + 1 : node.getContent().size());
+		}
+		if (index >= 0) {
+			Entity existing = node.getContent().get(index);
+			existing.setCount(existing.getCount() + e.getCount());
+		} else {
+			node.getContent().add(e);
 		}
 	}
 
@@ -174,8 +360,19 @@ public class World extends AbstractBinaryTreeADT<LinkedList<Entity>> {
 	 * @return cuántas entidades de ese tipo hay en este árbol.
 	 */
 	public long countEntity(int type) {
-		// TODO Implementar el método	
-		LinkedList<Entity> entities = new LinkedList<Entity>();
+		OperationMetrics.Probe probe = this.probe;
+		if (probe == null) {
+			return countEntityRec(type, null, 1);
+		}
+		long start = probe.start();
+		try {
+			return countEntityRec(type, probe, 1);
+		} finally {
+			probe.record(OperationMetrics.Operation.COUNT_ENTITY, start);
+		}
+	}
+
+	private long countEntityRec(int type, OperationMetrics.Probe probe, int depth) {
 		Entity thisEntity = new Entity(type);
 		long count = 0;
 		if(!this.isEmpty()){
@@ -184,9 +381,15 @@ public class World extends AbstractBinaryTreeADT<LinkedList<Entity>> {
 				while(!this.getContent().get(index).equals(thisEntity)){
 					index++;
 				}
-				count += this.getContent().get(index).getCount() + this.getWorldLeft().countEntity(type) + this.getWorldRight().countEntity(type);
+				if(probe != null){
+					probe.visit(depth, index + 1);
+				}
+				count += this.getContent().get(index).getCount() + this.left().countEntityRec(type, probe, depth + 1) + this.right().countEntityRec(type, probe, depth + 1);
 			}else{
-				count += this.getWorldLeft().countEntity(type) + this.getWorldRight().countEntity(type);
+				if(probe != null){
+					probe.visit(depth, this.getContent().size());
+				}
+				count += this.left().countEntityRec(type, probe, depth + 1) + this.right().countEntityRec(type, probe, depth + 1);
 			}
 		}
 		return count;
@@ -195,6 +398,59 @@ public class World extends AbstractBinaryTreeADT<LinkedList<Entity>> {
 	
 	
 
+	/**
+	 * Como {@link #countEntity(int)}, pero permite repartir el trabajo
+	 * entre varios hilos: hasta cierta profundidad cada sub-mundo se
+	 * cuenta como una tarea del ForkJoinPool común y se suman los totales.
+	 * 
+	 * @param type tipo de entidad.
+	 * @param execution forma de ejecutarlo
+	 * @return cuántas entidades de ese tipo hay en este árbol.
+	 */
+	public long countEntity(int type, Execution execution) {
+		if (execution == Execution.PARALLEL) {
+			return ForkJoinPool.commonPool().invoke(new CountEntityTask(this, type, 1));
+		}
+		return countEntity(type);
+	}
+
+	//	Entidades del tipo en este nodo, sin contar sus sub-mundos
+	private long countHere(int type) {
+		for (Entity entity : this.getContent()) {
+			if (entity.getType() == type) {
+				return entity.getCount();
+			}
+		}
+		return 0;
+	}
+
+	private static final class CountEntityTask extends RecursiveTask<Long> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final World world;
+		private final int type;
+		private final int depth;
+
+		CountEntityTask(World world, int type, int depth) {
+			this.world = world;
+			this.type = type;
+			this.depth = depth;
+		}
+
+		@Override
+		protected Long compute() {
+			if (depth >= PARALLEL_DEPTH || world.isEmpty() || world.isLeaf()) {
+				return world.countEntity(type);
+			}
+			CountEntityTask right = new CountEntityTask(world.right(), type, depth + 1);
+			right.fork();
+			long left = new CountEntityTask(world.left(), type, depth + 1).compute();
+			return world.countHere(type) + left + right.join();
+		}
+	}
+	
+	
 	/**
 	 * Indica cuantas princesas accesibles hay en el árbol.
 	 *  Además introduce en una lista de Strings las direcciones a los nodos en las que se encuentran dichas princesas. 
@@ -217,20 +473,35 @@ public class World extends AbstractBinaryTreeADT<LinkedList<Entity>> {
 	 * @return el número de princesas accesibles situadas 
 	 */
 	public long countAccesiblePrincess(List<String> lista){
-		// TODO IMPLEMENTAR EL MÉTODO
+		OperationMetrics.Probe probe = this.probe;
+		if (probe == null) {
+			return countAccesiblePrincess(lista, null);
+		}
+		long start = probe.start();
+		try {
+			return countAccesiblePrincess(lista, probe);
+		} finally {
+			probe.record(OperationMetrics.Operation.COUNT_ACCESIBLE_PRINCESS, start);
+		}
+	}
+
+	private long countAccesiblePrincess(List<String> lista, OperationMetrics.Probe probe){
 		long count[] = {0};
 		boolean wasDragon = false;
 		String camino = "";
 		if(!this.isEmpty()){
-			this.countAccesiblePrincessRec(count, lista, camino, wasDragon);
+			this.countAccesiblePrincessRec(count, lista, camino, wasDragon, probe, 1);
 		}
 		return count[0];
 	}
 
 
-	private void countAccesiblePrincessRec(long count[], List<String> lista, String camino, boolean WasDragon){
+	private void countAccesiblePrincessRec(long count[], List<String> lista, String camino, boolean WasDragon, OperationMetrics.Probe probe, int depth){
 		int index = 0;
 		if(!this.isEmpty()){
+			if(probe != null){
+				probe.visit(depth, this.getContent().size());
+			}
 			if(this.getContent().contains(Entity.dragons(1))) {
 				if (this.getContent().contains(Entity.princesses(1))) {
 					while(!this.getContent().get(index).equals(Entity.princesses(1))){
@@ -269,47 +540,30 @@ public class World extends AbstractBinaryTreeADT<LinkedList<Entity>> {
 				}
 			}
 
-			this.getWorldLeft().countAccesiblePrincessRec(count, lista, camino + "0", WasDragon);
-			this.getWorldRight().countAccesiblePrincessRec(count, lista, camino + "1", WasDragon);
+			this.left().countAccesiblePrincessRec(count, lista, camino + "0", WasDragon, probe, depth + 1);
+			this.right().countAccesiblePrincessRec(count, lista, camino + "1", WasDragon, probe, depth + 1);
 		}
 	}
 	
 	
 	
+	/**
+	 * La lista de entidades se muestra ordenada alfabéticamente (y se deja
+	 * ordenada), tanto en toString() como en writeTo().
+	 */
 	@Override
-	public String toString() {
-		if (! isEmpty()) {
-			//	Construye el resultado de forma eficiente
-			StringBuffer result = new StringBuffer();
-				
-			//	Raíz: Ordena la lista de entidades alfabeticamente
-			Collections.sort(content);
-			result.append("{" + content.toString());
-			
-			if (! tags.isEmpty()) {
-				result.append(" [");
-				
-				List<String> sk = new LinkedList<String>(tags.keySet());
-				
-				Collections.sort(sk);
-				for (String k : sk) {
-					result.append("(" + k + ", " + tags.get(k) + "), ");
-				}
-				result.delete(result.length() - 2, result.length());
-				result.append("]");
-			}
-			
-			//	Y cada sub-árbol
-			for (int i = 0; i < getMaxDegree(); i++) {
-				result.append(", " + getSubtree(i).toString());
+	protected void appendContent(Appendable out) throws IOException {
+		Collections.sort(content);
+		out.append("[");
+		boolean first = true;
+		for (Entity entity : content) {
+			if (! first) {
+				out.append(", ");
 			}
-			//	Cierra la "}" de este árbol
-			result.append("}");
-			
-			return result.toString();
-		} else {
-			return AbstractTreeADT.EMPTY_TREE_MARK;
+			out.append(entity.toString());
+			first = false;
 		}
+		out.append("]");
 	}
 
 	
@@ -1,6 +1,16 @@
 package ule.edi.tree;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -170,4 +180,162 @@ public class WorldTests {
 
 	}
 	
+
+	@Test
+	public void testTraversals() {
+		this.rellenaArbolCompleto();
+		List<String> pre = new LinkedList<String>();
+		for (Iterator<LinkedList<Entity>> it = complete1.iteratorPreorder(); it.hasNext(); ) {
+			pre.add(it.next().toString());
+		}
+		Assert.assertEquals("[[U(1)], [U(1)], [D(3)], [P(4)], [U(1)], [P(7)], [D(1), C(1)]]", pre.toString());
+		List<String> post = new LinkedList<String>();
+		for (Iterator<LinkedList<Entity>> it = complete1.iteratorPostorder(); it.hasNext(); ) {
+			post.add(it.next().toString());
+		}
+		Assert.assertEquals("[[P(4)], [D(3)], [U(1)], [P(7)], [D(1), C(1)], [U(1)], [U(1)]]", post.toString());
+		List<String> in = new LinkedList<String>();
+		for (Iterator<LinkedList<Entity>> it = complete1.iteratorInorder(); it.hasNext(); ) {
+			in.add(it.next().toString());
+		}
+		Assert.assertEquals("[[U(1)], [P(4)], [D(3)], [U(1)], [P(7)], [U(1)], [D(1), C(1)]]", in.toString());
+	}
+
+	@Test
+	public void testEmptyChildrenAreSharedObjectCount() {
+		this.rellenaArbolCompleto();
+		//	Siete nodos con entidades y un único mundo vacío debajo de todos
+		Set<TreeADT<?>> objects = Collections.newSetFromMap(new IdentityHashMap<TreeADT<?>, Boolean>());
+		ArrayDeque<TreeADT<?>> pending = new ArrayDeque<TreeADT<?>>();
+		pending.push(complete1);
+		while (! pending.isEmpty()) {
+			TreeADT<?> t = pending.pop();
+			if (objects.add(t) && ! t.isEmpty()) {
+				pending.push(t.getSubtree(0));
+				pending.push(t.getSubtree(1));
+			}
+		}
+		Assert.assertEquals(8, objects.size());
+		Assert.assertEquals(rutaComplete1, complete1.toString());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testSharedEmptyWorldIsReadOnly() {
+		w.insert("", new Entity(Entity.DRAGON));
+		((World) w.getSubtree(0)).insert("", new Entity(Entity.PRINCESS));
+	}
+
+	@Test
+	public void testInsertIntoEmptyChild() {
+		w.insert("", new Entity(Entity.DRAGON));
+		//	Pedir un hijo vacío no lo guarda: sigue el vacío compartido
+		World left = w.getWorldLeft();
+		World other = w.getWorldLeft();
+		Assert.assertTrue(left.isEmpty());
+		Assert.assertTrue(w.getWorldRight().isEmpty());
+		Assert.assertSame(w.getSubtree(0), w.getSubtree(1));
+		//	Hasta que se inserta en él
+		left.insert("1", new Entity(Entity.PRINCESS));
+		Assert.assertEquals("{[D(1)], {[U(1)], ∅, {[P(1)], ∅, ∅}}, ∅}", w.toString());
+		Assert.assertSame(left, w.getSubtree(0));
+		Assert.assertEquals(1, w.countEntity(Entity.PRINCESS));
+		//	Si el hueco ya está ocupado, se inserta en el que lo ocupa
+		other.insert("", new Entity(Entity.CASTLE));
+		Assert.assertTrue(other.isEmpty());
+		Assert.assertEquals("{[D(1)], {[C(1), U(1)], ∅, {[P(1)], ∅, ∅}}, ∅}", w.toString());
+	}
+
+	@Test
+	public void testTraverse() {
+		this.rellenaArbolCompleto();
+		final List<String> log = new LinkedList<String>();
+		complete1.traverse(new TreeVisitor<LinkedList<Entity>>() {
+			@Override
+			public void preorder(TreeADT<LinkedList<Entity>> node, int depth) {
+				log.add(depth + "" + node.getContent());
+			}
+
+			@Override
+			public void inorder(TreeADT<LinkedList<Entity>> node, int depth) {
+				log.add("|");
+			}
+		});
+		Assert.assertEquals("[1[U(1)], 2[U(1)], |, 3[D(3)], 4[P(4)], |, |, |, 2[U(1)], 3[P(7)], |, |, 3[D(1), C(1)], |]", log.toString());
+	}
+
+	@Test
+	public void testParallelCountEntity() {
+		this.rellenaArbolCompleto();
+		Assert.assertEquals(11, complete1.countEntity(Entity.PRINCESS, Execution.PARALLEL));
+		Assert.assertEquals(0, w.countEntity(Entity.PRINCESS, Execution.PARALLEL));
+
+		World big = World.createEmptyWorld();
+		Random random = new Random(23);
+		int[] types = { Entity.PRINCESS, Entity.DRAGON, Entity.CASTLE, Entity.FOREST };
+		for (int i = 0; i < 20000; i++) {
+			StringBuilder address = new StringBuilder();
+			for (int d = random.nextInt(24); d > 0; d--) {
+				address.append(random.nextBoolean() ? '0' : '1');
+			}
+			big.insert(address.toString(), new Entity(types[random.nextInt(types.length)], 1 + random.nextInt(5)));
+		}
+		for (int type : types) {
+			Assert.assertEquals(big.countEntity(type, Execution.SEQUENTIAL), big.countEntity(type, Execution.PARALLEL));
+		}
+		Assert.assertEquals(big.countEntity(Entity.UNKNOWN), big.countEntity(Entity.UNKNOWN, Execution.PARALLEL));
+	}
+
+	@Test
+	public void testMetrics() {
+		this.rellenaArbolCompleto();
+		OperationMetrics metrics = new OperationMetrics();
+		complete1.setMetrics(metrics);
+		Assert.assertSame(metrics, complete1.getMetrics());
+		Assert.assertEquals(11, complete1.countEntity(Entity.PRINCESS));
+		Assert.assertEquals(7, complete1.countAccesiblePrincess(new LinkedList<String>()));
+		//	La versión en paralelo no se mide
+		Assert.assertEquals(11, complete1.countEntity(Entity.PRINCESS, Execution.PARALLEL));
+		//	Tres nodos hasta "11", donde el castillo es la segunda entidad
+		complete1.insert("11", Entity.castles(1));
+		//	Ni las llamadas sobre un subárbol
+		((World) complete1.getSubtree(1)).insert("1", Entity.castles(1));
+
+		Map<String, Long> snapshot = metrics.snapshot();
+		Assert.assertEquals(1L, (long) snapshot.get("countEntity.count"));
+		Assert.assertEquals(7L, (long) snapshot.get("countEntity.nodesVisited"));
+		//	Una entidad por nodo salvo [D(1), C(1)], donde no hay princesa
+		Assert.assertEquals(8L, (long) snapshot.get("countEntity.comparisons"));
+		Assert.assertEquals(4L, (long) snapshot.get("countEntity.depth.max"));
+		Assert.assertEquals(1L, (long) snapshot.get("countAccesiblePrincess.count"));
+		Assert.assertEquals(7L, (long) snapshot.get("countAccesiblePrincess.nodesVisited"));
+		Assert.assertEquals(4L, (long) snapshot.get("countAccesiblePrincess.depth.total"));
+		Assert.assertEquals(1L, (long) snapshot.get("insert.count"));
+		Assert.assertEquals(3L, (long) snapshot.get("insert.nodesVisited"));
+		Assert.assertEquals(2L, (long) snapshot.get("insert.comparisons"));
+		Assert.assertEquals(3L, (long) snapshot.get("insert.depth.max"));
+
+		complete1.setMetrics(null);
+		Assert.assertNull(complete1.getMetrics());
+		Assert.assertEquals(11, complete1.countEntity(Entity.PRINCESS));
+		complete1.insert("", Entity.castles(1));
+		Assert.assertEquals(snapshot, metrics.snapshot());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testMetricsOnSharedEmpty() {
+		w.insert("", Entity.dragons(1));
+		((World) w.getSubtree(0)).setMetrics(new OperationMetrics());
+	}
+
+	@Test
+	public void testWriteTo() throws IOException {
+		this.rellenaArbolCompleto();
+		StringWriter out = new StringWriter();
+		complete1.writeTo(out);
+		Assert.assertEquals(rutaComplete1, out.toString());
+		StringWriter rendered = new StringWriter();
+		complete1.renderTo(rendered);
+		Assert.assertEquals(complete1.render(), rendered.toString());
+	}
+
 }